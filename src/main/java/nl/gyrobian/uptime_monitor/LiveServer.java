@@ -0,0 +1,125 @@
+package nl.gyrobian.uptime_monitor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.gyrobian.uptime_monitor.config.LiveConfig;
+import nl.gyrobian.uptime_monitor.data.LiveData;
+import nl.gyrobian.uptime_monitor.data.RecentSamples;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small HTTP server that answers live measurements of the sites that are
+ * being monitored, from the recent results that each site monitor keeps in
+ * memory, so that no files have to be read. A measurement of a site is
+ * requested with {@code GET /live/<site>?window=<duration>}, where the window
+ * is an ISO-8601 duration like "PT1H", and is returned as JSON.
+ */
+public class LiveServer implements Closeable {
+	/**
+	 * The path under which live measurements are served.
+	 */
+	public static final String PATH = "/live/";
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+	static {
+		mapper.registerModule(new JavaTimeModule());
+		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+	}
+
+	private final HttpServer server;
+	private final Map<String, RecentSamples> samplesBySite = new HashMap<>();
+
+	/**
+	 * Starts serving live measurements.
+	 * @param config The live measurement configuration.
+	 * @param monitors The site monitors whose recent results to serve.
+	 * @throws IOException If the server could not be bound to its address.
+	 */
+	public LiveServer(LiveConfig config, List<SiteMonitor> monitors) throws IOException {
+		for (var monitor : monitors) {
+			if (monitor.getRecentSamples() != null) this.samplesBySite.put(monitor.getSiteName(), monitor.getRecentSamples());
+		}
+		this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 0);
+		this.server.createContext(PATH, this::handle);
+		this.server.start();
+	}
+
+	/**
+	 * @return The address that the server is bound to.
+	 */
+	public InetSocketAddress getAddress() {
+		return this.server.getAddress();
+	}
+
+	/**
+	 * Handles a single request for a live measurement.
+	 * @param exchange The exchange.
+	 * @throws IOException If the response could not be sent.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				this.respond(exchange, 405, "Only GET requests are supported.");
+				return;
+			}
+			String siteName = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(PATH.length()), StandardCharsets.UTF_8);
+			var samples = this.samplesBySite.get(siteName);
+			if (samples == null) {
+				this.respond(exchange, 404, "Unknown site: " + siteName);
+				return;
+			}
+			Duration window = Duration.ofHours(1);
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null) {
+				for (var parameter : query.split("&")) {
+					if (!parameter.startsWith("window=")) continue;
+					try {
+						window = Duration.parse(URLDecoder.decode(parameter.substring(7), StandardCharsets.UTF_8));
+					} catch (DateTimeParseException e) {
+						this.respond(exchange, 400, "Invalid window: " + e.getParsedString());
+						return;
+					}
+				}
+			}
+			long startedAt = System.nanoTime();
+			var now = OffsetDateTime.now(ZoneOffset.UTC);
+			var performance = samples.aggregate(now.minus(window).toInstant().toEpochMilli()).toPerformanceData();
+			long measurementMicros = (System.nanoTime() - startedAt) / 1000;
+			byte[] body = mapper.writeValueAsBytes(new LiveData(now, siteName, window, measurementMicros, performance));
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	private void respond(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * Stops the server, without waiting for requests that are still being
+	 * handled.
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+	}
+}
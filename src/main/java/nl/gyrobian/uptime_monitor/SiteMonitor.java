@@ -1,146 +1,217 @@
 package nl.gyrobian.uptime_monitor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.gyrobian.uptime_monitor.config.CaptureConfig;
 import nl.gyrobian.uptime_monitor.config.SiteConfig;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import nl.gyrobian.uptime_monitor.data.RecentSamples;
+import nl.gyrobian.uptime_monitor.metrics.Metrics;
+import nl.gyrobian.uptime_monitor.metrics.SiteMetrics;
+import nl.gyrobian.uptime_monitor.probe.AdaptiveInterval;
+import nl.gyrobian.uptime_monitor.probe.BodyCapture;
+import nl.gyrobian.uptime_monitor.probe.PhaseTimer;
+import nl.gyrobian.uptime_monitor.probe.ProbeEngine;
+import nl.gyrobian.uptime_monitor.storage.MeasurementRecorder;
+import nl.gyrobian.uptime_monitor.storage.SiteRecordWriter;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.time.Duration;
+import java.net.http.HttpTimeoutException;
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A site monitor is responsible for the logic of checking the status of a
- * single site, and recording the results in a CSV file.
+ * single site, and handing the results to the recorder.
  */
-public class SiteMonitor implements Closeable {
-	public static final DateTimeFormatter FILE_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
-
+public class SiteMonitor {
 	private final SiteConfig site;
-	private final HttpClient httpClient;
-	private final HttpRequest.Builder requestBuilder;
-	private final ObjectMapper mapper;
-	private final long maxFileSize;
-
-	private CSVPrinter csvPrinter;
-	private Path recordFile;
+	private final ProbeEngine engine;
+	private final URI uri;
+	private final BodyCapture capture;
+	private final AdaptiveInterval adaptiveInterval;
+	private final MeasurementRecorder recorder;
+	private final SiteRecordWriter recordWriter;
+	private final RecentSamples recentSamples;
+	private final SiteMetrics metrics;
+	private final AtomicBoolean inFlight = new AtomicBoolean(false);
 
-	public SiteMonitor(SiteConfig site, long maxFileSize) throws IOException {
+	/**
+	 * Constructs a monitor for a site.
+	 * @param site The site's configuration.
+	 * @param engine The probe engine to send probes to.
+	 * @param recorder The recorder to hand results to.
+	 * @param recentSamples The buffer to keep the site's most recent results
+	 *                      in, for live measurements, or null.
+	 * @throws IOException If the site's record file could not be opened.
+	 * @throws IllegalArgumentException If the site's configuration is invalid.
+	 */
+	public SiteMonitor(SiteConfig site, ProbeEngine engine, MeasurementRecorder recorder, RecentSamples recentSamples) throws IOException {
 		this.site = site;
-		this.maxFileSize = maxFileSize;
-		this.mapper = new ObjectMapper();
-		this.httpClient = HttpClient.newBuilder()
-				.followRedirects(HttpClient.Redirect.ALWAYS)
-				.connectTimeout(Duration.ofSeconds(5))
-				.version(HttpClient.Version.HTTP_2)
-				.build();
-		this.requestBuilder = HttpRequest.newBuilder()
-				.GET()
-				.setHeader("Cache-Control", "no-cache")
-				.setHeader("User-Agent", "SiteMonitor")
-				.setHeader("Accept", "*/*")
-				.timeout(Duration.ofSeconds(5));
-		this.csvPrinter = initPrinter();
+		this.engine = engine;
+		this.recorder = recorder;
+		this.recentSamples = recentSamples;
+		this.uri = URI.create(site.getUrl());
+		this.capture = new BodyCapture(site.getCapture() != null ? site.getCapture() : new CaptureConfig());
+		this.adaptiveInterval = site.getAdaptive() != null ? new AdaptiveInterval(site.getAdaptive(), site.getInterval()) : null;
+		this.metrics = Metrics.site(site.getName());
+		this.recordWriter = recorder.open(site.getName());
+	}
+
+	public String getSiteName() {
+		return this.site.getName();
 	}
 
 	/**
-	 * Initializes the CSV printer when starting the monitor. This will look
-	 * under sites/{site.name} for a list of CSV files, and it will append to
-	 * the most recent file, if its size has not yet exceeded the maximum file
-	 * size. Otherwise, a new file will be created if the most recent file was
-	 * too big or there are no files.
-	 * @return The CSV printer to use when recording site monitoring info.
-	 * @throws IOException If the printer could not be initialized.
+	 * @return The buffer with the site's most recent results, or null if
+	 * they're not kept.
 	 */
-	private CSVPrinter initPrinter() throws IOException {
-		Path dir = Path.of("sites", site.getName());
-		if (Files.notExists(dir)) Files.createDirectories(dir);
-		boolean shouldWriteHeader = false;
-		try (var s = Files.list(dir)) {
-			var files = s.filter(Files::isRegularFile)
-					.sorted(Comparator.comparing(Path::getFileName))
-					.collect(Collectors.toList());
-			if (files.isEmpty() || Files.size(files.get(files.size() - 1)) > this.maxFileSize) {
-				String timestamp = ZonedDateTime.now(ZoneOffset.UTC).format(FILE_TIMESTAMP_FORMATTER);
-				this.recordFile = dir.resolve(timestamp + ".csv");
-				shouldWriteHeader = true;
-				System.out.println("Creating new file to record monitoring data for site " + this.site.getName() + " at " + this.recordFile);
-			} else {
-				this.recordFile = files.get(files.size() - 1);
-				System.out.println("Appending site monitoring data for " + this.site.getName() + " to " + this.recordFile);
-			}
-		}
-		var writer = Files.newBufferedWriter(recordFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-		return CSVFormat.DEFAULT.builder()
-				.setHeader("Timestamp", "URL", "Response Code", "Response Time (ms)", "Response Details")
-				.setSkipHeaderRecord(!shouldWriteHeader)
-				.build().print(writer);
+	public RecentSamples getRecentSamples() {
+		return this.recentSamples;
 	}
 
 	/**
-	 * Switches to a new CSV file during runtime, closing the current printer
-	 * and creating a new file.
-	 * @throws IOException If an error occurs while closing or opening files.
+	 * @return The interval until the next check of this monitor's site, in
+	 * milliseconds. For adaptively probed sites, this changes depending on the
+	 * results of recent checks.
 	 */
-	private void switchToNewFile() throws IOException {
-		this.csvPrinter.close();
-		String ts = ZonedDateTime.now(ZoneOffset.UTC).format(FILE_TIMESTAMP_FORMATTER);
-		this.recordFile = this.recordFile.getParent().resolve(ts + ".csv");
-		System.out.println("Creating new file to record monitoring data for site " + this.site.getName() + " at " + this.recordFile);
-		var writer = Files.newBufferedWriter(recordFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-		this.csvPrinter = CSVFormat.DEFAULT.builder()
-				.setHeader("Timestamp", "URL", "Response Code", "Response Time (ms)", "Response Details")
-				.build().print(writer);
+	public long getIntervalMillis() {
+		if (this.adaptiveInterval != null) return this.adaptiveInterval.getCurrentMillis();
+		return TimeUnit.SECONDS.toMillis(this.site.getInterval());
 	}
 
 	/**
 	 * Performs a monitoring check of this monitor's site by sending an HTTP
-	 * request to the site's URL and recording the response.
+	 * request to the site's URL and recording the response. The request is
+	 * sent asynchronously, so this method returns immediately. If the previous
+	 * check of this site is still in progress, no new check is started.
+	 * @return A future that completes once the check has been recorded.
 	 */
-	public void monitor() {
-		HttpRequest request = this.requestBuilder.copy().uri(URI.create(this.site.getUrl())).build();
-		try {
+	public CompletableFuture<Void> monitor() {
+		if (!this.inFlight.compareAndSet(false, true)) {
+			this.metrics.probeSkipped();
+			System.err.println("Skipping check of " + this.site.getUrl() + " because the previous check has not completed yet.");
+			return CompletableFuture.completedFuture(null);
+		}
+		return this.engine.submit(() -> {
 			long start = System.currentTimeMillis();
-			HttpResponse<InputStream> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-			long duration = System.currentTimeMillis() - start;
-			String timestamp = Instant.ofEpochMilli(start).atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-			String details = null;
-			var contentType = response.headers().firstValue("Content-Type");
-			if (contentType.isPresent() && contentType.get().equalsIgnoreCase("application/json")) {
-				details = new String(response.body().readAllBytes());
-			}
-			response.body().close();
-			this.csvPrinter.printRecord(timestamp, this.site.getUrl(), response.statusCode(), duration, details);
-			this.csvPrinter.flush();
+			var timer = new PhaseTimer();
+			var transport = this.engine.getTransport();
+			// The network phases are measured on a separate connection, at the same time as the request.
+			var connection = transport.getConnectionTimer().measure(this.uri).thenAccept(timer::connectionMeasured);
+			HttpRequest request = transport.newRequest(this.uri);
+			timer.requestSent();
+			this.metrics.probeSent();
+			var exchange = transport.getHttpClient().sendAsync(request, info -> {
+				timer.headersReceived();
+				return this.capture.apply(info);
+			}).thenApply(response -> {
+				timer.bodyReceived();
+				return response;
+			});
+			return CompletableFuture.allOf(exchange, connection)
+					// Only failures of the exchange itself are probe failures, and not errors while recording a response.
+					.handle((v, throwable) -> {
+						if (throwable != null) return this.handleFailure(throwable, start, timer);
+						var response = exchange.join();
+						if (this.adaptiveInterval != null) {
+							this.adaptiveInterval.onResponse(response.statusCode() < 400, timer.getResponseTimeMillis());
+						}
+						this.record(start, timer, response);
+						return (Void) null;
+					});
+		})
+				.exceptionally(throwable -> this.handleFailure(throwable, -1, null))
+				.whenComplete((v, throwable) -> this.inFlight.set(false));
+	}
 
-			// Close the current printer and open a new file if we've exceeded the size limit.
-			if (Files.size(this.recordFile) > this.maxFileSize) {
-				this.switchToNewFile();
-			}
-		} catch (HttpConnectTimeoutException e) {
-			System.err.println("Connection timed out while sending request to " + this.site.getUrl());
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
+	/**
+	 * Records the response to a single check.
+	 * @param start The time at which the probe started, in epoch millis.
+	 * @param timer The timer which measured the phases of the probe.
+	 * @param response The response that was received.
+	 */
+	private void record(long start, PhaseTimer timer, HttpResponse<String> response) {
+		this.metrics.response(response.statusCode(), timer.getResponseTimeMillis());
+		this.record(new MonitorEntry(
+				Instant.ofEpochMilli(start).atOffset(ZoneOffset.UTC),
+				this.site.getUrl(),
+				response.statusCode(),
+				timer.getResponseTimeMillis(),
+				response.body(),
+				timer.getTimings()
+		));
+	}
+
+	/**
+	 * Records the result of a single check, by handing it to the recorder.
+	 * @param entry The entry to record.
+	 */
+	private void record(MonitorEntry entry) {
+		if (this.recentSamples != null) this.recentSamples.add(entry);
+		if (!this.recorder.record(this.recordWriter, entry)) {
+			this.metrics.resultDropped();
+			System.err.println("Dropped the result of a check of " + this.site.getUrl() + " because the recorder is not keeping up.");
 		}
 	}
 
-	@Override
-	public void close() throws IOException {
-		this.csvPrinter.close();
+	/**
+	 * Handles a check that failed before a response could be recorded, such as
+	 * when the connection timed out or could not be established at all. If the
+	 * request was sent, the failure is recorded as an entry with the
+	 * {@link MonitorEntry#NO_RESPONSE} response code, so that it counts as
+	 * downtime. Its response time is unknown, so that it's left out of the
+	 * site's response times, but the phases that were measured are kept.
+	 * @param throwable The cause of the failure.
+	 * @param start The time at which the probe started, in epoch millis.
+	 * @param timer The timer of the probe, or null if the request was never
+	 *              sent.
+	 * @return Nothing.
+	 */
+	private Void handleFailure(Throwable throwable, long start, PhaseTimer timer) {
+		Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+		if (this.adaptiveInterval != null && !(cause instanceof RejectedExecutionException)) {
+			this.adaptiveInterval.onFailure();
+		}
+		String reason;
+		if (cause instanceof HttpConnectTimeoutException) {
+			this.metrics.failure(SiteMetrics.Failure.CONNECT_TIMEOUT);
+			reason = "Connection timed out";
+			System.err.println("Connection timed out while sending request to " + this.site.getUrl());
+		} else if (cause instanceof HttpTimeoutException) {
+			this.metrics.failure(SiteMetrics.Failure.TIMEOUT);
+			reason = "Request timed out";
+			System.err.println("Request timed out while waiting for a response from " + this.site.getUrl());
+		} else if (cause instanceof ConnectException) {
+			this.metrics.failure(SiteMetrics.Failure.CONNECT);
+			reason = "Could not connect";
+			System.err.println("Could not connect to " + this.site.getUrl());
+		} else if (cause instanceof RejectedExecutionException) {
+			this.metrics.failure(SiteMetrics.Failure.REJECTED);
+			return null;
+		} else {
+			this.metrics.failure(SiteMetrics.Failure.OTHER);
+			reason = cause.getClass().getSimpleName();
+			cause.printStackTrace();
+		}
+		if (timer != null) {
+			this.record(new MonitorEntry(
+					Instant.ofEpochMilli(start).atOffset(ZoneOffset.UTC),
+					this.site.getUrl(),
+					MonitorEntry.NO_RESPONSE,
+					-1,
+					reason,
+					timer.getTimings()
+			));
+		}
+		return null;
 	}
 }
@@ -1,14 +1,25 @@
 package nl.gyrobian.uptime_monitor;
 
+import nl.gyrobian.uptime_monitor.command.BenchmarkKernelsSubcommand;
 import nl.gyrobian.uptime_monitor.command.GenerateReportsSubcommand;
 import nl.gyrobian.uptime_monitor.command.MeasureSubcommand;
+import nl.gyrobian.uptime_monitor.config.CompactionConfig;
 import nl.gyrobian.uptime_monitor.config.Config;
 import nl.gyrobian.uptime_monitor.config.ReportConfig;
 import nl.gyrobian.uptime_monitor.data.FocusInterval;
+import nl.gyrobian.uptime_monitor.data.Grouping;
+import nl.gyrobian.uptime_monitor.data.RecentSamples;
+import nl.gyrobian.uptime_monitor.metrics.MetricsServer;
+import nl.gyrobian.uptime_monitor.probe.ProbeEngine;
+import nl.gyrobian.uptime_monitor.probe.ProbeScheduler;
+import nl.gyrobian.uptime_monitor.probe.ProbeTransport;
 import nl.gyrobian.uptime_monitor.report.Format;
 import nl.gyrobian.uptime_monitor.report.Interval;
 import nl.gyrobian.uptime_monitor.report.ReportGenerationJob;
 import nl.gyrobian.uptime_monitor.report.ReportGenerator;
+import nl.gyrobian.uptime_monitor.storage.CompactionJob;
+import nl.gyrobian.uptime_monitor.storage.Compactor;
+import nl.gyrobian.uptime_monitor.storage.MeasurementRecorder;
 import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
 import picocli.CommandLine;
@@ -17,10 +28,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalTime;
 import java.time.Period;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 import java.util.concurrent.*;
 
 /**
@@ -34,7 +50,8 @@ import java.util.concurrent.*;
 		description = "Monitors and records the totalUptime of sites.",
 		subcommands = {
 				MeasureSubcommand.class,
-				GenerateReportsSubcommand.class
+				GenerateReportsSubcommand.class,
+				BenchmarkKernelsSubcommand.class
 		}
 )
 public class UptimeMonitor implements Callable<Integer> {
@@ -66,22 +83,44 @@ public class UptimeMonitor implements Callable<Integer> {
 			return 1;
 		}
 		long maxFileSize = parseSize(config.getMaxFileSize());
-		ScheduledExecutorService executor = Executors.newScheduledThreadPool(config.getSites().size());
-		List<SiteMonitor> monitors = initializeSiteMonitors(config, maxFileSize, executor);
+		ExecutorService probeExecutor = ProbeEngine.createExecutor(config.getProbes());
+		var engine = new ProbeEngine(new ProbeTransport(config.getHttp(), probeExecutor), probeExecutor, config.getProbes());
+		// The scheduler only triggers probes; the probes themselves run asynchronously on the engine.
+		var probeScheduler = new ProbeScheduler(Duration.ofMillis(config.getProbes().getTick()), config.getProbes().getWheelSize(), probeExecutor);
+		System.out.printf("Scheduling probes on a timing wheel with %d slots of %d ms.\n", probeScheduler.getWheelSize(), probeScheduler.getTickDuration().toMillis());
+		var recorder = new MeasurementRecorder(config.getRecorder(), maxFileSize);
+		List<SiteMonitor> monitors = initializeSiteMonitors(config, engine, recorder, probeScheduler);
 		if (monitors.isEmpty()) {
 			System.err.println("No site monitors were initialized. Please add some and run again.");
 			return 1;
 		}
 		System.out.println("Started monitoring all configured sites.");
+		LiveServer liveServer = null;
+		if (config.getLive() != null) {
+			liveServer = new LiveServer(config.getLive(), monitors);
+			System.out.printf("Serving live measurements of the last %d results of each site at http://%s:%d%s\n", config.getLive().getSamples(), liveServer.getAddress().getHostString(), liveServer.getAddress().getPort(), LiveServer.PATH);
+		}
+		MetricsServer metricsServer = null;
+		if (config.getMetrics() != null) {
+			metricsServer = new MetricsServer(config.getMetrics());
+			System.out.printf("Serving metrics at http://%s:%d%s\n", metricsServer.getAddress().getHostString(), metricsServer.getAddress().getPort(), MetricsServer.PATH);
+		}
 		Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
-		if (config.getReports() != null && !config.getReports().isEmpty()) {
+		boolean hasReports = config.getReports() != null && !config.getReports().isEmpty();
+		if (hasReports) {
 			initializeReportGenerators(config, scheduler);
 		}
-		addShutdownHook(executor, monitors, scheduler);
+		if (config.getCompaction() != null) {
+			initializeCompaction(config.getCompaction(), recorder, scheduler);
+		}
+		if (hasReports || config.getCompaction() != null) {
+			scheduler.start();
+		}
+		addShutdownHook(probeScheduler, engine, recorder, scheduler, liveServer, metricsServer);
 		if (!ignoreCli) {
-			return this.runCLI(executor, monitors);
+			return this.runCLI(probeScheduler, engine, recorder, liveServer, metricsServer);
 		} else {
-			while (!executor.isTerminated()) {
+			while (!probeScheduler.isTerminated()) {
 				Thread.sleep(3000);
 			}
 			return 0;
@@ -92,21 +131,27 @@ public class UptimeMonitor implements Callable<Integer> {
 	 * Initializes a list of site monitors that periodically record performance
 	 * data for a site.
 	 * @param config The configuration.
-	 * @param maxFileSize The maximum file size, in bytes, for data files
-	 *                    generated by the site monitors.
-	 * @param executor The executor service to use to run the monitors.
+	 * @param engine The probe engine that all monitors send their probes to.
+	 * @param recorder The recorder that all monitors hand their results to.
+	 * @param probeScheduler The scheduler to use to trigger the monitors.
 	 * @return The list of monitors which were initialized.
 	 */
-	private List<SiteMonitor> initializeSiteMonitors(Config config, long maxFileSize, ScheduledExecutorService executor) {
+	private List<SiteMonitor> initializeSiteMonitors(Config config, ProbeEngine engine, MeasurementRecorder recorder, ProbeScheduler probeScheduler) {
 		List<SiteMonitor> monitors = new ArrayList<>(config.getSites().size());
 		for (var site : config.getSites()) {
-			System.out.printf("Initializing monitoring of site \"%s\" every %d seconds.\n", site.getName(), site.getInterval());
+			if (site.getAdaptive() != null) {
+				System.out.printf("Initializing adaptive monitoring of site \"%s\" every %d to %d seconds.\n", site.getName(), site.getAdaptive().getMinInterval(), site.getAdaptive().getMaxInterval());
+			} else {
+				System.out.printf("Initializing monitoring of site \"%s\" every %d seconds.\n", site.getName(), site.getInterval());
+			}
 			try {
-				var monitor = new SiteMonitor(site, maxFileSize);
-				executor.scheduleAtFixedRate(monitor::monitor, 0, site.getInterval(), TimeUnit.SECONDS);
+				var recentSamples = config.getLive() != null ? new RecentSamples(config.getLive().getSamples()) : null;
+				var monitor = new SiteMonitor(site, engine, recorder, recentSamples);
+				probeScheduler.scheduleRecurring(site.getName(), monitor::monitor, monitor::getIntervalMillis, Math.round(site.getJitter() * 1000));
 				monitors.add(monitor);
-			} catch (IOException e) {
-				System.err.println("An error occurred and the site monitor for site \"" + site.getName() + "\" could not be started.");
+			} catch (IOException | RuntimeException e) {
+				// An invalid site configuration only stops that site from being monitored.
+				System.err.println("An error occurred and the site monitor for site \"" + site.getName() + "\" could not be started: " + e.getMessage());
 			}
 		}
 		return monitors;
@@ -114,16 +159,18 @@ public class UptimeMonitor implements Callable<Integer> {
 
 	/**
 	 * Runs the command line interface.
-	 * @param executor The executor service that runs scheduled site monitoring
-	 *                 tasks.
-	 * @param monitors The list of active site monitors.
+	 * @param probeScheduler The scheduler that triggers site monitoring tasks.
+	 * @param engine The probe engine.
+	 * @param recorder The recorder that writes the results of probes.
+	 * @param liveServer The server for live measurements, or null.
+	 * @param metricsServer The server for metrics, or null.
 	 * @return The program return code.
 	 * @throws InterruptedException If the program is interrupted while waiting
 	 * for things to terminate.
 	 * @throws IOException If an error occurs while reading from or writing to
 	 * standard input/output.
 	 */
-	private int runCLI(ScheduledExecutorService executor, List<SiteMonitor> monitors) throws InterruptedException, IOException {
+	private int runCLI(ProbeScheduler probeScheduler, ProbeEngine engine, MeasurementRecorder recorder, LiveServer liveServer, MetricsServer metricsServer) throws InterruptedException, IOException {
 		String line;
 		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 		while ((line = reader.readLine()) != null) {
@@ -132,50 +179,64 @@ public class UptimeMonitor implements Callable<Integer> {
 			}
 		}
 		System.out.println("Stopping monitoring...");
-		executor.shutdown();
-		while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+		if (liveServer != null) liveServer.close();
+		if (metricsServer != null) metricsServer.close();
+		probeScheduler.close();
+		while (!probeScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
 			System.err.println("Waiting for all remaining tasks to finish...");
 		}
-		for (var monitor : monitors) {
-			monitor.close();
+		while (!engine.shutdown(10, TimeUnit.SECONDS)) {
+			System.err.println("Waiting for all remaining probes to finish...");
 		}
+		recorder.close();
 		return 0;
 	}
 
 	/**
-	 * Adds a JVM shutdown hook that shuts down the giving scheduler and the
-	 * list of site monitors.
-	 * @param executor The executor service.
-	 * @param monitors The list of active monitors.
+	 * Adds a JVM shutdown hook that shuts down the giving scheduler, and stops
+	 * monitoring, making sure that all results are written.
+	 * @param probeScheduler The probe scheduler.
+	 * @param engine The probe engine.
+	 * @param recorder The recorder that writes the results of probes.
 	 * @param scheduler The quartz scheduler.
+	 * @param liveServer The server for live measurements, or null.
+	 * @param metricsServer The server for metrics, or null.
 	 */
-	private void addShutdownHook(ExecutorService executor, List<SiteMonitor> monitors, Scheduler scheduler) {
+	private void addShutdownHook(ProbeScheduler probeScheduler, ProbeEngine engine, MeasurementRecorder recorder, Scheduler scheduler, LiveServer liveServer, MetricsServer metricsServer) {
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			executor.shutdown();
+			if (liveServer != null) liveServer.close();
+			if (metricsServer != null) metricsServer.close();
+			probeScheduler.close();
+			try {
+				engine.shutdown(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
 			try {
 				scheduler.shutdown();
 			} catch (SchedulerException e) {
 				e.printStackTrace();
 			}
-			for (var monitor : monitors) {
-				try {
-					monitor.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}));
 	}
 
 	/**
 	 * Initializes any configured report generators, by preparing and scheduling
-	 * a job for them according to their defined schedule.
+	 * a job for them according to their defined schedule. Reports with the same
+	 * interval are generated by a single job, so that each site's data is only
+	 * read once for all of them.
 	 * @param config The application configuration.
 	 * @param scheduler The scheduler to schedule report generators on.
 	 * @throws SchedulerException If an error occurs while scheduling jobs.
 	 */
 	private void initializeReportGenerators(Config config, Scheduler scheduler) throws SchedulerException {
 		var reportConfigs = config.getReports();
+		Map<Interval, List<ReportGenerator>> generatorsByInterval = new EnumMap<>(Interval.class);
 		for (var report : reportConfigs) {
 			if (report.getSites() == null || report.getSites().isEmpty()) throw new IllegalArgumentException("Missing sites for report " + report.getName());
 			Interval interval = Interval.valueOf(report.getInterval().trim().toUpperCase());
@@ -192,19 +253,48 @@ public class UptimeMonitor implements Callable<Integer> {
 					focusIntervals.add(new FocusInterval(from, to));
 				}
 			}
+			List<Grouping> groupings = new ArrayList<>();
+			if (report.getGroupBy() != null) {
+				for (var groupingString : report.getGroupBy()) {
+					groupings.add(Grouping.parse(groupingString));
+				}
+			}
+			var generator = new ReportGenerator(report.getName(), report.getSites(), format, span, focusIntervals, groupings, report.isIncludeEntries(), report.getDistributions(), config.getMail());
+			generatorsByInterval.computeIfAbsent(interval, i -> new ArrayList<>()).add(generator);
+		}
+		for (var entry : generatorsByInterval.entrySet()) {
+			String intervalName = entry.getKey().name().toLowerCase();
 			JobDetail job = JobBuilder.newJob(ReportGenerationJob.class)
-					.withIdentity("report-generation-" + report.getName(), "reports")
+					.withIdentity("report-generation-" + intervalName, "reports")
 					.build();
-			var generator = new ReportGenerator(report.getName(), report.getSites(), format, span, focusIntervals, report.getDistributions(), config.getMail());
-			job.getJobDataMap().put("generator", generator);
-			job.getJobDataMap().put("config", report);
+			job.getJobDataMap().put("generators", entry.getValue());
 			Trigger trigger = TriggerBuilder.newTrigger()
-					.withIdentity("report-generation-trigger-" + report.getName(), "report-triggers")
-					.withSchedule(interval.getSchedule())
+					.withIdentity("report-generation-trigger-" + intervalName, "report-triggers")
+					.withSchedule(entry.getKey().getSchedule())
 					.build();
 			scheduler.scheduleJob(job, trigger);
 		}
-		scheduler.start();
+	}
+
+	/**
+	 * Initializes the compaction of old measurement data, by scheduling a job
+	 * for it according to its configured schedule.
+	 * @param config The compaction configuration.
+	 * @param recorder The recorder whose sites to compact.
+	 * @param scheduler The scheduler to schedule the compaction job on.
+	 * @throws SchedulerException If an error occurs while scheduling the job.
+	 */
+	private void initializeCompaction(CompactionConfig config, MeasurementRecorder recorder, Scheduler scheduler) throws SchedulerException {
+		JobDetail job = JobBuilder.newJob(CompactionJob.class)
+				.withIdentity("compaction", "storage")
+				.build();
+		job.getJobDataMap().put("compactor", new Compactor(config, recorder));
+		Trigger trigger = TriggerBuilder.newTrigger()
+				.withIdentity("compaction-trigger", "storage-triggers")
+				.withSchedule(CronScheduleBuilder.cronSchedule(config.getSchedule()).inTimeZone(TimeZone.getTimeZone(ZoneOffset.UTC)))
+				.build();
+		scheduler.scheduleJob(job, trigger);
+		System.out.printf("Scheduled compaction of data older than %s into minute summaries, and older than %s into hour summaries.\n", config.getRawRetention(), config.getMinuteRetention());
 	}
 
 	public static void main(String[] args) {
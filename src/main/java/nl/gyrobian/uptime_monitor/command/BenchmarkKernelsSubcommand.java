@@ -0,0 +1,117 @@
+package nl.gyrobian.uptime_monitor.command;
+
+import nl.gyrobian.uptime_monitor.data.AggregationKernels;
+import picocli.CommandLine;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures how fast the aggregation kernels are over synthetic entries, with
+ * the scalar kernels and, if the vector module is available, the vectorized
+ * kernels. Entries are processed in batches, just like when aggregating.
+ */
+@CommandLine.Command(
+		name = "benchmark-kernels",
+		description = "Measure the speed of the aggregation kernels on synthetic data."
+)
+public class BenchmarkKernelsSubcommand implements Callable<Integer> {
+	/**
+	 * The number of distinct batches of synthetic data, which are cycled
+	 * through until the requested number of rows is processed.
+	 */
+	private static final int POOL_BATCHES = 1024;
+
+	@CommandLine.Option(names = {"--rows"}, description = "The number of rows to process per iteration.", defaultValue = "20000000")
+	long rows;
+
+	@CommandLine.Option(names = {"--iterations"}, description = "The number of timed iterations, after one warm-up iteration.", defaultValue = "5")
+	int iterations;
+
+	@CommandLine.Option(names = {"--batch-size"}, description = "The number of rows per batch.", defaultValue = "1024")
+	int batchSize;
+
+	private record Kernel(String name, ToLongFunction<AggregationKernels> function) {}
+
+	@Override
+	public Integer call() {
+		if (rows < 1 || iterations < 1 || batchSize < 1) throw new IllegalArgumentException("Rows, iterations and batch size must be positive.");
+		var random = new Random(42);
+		int[][] codes = new int[POOL_BATCHES][batchSize];
+		int[][] times = new int[POOL_BATCHES][batchSize];
+		long[][] timings = new long[POOL_BATCHES][batchSize];
+		long[][] localMillis = new long[POOL_BATCHES][batchSize];
+		for (int b = 0; b < POOL_BATCHES; b++) {
+			for (int i = 0; i < batchSize; i++) {
+				codes[b][i] = random.nextInt(100) < 2 ? 503 : 200;
+				times[b][i] = codes[b][i] == 503 && random.nextBoolean() ? -1 : 20 + random.nextInt(500);
+				timings[b][i] = random.nextInt(10) == 0 ? -1 : random.nextInt(50_000);
+				localMillis[b][i] = random.nextInt(86_400_000);
+			}
+		}
+		long batches = (rows + batchSize - 1) / batchSize;
+		List<Kernel> kernels = List.of(
+				new Kernel("sumNonNegativeInt", k -> {
+					long result = 0;
+					for (long b = 0; b < batches; b++) result += k.sumNonNegative(times[(int) (b % POOL_BATCHES)], batchSize);
+					return result;
+				}),
+				new Kernel("countAtLeast", k -> {
+					long result = 0;
+					for (long b = 0; b < batches; b++) result += k.countAtLeast(codes[(int) (b % POOL_BATCHES)], batchSize, 400);
+					return result;
+				}),
+				new Kernel("sumNonNegative", k -> {
+					long result = 0;
+					for (long b = 0; b < batches; b++) result += k.sumNonNegative(timings[(int) (b % POOL_BATCHES)], batchSize);
+					return result;
+				}),
+				new Kernel("countNonNegative", k -> {
+					long result = 0;
+					for (long b = 0; b < batches; b++) result += k.countNonNegative(timings[(int) (b % POOL_BATCHES)], batchSize);
+					return result;
+				}),
+				new Kernel("countInRange", k -> {
+					long result = 0;
+					for (long b = 0; b < batches; b++) result += k.countInRange(localMillis[(int) (b % POOL_BATCHES)], batchSize, 28_800_000, 64_800_000);
+					return result;
+				})
+		);
+
+		boolean vectorAvailable = AggregationKernels.isVectorAvailable();
+		System.out.printf("Processing %d rows in batches of %d, %d iterations.\n", batches * batchSize, batchSize, iterations);
+		if (!vectorAvailable) {
+			System.out.println("The vector module is not available, so only the scalar kernels are measured. Run with \"--add-modules jdk.incubator.vector\" to enable it.");
+		}
+		for (var kernel : kernels) {
+			double scalarMillis = measure(kernel, AggregationKernels.scalar());
+			if (vectorAvailable) {
+				double vectorMillis = measure(kernel, AggregationKernels.get());
+				System.out.printf("%-18s scalar %9.2f ms, vector %9.2f ms, speedup %.2fx\n", kernel.name(), scalarMillis, vectorMillis, scalarMillis / vectorMillis);
+			} else {
+				System.out.printf("%-18s scalar %9.2f ms\n", kernel.name(), scalarMillis);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Measures a kernel, after running it once to warm up.
+	 * @param kernel The kernel.
+	 * @param kernels The kernels to use.
+	 * @return The fastest time of all iterations, in milliseconds.
+	 */
+	private double measure(Kernel kernel, AggregationKernels kernels) {
+		long expected = kernel.function().applyAsLong(kernels);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			long result = kernel.function().applyAsLong(kernels);
+			best = Math.min(best, System.nanoTime() - start);
+			if (result != expected) throw new IllegalStateException("Kernel " + kernel.name() + " gave inconsistent results.");
+		}
+		return best / 1_000_000.0;
+	}
+}
@@ -3,8 +3,10 @@ package nl.gyrobian.uptime_monitor.command;
 import nl.gyrobian.uptime_monitor.UptimeMonitor;
 import nl.gyrobian.uptime_monitor.config.Config;
 import nl.gyrobian.uptime_monitor.data.FocusInterval;
+import nl.gyrobian.uptime_monitor.data.Grouping;
 import nl.gyrobian.uptime_monitor.report.Format;
 import nl.gyrobian.uptime_monitor.report.ReportGenerator;
+import nl.gyrobian.uptime_monitor.report.ReportPlanner;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
@@ -30,6 +32,8 @@ public class GenerateReportsSubcommand implements Callable<Integer> {
 			return 1;
 		}
 
+		// All reports are generated together, so that each site's data is only read once.
+		List<ReportGenerator> generators = new ArrayList<>();
 		for (var report : config.getReports()) {
 			if (report.getSites() == null || report.getSites().isEmpty()) throw new IllegalArgumentException("Missing sites for report " + report.getName());
 			Format format = Format.valueOf(report.getFormat().trim().toUpperCase());
@@ -45,9 +49,16 @@ public class GenerateReportsSubcommand implements Callable<Integer> {
 					focusIntervals.add(new FocusInterval(from, to));
 				}
 			}
-			var generator = new ReportGenerator(report.getName(), report.getSites(), format, span, focusIntervals, report.getDistributions(), config.getMail());
-			generator.generate();
+			List<Grouping> groupings = new ArrayList<>();
+			if (report.getGroupBy() != null) {
+				for (var groupingString : report.getGroupBy()) {
+					groupings.add(Grouping.parse(groupingString));
+				}
+			}
+			var generator = new ReportGenerator(report.getName(), report.getSites(), format, span, focusIntervals, groupings, report.isIncludeEntries(), report.getDistributions(), config.getMail());
+			generators.add(generator);
 		}
+		ReportPlanner.generate(generators);
 
 		return 0;
 	}
@@ -3,8 +3,13 @@ package nl.gyrobian.uptime_monitor.command;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import nl.gyrobian.uptime_monitor.LiveServer;
+import nl.gyrobian.uptime_monitor.UptimeMonitor;
 import nl.gyrobian.uptime_monitor.command.format.PdfWriter;
 import nl.gyrobian.uptime_monitor.command.format.PerformanceDataWriter;
+import nl.gyrobian.uptime_monitor.config.Config;
+import nl.gyrobian.uptime_monitor.data.Grouping;
+import nl.gyrobian.uptime_monitor.data.LiveData;
 import nl.gyrobian.uptime_monitor.data.MeasurementService;
 import nl.gyrobian.uptime_monitor.data.ReportData;
 import picocli.CommandLine;
@@ -12,9 +17,18 @@ import picocli.CommandLine;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -32,6 +46,9 @@ public class MeasureSubcommand implements Callable<Integer> {
 			Format.PDF, new PdfWriter()
 	);
 
+	@CommandLine.ParentCommand
+	UptimeMonitor uptimeMonitor;
+
 	@CommandLine.Parameters(index = "0", description = "The name of the site to measure.")
 	String siteName;
 
@@ -47,8 +64,22 @@ public class MeasureSubcommand implements Callable<Integer> {
 	@CommandLine.Option(names = {"-o", "--output"}, description = "The file to which the results should be written.")
 	Path outputPath;
 
+	@CommandLine.Option(names = {"--group-by"}, description = "Break the entries down by hour-of-day, weekday and/or status-class.", split = ",")
+	List<String> groupBy;
+
+	@CommandLine.Option(names = {"--include-entries"}, description = "Include every individual entry in the results. Only used by the JSON format.", defaultValue = "false")
+	boolean includeEntries;
+
+	@CommandLine.Option(names = {"--live"}, description = "Measure the most recent results that the running monitor keeps in memory, instead of the recorded files. Only the TEXT and JSON formats are supported.", defaultValue = "false")
+	boolean live;
+
+	@CommandLine.Option(names = {"--window"}, description = "How far back to include results in a live measurement, as an ISO-8601 duration.", defaultValue = "PT1H")
+	String window;
+
 	@Override
 	public Integer call() throws Exception {
+		if (live) return this.measureLive();
+
 		LocalDate measurementStartDate = null;
 		LocalDate measurementEndDate = null;
 
@@ -59,7 +90,14 @@ public class MeasureSubcommand implements Callable<Integer> {
 			measurementEndDate = LocalDate.parse(endDate);
 		}
 
-		var data = new MeasurementService().getData(siteName, measurementStartDate, measurementEndDate, List.of());
+		List<Grouping> groupings = new ArrayList<>();
+		if (groupBy != null) {
+			for (var groupingString : groupBy) {
+				groupings.add(Grouping.parse(groupingString));
+			}
+		}
+
+		var data = new MeasurementService().getData(siteName, measurementStartDate, measurementEndDate, List.of(), groupings, includeEntries && format == Format.JSON);
 		OutputStream out = outputPath == null ? System.out : Files.newOutputStream(outputPath);
 		var writer = formatWriters.get(format);
 		writer.write(data, out);
@@ -67,11 +105,85 @@ public class MeasureSubcommand implements Callable<Integer> {
 		return 0;
 	}
 
+	/**
+	 * Requests a live measurement of the site from the running monitor, and
+	 * writes it to the output.
+	 * @return The program return code.
+	 * @throws IOException If the measurement could not be written.
+	 * @throws InterruptedException If interrupted while waiting for the
+	 * monitor to respond.
+	 */
+	private int measureLive() throws IOException, InterruptedException {
+		if (format == Format.PDF) {
+			System.err.println("Live measurements can only be written as TEXT or JSON.");
+			return 1;
+		}
+		var config = Config.load(Path.of(uptimeMonitor.configPath));
+		if (config == null) {
+			System.err.println("Could not load configuration.");
+			return 1;
+		}
+		if (config.getLive() == null) {
+			System.err.println("Live measurements are not enabled in the configuration.");
+			return 1;
+		}
+		var uri = URI.create(String.format("http://%s:%d%s%s?window=%s",
+				config.getLive().getHost(),
+				config.getLive().getPort(),
+				LiveServer.PATH,
+				URLEncoder.encode(siteName, StandardCharsets.UTF_8).replace("+", "%20"),
+				URLEncoder.encode(Duration.parse(window).toString(), StandardCharsets.UTF_8)
+		));
+		HttpResponse<String> response;
+		try {
+			response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+		} catch (ConnectException e) {
+			System.err.println("Could not connect to the running monitor at " + uri);
+			return 1;
+		}
+		if (response.statusCode() != 200) {
+			System.err.println(response.body());
+			return 1;
+		}
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new JavaTimeModule());
+		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+		var data = mapper.readValue(response.body(), LiveData.class);
+		OutputStream out = outputPath == null ? System.out : Files.newOutputStream(outputPath);
+		if (format == Format.JSON) {
+			mapper.writerWithDefaultPrettyPrinter().writeValue(out, data);
+			out.close();
+			return 0;
+		}
+		PrintWriter pw = new PrintWriter(out, false);
+		var performance = data.performance();
+		pw.printf("Live performance data for site %s over the last %s, generated in %d us.\n", data.siteName(), data.window(), data.measurementMicros());
+		pw.printf("Average response time: %.2f (ms)\nPercent of requests that were successful: %.2f\nUptime: %.4f%%\n", performance.averageResponseTime(), performance.successPercent(), performance.uptimePercent());
+		var percentiles = performance.responseTimePercentiles();
+		pw.printf("Response time percentiles: p50 %s, p95 %s, p99 %s\n", ReportData.PhaseTimes.format(percentiles.p50()), ReportData.PhaseTimes.format(percentiles.p95()), ReportData.PhaseTimes.format(percentiles.p99()));
+		pw.printf("Total number of entries: %d\n", performance.entryCount());
+		var phases = performance.averagePhaseTimes();
+		pw.printf("Average phase times: DNS %s, connect %s, TLS %s, time to first byte %s, body %s\n", ReportData.PhaseTimes.format(phases.dns()), ReportData.PhaseTimes.format(phases.connect()), ReportData.PhaseTimes.format(phases.tls()), ReportData.PhaseTimes.format(phases.timeToFirstByte()), ReportData.PhaseTimes.format(phases.body()));
+		pw.close();
+		return 0;
+	}
+
 	private static void writeText(ReportData data, OutputStream out) {
 		PrintWriter pw = new PrintWriter(out, false);
 		pw.printf("Performance data for site %s from %s to %s, generated in %d ms.\n", data.siteName(), data.startDate(), data.endDate(), data.measurementDuration());
 		pw.printf("Average response time: %.2f (ms)\nPercent of requests that were successful: %.2f\n", data.aggregatePerformance().averageResponseTime(), data.aggregatePerformance().successPercent());
-		pw.printf("Total number of entries: %d\n", data.entries().length);
+		var percentiles = data.aggregatePerformance().responseTimePercentiles();
+		pw.printf("Response time percentiles: p50 %s, p95 %s, p99 %s\n", ReportData.PhaseTimes.format(percentiles.p50()), ReportData.PhaseTimes.format(percentiles.p95()), ReportData.PhaseTimes.format(percentiles.p99()));
+		pw.printf("Total number of entries: %d\n", data.aggregatePerformance().entryCount());
+		var phases = data.aggregatePerformance().averagePhaseTimes();
+		pw.printf("Average phase times: DNS %s, connect %s, TLS %s, time to first byte %s, body %s\n", ReportData.PhaseTimes.format(phases.dns()), ReportData.PhaseTimes.format(phases.connect()), ReportData.PhaseTimes.format(phases.tls()), ReportData.PhaseTimes.format(phases.timeToFirstByte()), ReportData.PhaseTimes.format(phases.body()));
+		for (var grouping : data.groupedPerformanceData().entrySet()) {
+			pw.printf("Breakdown by %s:\n", grouping.getKey().name().toLowerCase().replace('_', ' '));
+			for (var group : grouping.getValue().entrySet()) {
+				var d = group.getValue();
+				pw.printf("  %-9s uptime %.4f%%, success %.2f%%, average response time %.2f (ms), p95 %s, %d entries\n", group.getKey(), d.uptimePercent(), d.successPercent(), d.averageResponseTime(), ReportData.PhaseTimes.format(d.responseTimePercentiles().p95()), d.entryCount());
+			}
+		}
 		pw.close();
 	}
 
@@ -127,12 +127,13 @@ public class PdfWriter implements PerformanceDataWriter {
 		}
 		table.addHeaderRow(headerRow);
 
-		for (var entry : data.entries()) {
+		var entries = data.entries();
+		for (int i = 0; i < entries.size(); i++) {
 			Row<PDPage> row = table.createRow(10);
-			row.createCell(entry.timestamp().toString());
-			row.createCell(entry.url());
-			row.createCell(String.valueOf(entry.responseCode()));
-			row.createCell(String.valueOf(entry.responseTime()));
+			row.createCell(entries.timestamp(i).toString());
+			row.createCell(entries.url(i));
+			row.createCell(String.valueOf(entries.responseCode(i)));
+			row.createCell(String.valueOf(entries.responseTime(i)));
 			for (var cell : row.getCells()) {
 				cell.setTopPadding(2);
 				cell.setBottomPadding(2);
@@ -149,6 +150,9 @@ public class PdfWriter implements PerformanceDataWriter {
 		writeMonospaceBold(cs, String.format("%.4f%%", d.uptimePercent()));
 		writeLine(cs, -16, "Average Response Time: ");
 		writeMonospaceBold(cs, String.format("%.4f ms", d.averageResponseTime()));
+		var percentiles = d.responseTimePercentiles();
+		writeLine(cs, -16, "Response Time p50 / p95 / p99: ");
+		writeMonospaceBold(cs, String.format("%s / %s / %s", ReportData.PhaseTimes.format(percentiles.p50()), ReportData.PhaseTimes.format(percentiles.p95()), ReportData.PhaseTimes.format(percentiles.p99())));
 		writeLine(cs, -16, "Successful Request Percentage: ");
 		writeMonospaceBold(cs, String.format("%.2f%%", d.successPercent()));
 		writeLine(cs, -16, "Total Uptime: ");
@@ -157,6 +161,11 @@ public class PdfWriter implements PerformanceDataWriter {
 		writeMonospaceBold(cs, String.format("%dd %02dh %02dm %02ds", d.totalDowntime().toDays(), d.totalDowntime().toHoursPart(), d.totalDowntime().toMinutesPart(), d.totalDowntime().toSecondsPart()));
 		writeLine(cs, -16, "Total Measurements Recorded: ");
 		writeMonospaceBold(cs, String.valueOf(d.entryCount()));
+		var phases = d.averagePhaseTimes();
+		writeLine(cs, -16, "Average DNS / Connect / TLS Time: ");
+		writeMonospaceBold(cs, String.format("%s / %s / %s", ReportData.PhaseTimes.format(phases.dns()), ReportData.PhaseTimes.format(phases.connect()), ReportData.PhaseTimes.format(phases.tls())));
+		writeLine(cs, -16, "Average Time to First Byte / Body Time: ");
+		writeMonospaceBold(cs, String.format("%s / %s", ReportData.PhaseTimes.format(phases.timeToFirstByte()), ReportData.PhaseTimes.format(phases.body())));
 	}
 
 	private void writeLine(PDPageContentStream cs, float tx, float ty, PDFont font, float fontSize, String text) throws IOException {
@@ -0,0 +1,38 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Configuration for adaptive probing of a site, where the site is probed more
+ * often right after a failure or latency spike, and less often while it is
+ * stable.
+ */
+@Data
+public class AdaptiveConfig {
+	/**
+	 * The interval, in seconds, that is used right after a failure or a
+	 * latency spike.
+	 */
+	@JsonProperty("min-interval")
+	private int minInterval = 10;
+
+	/**
+	 * The interval, in seconds, that is backed off to while the site is
+	 * stable.
+	 */
+	@JsonProperty("max-interval")
+	private int maxInterval = 300;
+
+	/**
+	 * The factor by which the interval grows after each successful probe.
+	 */
+	private double backoff = 2.0;
+
+	/**
+	 * A probe counts as a latency spike if its response time is more than this
+	 * many times the recent average response time.
+	 */
+	@JsonProperty("latency-spike-factor")
+	private double latencySpikeFactor = 3.0;
+}
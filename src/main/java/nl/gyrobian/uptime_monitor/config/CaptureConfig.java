@@ -0,0 +1,37 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Configuration for how much of a site's response body is captured and
+ * recorded as response details.
+ */
+@Data
+public class CaptureConfig {
+	/**
+	 * The media types of responses whose body should be captured. A media type
+	 * without parameters matches responses with any parameters, while a media
+	 * type with parameters (like "application/json; charset=utf-8") only
+	 * matches responses that have those same parameters. The subtype may be
+	 * "*" to match any subtype.
+	 */
+	@JsonProperty("media-types")
+	private List<String> mediaTypes = List.of("application/json");
+
+	/**
+	 * The maximum number of bytes of a body that are captured. Anything beyond
+	 * this is discarded as it arrives.
+	 */
+	@JsonProperty("max-bytes")
+	private int maxBytes = 4096;
+
+	/**
+	 * An optional JSON pointer, like "/status". If set, only the value at this
+	 * location in the captured JSON body is recorded, instead of the body.
+	 */
+	@JsonProperty("json-pointer")
+	private String jsonPointer;
+}
@@ -0,0 +1,38 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Configuration for the compaction of old measurement data. Entries are rolled
+ * into per-minute summaries once they're older than the raw retention, and
+ * those are rolled into per-hour summaries once they're older than the minute
+ * retention. All retentions are ISO-8601 periods, like "P7D".
+ */
+@Data
+public class CompactionConfig {
+	/**
+	 * A Quartz cron expression for when to run compaction, in UTC.
+	 */
+	private String schedule = "0 30 1 * * ?";
+
+	/**
+	 * How long entries are kept before they're rolled into minute summaries.
+	 */
+	@JsonProperty("raw-retention")
+	private String rawRetention = "P7D";
+
+	/**
+	 * How long minute summaries are kept before they're rolled into hour
+	 * summaries.
+	 */
+	@JsonProperty("minute-retention")
+	private String minuteRetention = "P90D";
+
+	/**
+	 * How long hour summaries are kept before they're deleted. If not set,
+	 * they're kept forever.
+	 */
+	@JsonProperty("hour-retention")
+	private String hourRetention;
+}
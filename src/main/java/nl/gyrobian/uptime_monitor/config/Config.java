@@ -18,6 +18,12 @@ public class Config {
 	}
 
 	private String maxFileSize;
+	private HttpConfig http = new HttpConfig();
+	private ProbeConfig probes = new ProbeConfig();
+	private RecorderConfig recorder = new RecorderConfig();
+	private CompactionConfig compaction;
+	private LiveConfig live;
+	private MetricsConfig metrics;
 	private List<SiteConfig> sites;
 	private List<ReportConfig> reports;
 
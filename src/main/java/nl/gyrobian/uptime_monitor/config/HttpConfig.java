@@ -0,0 +1,37 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Configuration for the shared HTTP client that is used by all site monitors
+ * to send their requests.
+ */
+@Data
+public class HttpConfig {
+	/**
+	 * The maximum number of idle HTTP/1.1 connections that are kept open in
+	 * the shared pool. A value of 0 means that the pool is unbounded.
+	 */
+	@JsonProperty("connection-pool-size")
+	private int connectionPoolSize = 0;
+
+	/**
+	 * The number of seconds that an idle connection is kept in the pool before
+	 * it is closed.
+	 */
+	@JsonProperty("keep-alive-timeout")
+	private int keepAliveTimeout = 1200;
+
+	/**
+	 * The number of seconds to wait for a connection to be established.
+	 */
+	@JsonProperty("connect-timeout")
+	private int connectTimeout = 5;
+
+	/**
+	 * The number of seconds to wait for a response to a single request.
+	 */
+	@JsonProperty("request-timeout")
+	private int requestTimeout = 5;
+}
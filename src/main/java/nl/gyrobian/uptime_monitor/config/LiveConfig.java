@@ -0,0 +1,28 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import lombok.Data;
+
+/**
+ * Configuration for live measurements, which are computed from the most
+ * recent results of each site that the running monitor keeps in memory, and
+ * served to the {@code measure --live} command on a local port.
+ */
+@Data
+public class LiveConfig {
+	/**
+	 * The address on which live measurements are served. This should be a
+	 * loopback address, since the server has no authentication.
+	 */
+	private String host = "127.0.0.1";
+
+	/**
+	 * The port on which live measurements are served.
+	 */
+	private int port = 9180;
+
+	/**
+	 * The number of most recent results that are kept in memory for each
+	 * site. This is rounded up to a power of two.
+	 */
+	private int samples = 4096;
+}
@@ -0,0 +1,21 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import lombok.Data;
+
+/**
+ * Configuration for the metrics endpoint, which serves the running monitor's
+ * counters, gauges and histograms in the Prometheus text format.
+ */
+@Data
+public class MetricsConfig {
+	/**
+	 * The address on which metrics are served. Use "0.0.0.0" to let
+	 * Prometheus scrape them from another machine.
+	 */
+	private String host = "127.0.0.1";
+
+	/**
+	 * The port on which metrics are served.
+	 */
+	private int port = 9181;
+}
@@ -0,0 +1,35 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Configuration for the probe engine, which sends the requests for all site
+ * monitors.
+ */
+@Data
+public class ProbeConfig {
+	/**
+	 * The maximum number of probes that may be in flight at the same time,
+	 * across all sites. Probes beyond this limit wait until a slot frees up.
+	 */
+	@JsonProperty("max-concurrent")
+	private int maxConcurrent = 256;
+
+	/**
+	 * The number of threads used to process probe responses. A value of 0
+	 * means that the number of available processors is used.
+	 */
+	private int threads = 0;
+
+	/**
+	 * The resolution of the probe scheduler, in milliseconds.
+	 */
+	private int tick = 100;
+
+	/**
+	 * The number of slots in the probe scheduler's timing wheel.
+	 */
+	@JsonProperty("wheel-size")
+	private int wheelSize = 512;
+}
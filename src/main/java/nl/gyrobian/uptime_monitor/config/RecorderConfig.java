@@ -0,0 +1,45 @@
+package nl.gyrobian.uptime_monitor.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Configuration for the recorder, which writes the results of probes to disk
+ * in batches.
+ */
+@Data
+public class RecorderConfig {
+	/**
+	 * The maximum number of results that are written in a single batch.
+	 */
+	@JsonProperty("batch-size")
+	private int batchSize = 512;
+
+	/**
+	 * How often buffered results are flushed to their files, in milliseconds.
+	 */
+	@JsonProperty("flush-interval")
+	private int flushInterval = 1000;
+
+	/**
+	 * How often flushed results are forced to the storage device with fsync,
+	 * in milliseconds. A value of 0 means that files are only synced when they
+	 * are rolled over or closed.
+	 */
+	@JsonProperty("fsync-interval")
+	private int fsyncInterval = 10000;
+
+	/**
+	 * The maximum number of results that may wait to be written. If the queue
+	 * is full, further results are dropped until the writer catches up.
+	 */
+	@JsonProperty("queue-capacity")
+	private int queueCapacity = 65536;
+
+	/**
+	 * The format in which records are stored. Can be "CSV", or "BINARY" for
+	 * fixed-width binary segments which are faster to read, but which don't
+	 * store response details.
+	 */
+	private String format = "CSV";
+}
@@ -16,6 +16,20 @@ public class ReportConfig {
 	@JsonProperty("focus-intervals")
 	private List<String> focusIntervals;
 
+	/**
+	 * The groupings to break each site's entries down by, like "hour-of-day",
+	 * "weekday" or "status-class".
+	 */
+	@JsonProperty("group-by")
+	private List<String> groupBy;
+
+	/**
+	 * Whether to include every individual entry in the report. Only used by
+	 * the JSON format.
+	 */
+	@JsonProperty("include-entries")
+	private boolean includeEntries = false;
+
 	@JsonProperty("distribution")
 	private List<ReportDistributionConfig> distributions;
 }
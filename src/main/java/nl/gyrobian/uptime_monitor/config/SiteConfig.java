@@ -7,4 +7,18 @@ public class SiteConfig {
 	private String name;
 	private String url;
 	private int interval;
+	/**
+	 * The maximum random offset, in seconds, that is applied in either
+	 * direction to each probe of this site.
+	 */
+	private double jitter = 0;
+	/**
+	 * Settings for capturing the response body as response details.
+	 */
+	private CaptureConfig capture = new CaptureConfig();
+	/**
+	 * Optional settings for adaptive probing. If not set, the site is always
+	 * probed at its fixed interval.
+	 */
+	private AdaptiveConfig adaptive;
 }
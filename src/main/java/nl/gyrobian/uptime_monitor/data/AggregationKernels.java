@@ -0,0 +1,79 @@
+package nl.gyrobian.uptime_monitor.data;
+
+/**
+ * Computations over columns of entry fields that aggregates are built from.
+ * If the JVM was started with the incubating vector module enabled, using
+ * {@code --add-modules jdk.incubator.vector}, the computations use SIMD
+ * instructions. Otherwise, plain loops are used.
+ */
+public interface AggregationKernels {
+	/**
+	 * @param values The values.
+	 * @param length The number of values to include, from the start.
+	 * @return The sum of the values that are not negative.
+	 */
+	long sumNonNegative(int[] values, int length);
+
+	/**
+	 * @param values The values.
+	 * @param length The number of values to include, from the start.
+	 * @param threshold The threshold.
+	 * @return The number of values that are at least the threshold.
+	 */
+	int countAtLeast(int[] values, int length, int threshold);
+
+	/**
+	 * @param values The values.
+	 * @param length The number of values to include, from the start.
+	 * @return The sum of the values that are not negative.
+	 */
+	long sumNonNegative(long[] values, int length);
+
+	/**
+	 * @param values The values.
+	 * @param length The number of values to include, from the start.
+	 * @return The number of values that are not negative.
+	 */
+	int countNonNegative(long[] values, int length);
+
+	/**
+	 * @param values The values.
+	 * @param length The number of values to include, from the start.
+	 * @param min The minimum value, inclusive.
+	 * @param max The maximum value, inclusive.
+	 * @return The number of values within the range.
+	 */
+	int countInRange(long[] values, int length, long min, long max);
+
+	/**
+	 * @return The kernels to use, which are the vectorized kernels if the
+	 * vector module is available.
+	 */
+	static AggregationKernels get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * @return The scalar kernels, which are always available.
+	 */
+	static AggregationKernels scalar() {
+		return ScalarKernels.INSTANCE;
+	}
+
+	/**
+	 * @return True if the vector module is available.
+	 */
+	static boolean isVectorAvailable() {
+		return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	}
+
+	/**
+	 * Lazily selects the kernels, so that the vectorized kernels are never
+	 * loaded if the vector module is not available.
+	 */
+	final class Holder {
+		private static final AggregationKernels INSTANCE = isVectorAvailable() ? new VectorKernels() : ScalarKernels.INSTANCE;
+
+		private Holder() {}
+	}
+}
@@ -0,0 +1,48 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregated measurements for a site during the days that aren't over yet,
+ * together with how far each of the site's segments has been read, so that a
+ * later measurement can continue from where this one left off, and only read
+ * the entries that were written since.
+ * @param startDate The first day of the checkpoint, inclusive.
+ * @param endDate The last day of the checkpoint, inclusive.
+ * @param focusIntervals The focus intervals that the checkpoint was built for.
+ * @param groupings The groupings that the checkpoint was built for, which
+ *                  are all {@link Grouping#isStoredInRollups() stored in
+ *                  rollups}.
+ * @param positions The offset up to which each segment was read, by the name
+ *                  of the segment file.
+ * @param summaryFiles The names of the summary files with data for the
+ *                     checkpoint's days. The checkpoint is only valid as long
+ *                     as these don't change.
+ * @param rollups The rollups of the checkpoint's days, ordered by day.
+ */
+public record Checkpoint(
+		LocalDate startDate,
+		LocalDate endDate,
+		List<FocusInterval> focusIntervals,
+		List<Grouping> groupings,
+		Map<String, Long> positions,
+		List<String> summaryFiles,
+		List<DailyRollup> rollups
+) {
+	/**
+	 * @param intervals A collection of focus intervals.
+	 * @param groupings A collection of groupings.
+	 * @return True if this checkpoint was built for every given focus
+	 * interval, and for every given grouping that is stored in rollups.
+	 */
+	public boolean covers(Collection<FocusInterval> intervals, Collection<Grouping> groupings) {
+		if (!this.focusIntervals.containsAll(intervals)) return false;
+		for (var grouping : groupings) {
+			if (grouping.isStoredInRollups() && !this.groupings.contains(grouping)) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,131 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the entries and summaries of a single site into a separate
+ * {@link SiteAggregator} for each day in a range of days, by the local date
+ * of each entry, so that the daily rollups for the whole range can be built
+ * in a single pass over the site's data.
+ */
+class DailyAggregator implements PartialAggregator<DailyAggregator> {
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	private final LocalDate startDate;
+	private final List<FocusInterval> focusIntervals;
+	private final List<Grouping> groupings;
+	private final long startEpochDay;
+	private final SiteAggregator[] days;
+	/**
+	 * The index of the day that was last given an entry row, which is flushed
+	 * before any other day is given anything, since all days share one batch.
+	 */
+	private int currentDay = -1;
+
+	/**
+	 * Constructs the aggregator.
+	 * @param startDate The first day, inclusive.
+	 * @param endDate The last day, inclusive.
+	 * @param focusIntervals The focus intervals to compute separate
+	 *                       statistics for.
+	 * @param groupings The groupings to compute separate statistics for,
+	 *                  which should be stored in rollups.
+	 */
+	DailyAggregator(LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, List<Grouping> groupings) {
+		this.startDate = startDate;
+		this.focusIntervals = focusIntervals;
+		this.groupings = groupings;
+		this.startEpochDay = startDate.toEpochDay();
+		this.days = new SiteAggregator[(int) ChronoUnit.DAYS.between(startDate, endDate) + 1];
+		var batch = new EntryBatch();
+		var focusIntervalTable = focusIntervals.isEmpty() ? null : new FocusIntervalTable(focusIntervals);
+		for (int i = 0; i < this.days.length; i++) {
+			var date = startDate.plusDays(i);
+			this.days[i] = new SiteAggregator(date, date, focusIntervals, focusIntervalTable, groupings, false, batch);
+		}
+	}
+
+	@Override
+	public DailyAggregator newPartial() {
+		return new DailyAggregator(this.startDate, this.startDate.plusDays(this.days.length - 1), this.focusIntervals, this.groupings);
+	}
+
+	@Override
+	public void merge(DailyAggregator next) {
+		this.flush();
+		next.flush();
+		for (int i = 0; i < this.days.length; i++) {
+			this.days[i].merge(next.days[i]);
+		}
+	}
+
+	@Override
+	public boolean needsEntries() {
+		return false;
+	}
+
+	@Override
+	public void accept(MonitorEntry entry) {
+		this.flush();
+		var day = this.dayOf(entry.timestamp());
+		if (day != null) day.accept(entry);
+	}
+
+	@Override
+	public void accept(EntryRow row) {
+		long index = Math.floorDiv(row.localEpochMillis(), MILLIS_PER_DAY) - this.startEpochDay;
+		if (index < 0 || index >= this.days.length) return;
+		if (index != this.currentDay) {
+			this.flush();
+			this.currentDay = (int) index;
+		}
+		this.days[this.currentDay].accept(row);
+	}
+
+	@Override
+	public void accept(SummaryEntry summary) {
+		this.flush();
+		var day = this.dayOf(summary.bucketStart());
+		if (day != null) day.accept(summary);
+	}
+
+	/**
+	 * Adds the rollup of a day, which must have been built for the same focus
+	 * intervals and groupings as this aggregator.
+	 * @param rollup The rollup to add.
+	 */
+	void accept(DailyRollup rollup) {
+		this.flush();
+		long index = rollup.date().toEpochDay() - this.startEpochDay;
+		if (index >= 0 && index < this.days.length) this.days[(int) index].accept(rollup);
+	}
+
+	private void flush() {
+		if (this.currentDay >= 0) this.days[this.currentDay].flush();
+		this.currentDay = -1;
+	}
+
+	private SiteAggregator dayOf(OffsetDateTime timestamp) {
+		long localMillis = timestamp.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+		long index = Math.floorDiv(localMillis, MILLIS_PER_DAY) - this.startEpochDay;
+		return index >= 0 && index < this.days.length ? this.days[(int) index] : null;
+	}
+
+	/**
+	 * @return The rollups of all days. Days without data get an empty rollup,
+	 * so that they aren't scanned again.
+	 */
+	List<DailyRollup> getRollups() {
+		this.flush();
+		List<DailyRollup> rollups = new ArrayList<>();
+		for (int i = 0; i < this.days.length; i++) {
+			rollups.add(this.days[i].toRollup(this.startDate.plusDays(i)));
+		}
+		return rollups;
+	}
+}
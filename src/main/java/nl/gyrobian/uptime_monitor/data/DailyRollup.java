@@ -0,0 +1,36 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregated measurements for a site during a single day, by the local
+ * date of each entry, which reports use instead of the day's entries once the
+ * day is over.
+ * @param date The day.
+ * @param aggregate The aggregate of the day's entries and summaries.
+ * @param focusIntervals The aggregates of the parts of the day within each
+ *                       focus interval that the rollup was built for.
+ * @param groups The aggregates of every group of each grouping that the
+ *               rollup was built for, by the index of the group. Only
+ *               groupings that are {@link Grouping#isStoredInRollups() stored
+ *               in rollups} are included.
+ */
+public record DailyRollup(LocalDate date, PerformanceAggregate aggregate, Map<FocusInterval, PerformanceAggregate> focusIntervals, Map<Grouping, List<PerformanceAggregate>> groups) {
+	/**
+	 * @param intervals A collection of focus intervals.
+	 * @param groupings A collection of groupings.
+	 * @return True if this rollup has an aggregate for every given focus
+	 * interval, and for the groups of every given grouping that is stored in
+	 * rollups.
+	 */
+	public boolean covers(Collection<FocusInterval> intervals, Collection<Grouping> groupings) {
+		if (!this.focusIntervals.keySet().containsAll(intervals)) return false;
+		for (var grouping : groupings) {
+			if (grouping.isStoredInRollups() && !this.groups.containsKey(grouping)) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,139 @@
+package nl.gyrobian.uptime_monitor.data;
+
+/**
+ * A fixed-size batch of entry fields, stored column by column, so that
+ * aggregates can be computed over many entries at once with
+ * {@link AggregationKernels}. Rows can be selected into another batch by a
+ * range of one of the columns, keeping their order.
+ */
+final class EntryBatch {
+	static final int CAPACITY = 1024;
+	private static final int PHASES = 5;
+
+	private final long[] epochMillis = new long[CAPACITY];
+	private final long[] localMillis = new long[CAPACITY];
+	private final long[] nanoOfDay = new long[CAPACITY];
+	private final int[] responseCodes = new int[CAPACITY];
+	private final int[] responseTimes = new int[CAPACITY];
+	private final long[][] timings = new long[PHASES][CAPACITY];
+	private final long[] keys = new long[CAPACITY];
+	private final int[] masks = new int[CAPACITY];
+	private int size = 0;
+	private EntryBatch scratch;
+
+	/**
+	 * Adds the fields of an entry.
+	 * @param row The fields of the entry.
+	 */
+	void add(EntryRow row) {
+		int i = this.size++;
+		this.epochMillis[i] = row.epochMillis();
+		this.localMillis[i] = row.localEpochMillis();
+		this.nanoOfDay[i] = row.localNanoOfDay();
+		this.responseCodes[i] = row.responseCode();
+		this.responseTimes[i] = row.responseTime();
+		for (int p = 0; p < PHASES; p++) {
+			this.timings[p][i] = row.timing(p);
+		}
+	}
+
+	/**
+	 * Copies the rows whose key is within a range into another batch, which
+	 * is cleared first.
+	 * @param keys One of the columns of this batch.
+	 * @param min The minimum key, inclusive.
+	 * @param max The maximum key, inclusive.
+	 * @param target The batch to copy the rows into.
+	 */
+	void selectInto(long[] keys, long min, long max, EntryBatch target) {
+		target.size = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (keys[i] < min || keys[i] > max) continue;
+			int j = target.size++;
+			target.epochMillis[j] = this.epochMillis[i];
+			target.localMillis[j] = this.localMillis[i];
+			target.nanoOfDay[j] = this.nanoOfDay[i];
+			target.responseCodes[j] = this.responseCodes[i];
+			target.responseTimes[j] = this.responseTimes[i];
+			for (int p = 0; p < PHASES; p++) {
+				target.timings[p][j] = this.timings[p][i];
+			}
+		}
+	}
+
+	/**
+	 * @return A batch that belongs to this one, for selecting rows into, which
+	 * is only allocated once it's needed.
+	 */
+	EntryBatch scratch() {
+		if (this.scratch == null) this.scratch = new EntryBatch();
+		return this.scratch;
+	}
+
+	void clear() {
+		this.size = 0;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	boolean isFull() {
+		return this.size == CAPACITY;
+	}
+
+	/**
+	 * @return The timestamps, in milliseconds since the epoch.
+	 */
+	long[] epochMillis() {
+		return this.epochMillis;
+	}
+
+	/**
+	 * @return The local dates and times of the timestamps, in their own
+	 * offsets, as milliseconds since 1970-01-01T00:00.
+	 */
+	long[] localMillis() {
+		return this.localMillis;
+	}
+
+	/**
+	 * @return The local times of the timestamps, in their own offsets, as
+	 * nanoseconds since midnight.
+	 */
+	long[] nanoOfDay() {
+		return this.nanoOfDay;
+	}
+
+	int[] responseCodes() {
+		return this.responseCodes;
+	}
+
+	int[] responseTimes() {
+		return this.responseTimes;
+	}
+
+	/**
+	 * @param phase The index of the phase.
+	 * @return The phase timings in microseconds, or -1 where not observed.
+	 */
+	long[] timings(int phase) {
+		return this.timings[phase];
+	}
+
+	/**
+	 * @return A column for computing keys to select rows by, which isn't
+	 * copied when rows are selected.
+	 */
+	long[] keys() {
+		return this.keys;
+	}
+
+	/**
+	 * @return A column for computing bit masks, which isn't copied when rows
+	 * are selected.
+	 */
+	int[] masks() {
+		return this.masks;
+	}
+}
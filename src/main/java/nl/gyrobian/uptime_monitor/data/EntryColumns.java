@@ -0,0 +1,354 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A list of entries, stored as one primitive array per field instead of as
+ * one object per entry. URLs are stored as ids in a dictionary of the distinct
+ * URLs, since they mostly repeat, and response details, which most entries
+ * don't have, are only stored once the first entry with details is added.
+ * Which entries have no details at all, rather than empty details, is kept
+ * in a bit set.
+ * <p>
+ *     Entries are appended in order of time, and a range of entries can be
+ *     taken as a slice, which shares the arrays of the list that it was taken
+ *     from. Slices can't be appended to.
+ * </p>
+ * <p>
+ *     In JSON, the list is written as an array of entries, just like an
+ *     array of {@link MonitorEntry}.
+ * </p>
+ */
+@JsonSerialize(using = EntryColumns.Serializer.class)
+public class EntryColumns implements Iterable<MonitorEntry> {
+	private static final int PHASES = 5;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int start;
+	private int size;
+	private final boolean slice;
+
+	private long[] timestampMicros;
+	private int[] offsetSeconds;
+	private int[] responseCodes;
+	private int[] responseTimes;
+	private int[] urlIds;
+	private long[][] timings;
+	private String[] details;
+	private final BitSet missingDetails;
+
+	private final List<String> urls;
+	private final Map<String, Integer> urlIdsByUrl;
+
+	/**
+	 * Constructs an empty list of entries.
+	 */
+	public EntryColumns() {
+		this.start = 0;
+		this.size = 0;
+		this.slice = false;
+		this.timestampMicros = new long[INITIAL_CAPACITY];
+		this.offsetSeconds = new int[INITIAL_CAPACITY];
+		this.responseCodes = new int[INITIAL_CAPACITY];
+		this.responseTimes = new int[INITIAL_CAPACITY];
+		this.urlIds = new int[INITIAL_CAPACITY];
+		this.timings = new long[PHASES][INITIAL_CAPACITY];
+		this.missingDetails = new BitSet();
+		this.urls = new ArrayList<>();
+		this.urlIdsByUrl = new HashMap<>();
+	}
+
+	private EntryColumns(EntryColumns source, int start, int size) {
+		this.start = start;
+		this.size = size;
+		this.slice = true;
+		this.timestampMicros = source.timestampMicros;
+		this.offsetSeconds = source.offsetSeconds;
+		this.responseCodes = source.responseCodes;
+		this.responseTimes = source.responseTimes;
+		this.urlIds = source.urlIds;
+		this.timings = source.timings;
+		this.details = source.details;
+		this.missingDetails = source.missingDetails;
+		this.urls = source.urls;
+		this.urlIdsByUrl = source.urlIdsByUrl;
+	}
+
+	/**
+	 * Appends an entry.
+	 * @param entry The entry to append.
+	 */
+	public void add(MonitorEntry entry) {
+		if (this.slice) throw new IllegalStateException("Cannot append to a slice of entries.");
+		int i = this.size;
+		this.ensureCapacity(i + 1);
+		var instant = entry.timestamp().toInstant();
+		this.timestampMicros[i] = instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+		this.offsetSeconds[i] = entry.timestamp().getOffset().getTotalSeconds();
+		this.responseCodes[i] = entry.responseCode();
+		this.responseTimes[i] = entry.responseTime();
+		this.urlIds[i] = this.urlIdOf(entry.url());
+		var t = entry.timings();
+		this.timings[0][i] = t.dnsMicros();
+		this.timings[1][i] = t.connectMicros();
+		this.timings[2][i] = t.tlsMicros();
+		this.timings[3][i] = t.ttfbMicros();
+		this.timings[4][i] = t.bodyMicros();
+		if (entry.details() != null && !entry.details().isEmpty()) {
+			if (this.details == null) this.details = new String[this.timestampMicros.length];
+			this.details[i] = entry.details();
+		} else if (this.details != null) {
+			this.details[i] = null;
+		}
+		this.missingDetails.set(i, entry.details() == null);
+		this.size++;
+	}
+
+	/**
+	 * Appends all entries of another list, which must directly follow this
+	 * list's entries in time.
+	 * @param other The list of entries to append.
+	 */
+	public void addAll(EntryColumns other) {
+		if (this.slice) throw new IllegalStateException("Cannot append to a slice of entries.");
+		int n = other.size;
+		if (n == 0) return;
+		this.ensureCapacity(this.size + n);
+		System.arraycopy(other.timestampMicros, other.start, this.timestampMicros, this.size, n);
+		System.arraycopy(other.offsetSeconds, other.start, this.offsetSeconds, this.size, n);
+		System.arraycopy(other.responseCodes, other.start, this.responseCodes, this.size, n);
+		System.arraycopy(other.responseTimes, other.start, this.responseTimes, this.size, n);
+		for (int p = 0; p < PHASES; p++) {
+			System.arraycopy(other.timings[p], other.start, this.timings[p], this.size, n);
+		}
+		// The other list has its own dictionary, so its URL ids are translated to this one's.
+		int[] idMapping = new int[other.urls.size()];
+		for (int id = 0; id < idMapping.length; id++) {
+			idMapping[id] = this.urlIdOf(other.urls.get(id));
+		}
+		for (int i = 0; i < n; i++) {
+			this.urlIds[this.size + i] = idMapping[other.urlIds[other.start + i]];
+		}
+		if (other.details != null) {
+			if (this.details == null) this.details = new String[this.timestampMicros.length];
+			System.arraycopy(other.details, other.start, this.details, this.size, n);
+		} else if (this.details != null) {
+			Arrays.fill(this.details, this.size, this.size + n, null);
+		}
+		for (int i = 0; i < n; i++) {
+			this.missingDetails.set(this.size + i, other.missingDetails.get(other.start + i));
+		}
+		this.size += n;
+	}
+
+	private int urlIdOf(String url) {
+		var id = this.urlIdsByUrl.get(url);
+		if (id == null) {
+			id = this.urls.size();
+			this.urls.add(url);
+			this.urlIdsByUrl.put(url, id);
+		}
+		return id;
+	}
+
+	private void ensureCapacity(int capacity) {
+		int length = this.timestampMicros.length;
+		if (capacity <= length) return;
+		int newLength = Math.max(capacity, length + (length >> 1));
+		this.timestampMicros = Arrays.copyOf(this.timestampMicros, newLength);
+		this.offsetSeconds = Arrays.copyOf(this.offsetSeconds, newLength);
+		this.responseCodes = Arrays.copyOf(this.responseCodes, newLength);
+		this.responseTimes = Arrays.copyOf(this.responseTimes, newLength);
+		this.urlIds = Arrays.copyOf(this.urlIds, newLength);
+		for (int p = 0; p < PHASES; p++) {
+			this.timings[p] = Arrays.copyOf(this.timings[p], newLength);
+		}
+		if (this.details != null) this.details = Arrays.copyOf(this.details, newLength);
+	}
+
+	/**
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Takes a range of the entries, without copying them.
+	 * @param from The index of the first entry in the range, inclusive.
+	 * @param to The index of the last entry in the range, exclusive.
+	 * @return The range of entries.
+	 */
+	public EntryColumns slice(int from, int to) {
+		if (from < 0 || to > this.size || from > to) throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to + " for " + this.size + " entries.");
+		return new EntryColumns(this, this.start + from, to - from);
+	}
+
+	/**
+	 * Takes the entries that were taken within a period of time, without
+	 * copying them.
+	 * @param from The start of the period, inclusive.
+	 * @param to The end of the period, exclusive.
+	 * @return The entries within the period.
+	 */
+	public EntryColumns slice(Instant from, Instant to) {
+		int first = this.indexOf(from);
+		return this.slice(first, Math.max(first, this.indexOf(to)));
+	}
+
+	/**
+	 * Finds the index of the first entry that was not taken before an
+	 * instant, using a binary search.
+	 * @param instant The instant.
+	 * @return The index, which is the number of entries if all entries were
+	 * taken before the instant.
+	 */
+	public int indexOf(Instant instant) {
+		long micros = Math.multiplyExact(instant.getEpochSecond(), 1_000_000L) + instant.getNano() / 1_000;
+		int low = this.start;
+		int high = this.start + this.size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.timestampMicros[middle] < micros) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low - this.start;
+	}
+
+	/**
+	 * @param index The index of an entry.
+	 * @return The entry's timestamp, in microseconds since the epoch.
+	 */
+	public long timestampMicros(int index) {
+		return this.timestampMicros[this.start + this.checkIndex(index)];
+	}
+
+	/**
+	 * @param index The index of an entry.
+	 * @return The entry's timestamp, in its original offset.
+	 */
+	public OffsetDateTime timestamp(int index) {
+		int i = this.start + this.checkIndex(index);
+		long micros = this.timestampMicros[i];
+		return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L)
+				.atOffset(ZoneOffset.ofTotalSeconds(this.offsetSeconds[i]));
+	}
+
+	public String url(int index) {
+		return this.urls.get(this.urlIds[this.start + this.checkIndex(index)]);
+	}
+
+	public int responseCode(int index) {
+		return this.responseCodes[this.start + this.checkIndex(index)];
+	}
+
+	public int responseTime(int index) {
+		return this.responseTimes[this.start + this.checkIndex(index)];
+	}
+
+	/**
+	 * @param index The index of an entry.
+	 * @return The entry's response details, which may be empty, or null if
+	 * its format doesn't record details.
+	 */
+	public String details(int index) {
+		int i = this.start + this.checkIndex(index);
+		if (this.missingDetails.get(i)) return null;
+		if (this.details == null || this.details[i] == null) return "";
+		return this.details[i];
+	}
+
+	public ProbeTimings timings(int index) {
+		int i = this.start + this.checkIndex(index);
+		return new ProbeTimings(this.timings[0][i], this.timings[1][i], this.timings[2][i], this.timings[3][i], this.timings[4][i]);
+	}
+
+	/**
+	 * @param index The index of an entry.
+	 * @return The entry, as a new {@link MonitorEntry}.
+	 */
+	public MonitorEntry get(int index) {
+		return new MonitorEntry(this.timestamp(index), this.url(index), this.responseCode(index), this.responseTime(index), this.details(index), this.timings(index));
+	}
+
+	/**
+	 * Passes the fields of every entry to a consumer, in order, reusing a
+	 * single row, so that no objects are created per entry.
+	 * @param consumer The consumer, which must not keep the row.
+	 */
+	public void forEachRow(Consumer<EntryRow> consumer) {
+		var row = new EntryRow();
+		for (int i = this.start; i < this.start + this.size; i++) {
+			long micros = this.timestampMicros[i];
+			row.setTimestamp(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, this.offsetSeconds[i]);
+			row.setResponseCode(this.responseCodes[i]);
+			row.setResponseTime(this.responseTimes[i]);
+			for (int p = 0; p < PHASES; p++) {
+				row.setTiming(p, this.timings[p][i]);
+			}
+			consumer.accept(row);
+		}
+	}
+
+	/**
+	 * Iterates over the entries, creating a {@link MonitorEntry} for each.
+	 * Use {@link #forEachRow(Consumer)} to avoid that.
+	 * @return The iterator.
+	 */
+	@Override
+	public Iterator<MonitorEntry> iterator() {
+		return new Iterator<>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < EntryColumns.this.size;
+			}
+
+			@Override
+			public MonitorEntry next() {
+				if (!this.hasNext()) throw new NoSuchElementException();
+				return EntryColumns.this.get(this.index++);
+			}
+		};
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= this.size) throw new IndexOutOfBoundsException(index);
+		return index;
+	}
+
+	/**
+	 * Writes a list of entries as a JSON array of entries.
+	 */
+	public static class Serializer extends JsonSerializer<EntryColumns> {
+		@Override
+		public void serialize(EntryColumns value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+			gen.writeStartArray();
+			for (int i = 0; i < value.size(); i++) {
+				serializers.defaultSerializeValue(value.get(i), gen);
+			}
+			gen.writeEndArray();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * A mutable view of the fields of a single entry, which readers reuse for
+ * every entry they read, so that entries can be aggregated without creating
+ * any objects for them. Response details and URLs are not included.
+ */
+public final class EntryRow {
+	private long epochSecond;
+	private int nano;
+	private int offsetSeconds;
+	private int responseCode;
+	private int responseTime;
+	private final long[] timings = new long[5];
+
+	/**
+	 * Sets the timestamp of the entry.
+	 * @param epochSecond The seconds since the epoch.
+	 * @param nano The nanoseconds within the second.
+	 * @param offsetSeconds The offset from UTC of the timestamp, in seconds.
+	 */
+	public void setTimestamp(long epochSecond, int nano, int offsetSeconds) {
+		this.epochSecond = epochSecond;
+		this.nano = nano;
+		this.offsetSeconds = offsetSeconds;
+	}
+
+	public void setResponseCode(int responseCode) {
+		this.responseCode = responseCode;
+	}
+
+	public void setResponseTime(int responseTime) {
+		this.responseTime = responseTime;
+	}
+
+	/**
+	 * Sets one of the phase timings.
+	 * @param phase The index of the phase, in the order DNS, connect, TLS,
+	 *              time to first byte, and body.
+	 * @param micros The phase timing in microseconds, or -1 if not observed.
+	 */
+	public void setTiming(int phase, long micros) {
+		this.timings[phase] = micros;
+	}
+
+	/**
+	 * @return The timestamp, in milliseconds since the epoch.
+	 */
+	public long epochMillis() {
+		return this.epochSecond * 1000 + this.nano / 1_000_000;
+	}
+
+	/**
+	 * @return The local date and time of the timestamp, in its own offset, as
+	 * milliseconds since 1970-01-01T00:00.
+	 */
+	public long localEpochMillis() {
+		return (this.epochSecond + this.offsetSeconds) * 1000 + this.nano / 1_000_000;
+	}
+
+	/**
+	 * @return The local time of the timestamp, in its own offset, as
+	 * nanoseconds since midnight.
+	 */
+	public long localNanoOfDay() {
+		return Math.floorMod(this.epochSecond + this.offsetSeconds, 86400L) * 1_000_000_000L + this.nano;
+	}
+
+	public int responseCode() {
+		return this.responseCode;
+	}
+
+	public int responseTime() {
+		return this.responseTime;
+	}
+
+	/**
+	 * @param phase The index of the phase.
+	 * @return The phase timing in microseconds, or -1 if not observed.
+	 */
+	public long timing(int phase) {
+		return this.timings[phase];
+	}
+
+	public boolean isOk() {
+		return this.responseCode < 400;
+	}
+
+	/**
+	 * Creates an entry with the fields of this row. Since rows don't include
+	 * them, the entry has no URL or response details.
+	 * @return The entry.
+	 */
+	public MonitorEntry toEntry() {
+		return new MonitorEntry(
+				Instant.ofEpochSecond(this.epochSecond, this.nano).atOffset(ZoneOffset.ofTotalSeconds(this.offsetSeconds)),
+				null,
+				this.responseCode,
+				this.responseTime,
+				null,
+				new ProbeTimings(this.timings[0], this.timings[1], this.timings[2], this.timings[3], this.timings[4])
+		);
+	}
+}
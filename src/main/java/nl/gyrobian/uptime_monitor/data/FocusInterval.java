@@ -11,4 +11,12 @@ public record FocusInterval(LocalTime from, LocalTime to) {
 		var lt = time.toLocalTime();
 		return lt.equals(from) || lt.equals(to) || (lt.isAfter(from) && lt.isBefore(to));
 	}
+
+	/**
+	 * @param nanoOfDay A local time, as nanoseconds since midnight.
+	 * @return True if the time is within this interval.
+	 */
+	public boolean contains(long nanoOfDay) {
+		return nanoOfDay >= from.toNanoOfDay() && nanoOfDay <= to.toNanoOfDay();
+	}
 }
@@ -0,0 +1,80 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.util.List;
+
+/**
+ * A lookup table from each second of the day to the focus intervals that
+ * contain it, so that the focus intervals of an entry can be found with a
+ * single array access, instead of comparing its time to every interval. The
+ * intervals of a time are given as a bit mask, where bit {@code i} is set if
+ * the time is within the {@code i}th interval.
+ * <p>
+ *     Intervals whose bounds aren't whole seconds are rare, since they're
+ *     configured in minutes, but they're still supported by comparing times
+ *     to them directly.
+ * </p>
+ */
+final class FocusIntervalTable {
+	/**
+	 * The maximum number of focus intervals, which is the number of bits in a
+	 * mask.
+	 */
+	static final int MAX_INTERVALS = Integer.SIZE;
+	private static final int SECONDS_PER_DAY = 86_400;
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private final List<FocusInterval> intervals;
+	/**
+	 * The mask of each second of the day, at the start of the second. There's
+	 * one more element for the end of the last second, which no interval
+	 * contains.
+	 */
+	private final int[] masks;
+	/**
+	 * The mask of the intervals whose bounds aren't whole seconds.
+	 */
+	private final int irregularMask;
+
+	/**
+	 * Builds the table.
+	 * @param intervals The focus intervals.
+	 * @throws IllegalArgumentException If there are too many intervals.
+	 */
+	FocusIntervalTable(List<FocusInterval> intervals) {
+		if (intervals.size() > MAX_INTERVALS) throw new IllegalArgumentException("At most " + MAX_INTERVALS + " focus intervals are supported.");
+		this.intervals = List.copyOf(intervals);
+		this.masks = new int[SECONDS_PER_DAY + 1];
+		int irregular = 0;
+		for (int i = 0; i < intervals.size(); i++) {
+			var interval = intervals.get(i);
+			long from = interval.from().toNanoOfDay();
+			long to = interval.to().toNanoOfDay();
+			if (from % NANOS_PER_SECOND != 0 || to % NANOS_PER_SECOND != 0) {
+				irregular |= 1 << i;
+				continue;
+			}
+			for (int s = (int) (from / NANOS_PER_SECOND); s <= to / NANOS_PER_SECOND; s++) {
+				this.masks[s] |= 1 << i;
+			}
+		}
+		this.irregularMask = irregular;
+	}
+
+	/**
+	 * @param nanoOfDay A local time, as nanoseconds since midnight.
+	 * @return The mask of the focus intervals that contain the time.
+	 */
+	int maskOf(long nanoOfDay) {
+		int second = (int) (nanoOfDay / NANOS_PER_SECOND);
+		// Within a second, a time is only in the intervals that contain both the start and end of the second.
+		int mask = nanoOfDay % NANOS_PER_SECOND == 0 ? this.masks[second] : this.masks[second] & this.masks[second + 1];
+		if (this.irregularMask != 0) {
+			for (int i = 0; i < this.intervals.size(); i++) {
+				if ((this.irregularMask & (1 << i)) != 0 && this.intervals.get(i).contains(nanoOfDay)) {
+					mask |= 1 << i;
+				}
+			}
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,122 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.DayOfWeek;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+/**
+ * A way of breaking down a site's entries into groups, which each get their
+ * own performance data. The group of an entry is computed from its local date
+ * and time, in its own offset, and its response code, without creating any
+ * objects.
+ */
+public enum Grouping {
+	/**
+	 * Groups entries by the hour of the day in which they were taken.
+	 */
+	HOUR_OF_DAY(24),
+	/**
+	 * Groups entries by the day of the week on which they were taken.
+	 */
+	WEEKDAY(7),
+	/**
+	 * Groups entries by the class of their response code, like 2xx or 5xx.
+	 * Codes outside the range of HTTP status codes are grouped as "Other".
+	 * Summaries of compacted entries don't keep response codes, so they're
+	 * not included.
+	 */
+	STATUS_CLASS(6);
+
+	private static final long MILLIS_PER_HOUR = 3_600_000L;
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	private final int bucketCount;
+
+	Grouping(int bucketCount) {
+		this.bucketCount = bucketCount;
+	}
+
+	/**
+	 * Parses a grouping from its name in the configuration, like
+	 * "hour-of-day".
+	 * @param name The name of the grouping.
+	 * @return The grouping.
+	 * @throws IllegalArgumentException If there is no grouping with the given
+	 * name.
+	 */
+	public static Grouping parse(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid grouping: " + name);
+		}
+	}
+
+	/**
+	 * @return The number of groups.
+	 */
+	public int bucketCount() {
+		return this.bucketCount;
+	}
+
+	/**
+	 * @param bucket The index of a group.
+	 * @return The name of the group, like "07:00", "Monday" or "5xx".
+	 */
+	public String bucketName(int bucket) {
+		return switch (this) {
+			case HOUR_OF_DAY -> String.format("%02d:00", bucket);
+			case WEEKDAY -> DayOfWeek.of(bucket + 1).getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+			case STATUS_CLASS -> bucket < 5 ? (bucket + 1) + "xx" : "Other";
+		};
+	}
+
+	/**
+	 * @param name The name of a group.
+	 * @return The index of the group, or -1 if there is no group with the
+	 * given name.
+	 */
+	public int bucketOf(String name) {
+		for (int i = 0; i < this.bucketCount; i++) {
+			if (this.bucketName(i).equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Determines the group of an entry.
+	 * @param localMillis The local date and time of the entry, in its own
+	 *                    offset, as milliseconds since 1970-01-01T00:00.
+	 * @param responseCode The response code of the entry.
+	 * @return The index of the entry's group.
+	 */
+	public int bucketOf(long localMillis, int responseCode) {
+		return switch (this) {
+			case HOUR_OF_DAY -> (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+			// 1970-01-01 was a Thursday, and Monday is the first day of the week.
+			case WEEKDAY -> (int) Math.floorMod(Math.floorDiv(localMillis, MILLIS_PER_DAY) + 3, 7L);
+			case STATUS_CLASS -> responseCode >= 100 && responseCode < 600 ? responseCode / 100 - 1 : 5;
+		};
+	}
+
+	/**
+	 * Determines the group of a summary of entries.
+	 * @param localMillis The local date and time of the start of the summary's
+	 *                    bucket, as milliseconds since 1970-01-01T00:00.
+	 * @return The index of the summary's group, or -1 if summaries can't be
+	 * grouped in this way.
+	 */
+	public int bucketOfSummary(long localMillis) {
+		if (this == STATUS_CLASS) return -1;
+		return this.bucketOf(localMillis, 0);
+	}
+
+	/**
+	 * @return True if daily rollups keep the groups of this grouping. Entries
+	 * of a single day all have the same weekday, so that grouping is taken
+	 * from the rollup of the whole day instead.
+	 */
+	public boolean isStoredInRollups() {
+		return this != WEEKDAY;
+	}
+}
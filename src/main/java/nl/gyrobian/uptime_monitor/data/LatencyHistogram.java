@@ -0,0 +1,149 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A mergeable histogram of response times, in milliseconds, from which
+ * percentiles can be estimated. Response times below 64 ms each have their
+ * own bucket. Above that, every power of two is split into 32 buckets of
+ * equal width, so a bucket is never wider than 1/32nd of its lower bound,
+ * and a percentile, which is estimated as the middle of its bucket, is off
+ * by at most about 1.6%.
+ * <p>
+ *     The buckets are only allocated once the first response time is added,
+ *     after which adding response times doesn't create any objects.
+ * </p>
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * Values below this limit are counted exactly.
+	 */
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+	private static final int LINEAR_LIMIT_BITS = SUB_BUCKET_BITS + 1;
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (Integer.SIZE - 1 - LINEAR_LIMIT_BITS) * SUB_BUCKETS;
+
+	private long[] counts;
+	private long total = 0;
+
+	/**
+	 * Adds a response time.
+	 * @param millis The response time, in milliseconds. Negative values are
+	 *               counted as zero.
+	 */
+	public void add(int millis) {
+		if (this.counts == null) this.counts = new long[BUCKET_COUNT];
+		this.counts[bucketOf(Math.max(0, millis))]++;
+		this.total++;
+	}
+
+	/**
+	 * Merges another histogram into this one.
+	 * @param other The histogram to merge.
+	 */
+	public void merge(LatencyHistogram other) {
+		if (other.total == 0) return;
+		if (this.counts == null) this.counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.counts[i] += other.counts[i];
+		}
+		this.total += other.total;
+	}
+
+	/**
+	 * Replaces the contents of this histogram with those of another.
+	 * @param other The histogram to copy.
+	 */
+	public void copyFrom(LatencyHistogram other) {
+		if (other.total == 0) {
+			if (this.counts != null) Arrays.fill(this.counts, 0);
+		} else {
+			if (this.counts == null) this.counts = new long[BUCKET_COUNT];
+			System.arraycopy(other.counts, 0, this.counts, 0, BUCKET_COUNT);
+		}
+		this.total = other.total;
+	}
+
+	/**
+	 * Estimates a percentile of the response times.
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The estimated response time, in milliseconds, or -1 if the
+	 * histogram is empty.
+	 */
+	public float percentile(double percentile) {
+		if (this.total == 0) return -1;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += this.counts[i];
+			if (seen >= rank) {
+				if (i < LINEAR_LIMIT) return i;
+				return lowerBound(i) + (bucketWidth(i) - 1) / 2.0f;
+			}
+		}
+		return lowerBound(BUCKET_COUNT - 1);
+	}
+
+	private static int bucketOf(int millis) {
+		if (millis < LINEAR_LIMIT) return millis;
+		int exponent = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(millis);
+		int subBucket = (millis >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return LINEAR_LIMIT + (exponent - LINEAR_LIMIT_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long lowerBound(int bucket) {
+		if (bucket < LINEAR_LIMIT) return bucket;
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_LIMIT_BITS;
+		int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	private static long bucketWidth(int bucket) {
+		if (bucket < LINEAR_LIMIT) return 1;
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_LIMIT_BITS;
+		return 1L << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * Formats this histogram for a summary file, as a list of non-empty
+	 * buckets, like "12:5;13:2", where each bucket is given as its index and
+	 * count.
+	 * @return The formatted histogram.
+	 */
+	public String toCsvValue() {
+		if (this.total == 0) return "";
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (this.counts[i] == 0) continue;
+			if (!sb.isEmpty()) sb.append(';');
+			sb.append(i).append(':').append(this.counts[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Adds the buckets of a histogram that was formatted with
+	 * {@link #toCsvValue()} to this one.
+	 * @param value The formatted histogram.
+	 * @throws IOException If the value is not a valid histogram.
+	 */
+	public void addCsvValue(String value) throws IOException {
+		if (value.isEmpty()) return;
+		if (this.counts == null) this.counts = new long[BUCKET_COUNT];
+		try {
+			for (String bucket : value.split(";")) {
+				int separator = bucket.indexOf(':');
+				if (separator < 0) throw new IOException("Invalid histogram bucket: " + bucket);
+				int index = Integer.parseInt(bucket.substring(0, separator));
+				long count = Long.parseLong(bucket.substring(separator + 1));
+				if (index < 0 || index >= BUCKET_COUNT || count < 0) throw new IOException("Invalid histogram bucket: " + bucket);
+				this.counts[index] += count;
+				this.total += count;
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Could not parse histogram.", e);
+		}
+	}
+}
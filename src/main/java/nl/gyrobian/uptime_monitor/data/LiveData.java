@@ -0,0 +1,25 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Statistical information about the most recent entries of a site, which is
+ * computed by the running monitor from the entries that it keeps in memory.
+ *
+ * @param generatedAt The timestamp for when this data was generated.
+ * @param siteName The name of the site that was measured.
+ * @param window How far back from the time of generation entries were
+ *               included. Older entries may be missing if the site had more
+ *               entries during the window than are kept in memory.
+ * @param measurementMicros The time it took to perform the measurement, in
+ *                          microseconds.
+ * @param performance The performance data for the window.
+ */
+public record LiveData(
+		OffsetDateTime generatedAt,
+		String siteName,
+		Duration window,
+		long measurementMicros,
+		ReportData.PerformanceData performance
+) {}
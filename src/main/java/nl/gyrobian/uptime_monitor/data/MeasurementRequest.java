@@ -0,0 +1,23 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The parameters of a single measurement of a site, several of which can be
+ * computed from a single scan of the site's data with
+ * {@link MeasurementService#getData(String, List)}.
+ * @param startDate The start of the measurement period, inclusive, or null.
+ * @param endDate The end of the measurement period, inclusive, or null.
+ * @param focusIntervals The focus intervals to compute separate statistics
+ *                       for.
+ * @param groupings The groupings to compute separate statistics for.
+ * @param includeEntries Whether to include every entry in the report data.
+ */
+public record MeasurementRequest(
+		LocalDate startDate,
+		LocalDate endDate,
+		List<FocusInterval> focusIntervals,
+		List<Grouping> groupings,
+		boolean includeEntries
+) {}
@@ -1,16 +1,30 @@
 package nl.gyrobian.uptime_monitor.data;
 
-import org.apache.commons.csv.CSVFormat;
+import nl.gyrobian.uptime_monitor.storage.Checkpoints;
+import nl.gyrobian.uptime_monitor.storage.DailyRollups;
+import nl.gyrobian.uptime_monitor.storage.SegmentManifest;
+import nl.gyrobian.uptime_monitor.storage.SegmentReader;
+import nl.gyrobian.uptime_monitor.storage.SummaryTier;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.*;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The main logic which analyzes data and produces a cumulative dataset result.
@@ -24,150 +38,509 @@ public class MeasurementService {
 	 * @param endDate The end of the measurement period, inclusive.
 	 * @param focusIntervals A list of focus intervals, which are periods of
 	 *                       time that should have their own set of statistics.
+	 * @param groupings A list of groupings, which break the entries down into
+	 *                  groups that each have their own set of statistics.
+	 * @param includeEntries Whether to include every entry in the report data.
+	 *                       This takes memory in proportion to the number of
+	 *                       entries, so it should only be used when needed.
 	 * @return The report data.
 	 * @throws IOException If an error occurs while reading data.
+	 * @see #getData(String, List)
 	 */
-	public ReportData getData(String siteName, LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals) throws IOException {
+	public ReportData getData(String siteName, LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, List<Grouping> groupings, boolean includeEntries) throws IOException {
+		return this.getData(siteName, List.of(new MeasurementRequest(startDate, endDate, focusIntervals, groupings, includeEntries))).get(0);
+	}
+
+	/**
+	 * Computes full report datasets for a given site, for any number of
+	 * measurement requests at once. The site's data files are only scanned
+	 * once, over the union of the requested periods, and every request's
+	 * aggregates are fed from that single scan. The files are scanned in
+	 * parallel, each into its own partial aggregate, and the partial
+	 * aggregates are merged in order of time.
+	 * <p>
+	 *     Days that are over never change, so for those, the site's daily
+	 *     rollups are used instead, and only the remaining days are scanned.
+	 *     Rollups that are missing, or that lack any of the focus intervals or
+	 *     groupings of any request, are built in a single scan and saved for
+	 *     later reports. Rollups are only used for requests whose period has
+	 *     both a start and end date, and that don't include entries.
+	 * </p>
+	 * <p>
+	 *     For the days that aren't over yet, such requests use the site's
+	 *     {@link Checkpoint}, which is brought up to date by only reading the
+	 *     entries that were written since it was saved. Rolling windows that
+	 *     are measured often, like "the last 30 days" every hour, therefore
+	 *     only read the new entries each time.
+	 * </p>
+	 * <p>
+	 *     Since the files are shared, the number and size of the files that
+	 *     were read, and the time that it took, are the same for every
+	 *     request.
+	 * </p>
+	 * @param siteName The name of the site to gather data for. This should
+	 *                 exactly match the site's name in the configuration file.
+	 * @param requests The measurement requests.
+	 * @return The report data for each request, in the same order.
+	 * @throws IOException If an error occurs while reading data.
+	 */
+	public List<ReportData> getData(String siteName, List<MeasurementRequest> requests) throws IOException {
 		Path siteDir = Path.of("sites", siteName);
-		long fileSizeTraversed = 0;
-		int fileCount = 0;
-		List<MonitorEntry> entries = new ArrayList<>();
-		Map<FocusInterval, List<MonitorEntry>> focusIntervalEntries = new HashMap<>();
 		long measurementStartedAt = System.currentTimeMillis();
-		// Iterate over all files that have been generated for the selected site.
-		try (var s = Files.list(siteDir)
-				.sorted(Comparator.comparing(Path::getFileName))
-				.filter(path -> shouldReadFile(path, endDate))) {
-			for (var path : s.toList()) {
-				try (var reader = Files.newBufferedReader(path)) {
-					boolean isHeader = true;
-					for (var record : CSVFormat.DEFAULT.parse(reader)) {
-						if (isHeader) {
-							isHeader = false;
-							continue;
-						}
-						MonitorEntry entry;
-						try {
-							entry = MonitorEntry.fromCsvRecord(record);
-						} catch (IOException e) {
-							System.out.println("Skipping corrupted record: " + e.getMessage());
-							continue;
-						}
-						// Skip this record if its timestamp is outside the measurement period.
-						if (shouldReadRecord(entry.timestamp(), startDate, endDate)) {
-							entries.add(entry);
-							// Add the entry to any applicable focus intervals.
-							for (var focusInterval : focusIntervals) {
-								if (focusInterval.contains(entry.timestamp())) {
-									focusIntervalEntries.computeIfAbsent(focusInterval, fi -> new ArrayList<>()).add(entry);
-								}
-							}
-						}
-					}
-					fileSizeTraversed += Files.size(path);
-					fileCount++;
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+		var scan = new Scan(siteDir);
+		List<SiteAggregator> aggregators = new ArrayList<>(requests.size());
+		LocalDate[] scanStartDates = new LocalDate[requests.size()];
+
+		// Find the days that can be taken from rollups and the checkpoint, for all requests together.
+		Instant now = Instant.now();
+		LocalDate lastClosedDay = DailyRollups.lastClosedDay(now);
+		LocalDate rollupStartDate = null;
+		LocalDate rollupEndDate = null;
+		boolean usesCheckpoint = false;
+		Set<FocusInterval> rollupIntervals = new LinkedHashSet<>();
+		Set<Grouping> rollupGroupings = EnumSet.noneOf(Grouping.class);
+		boolean[] usesRollups = new boolean[requests.size()];
+		for (int i = 0; i < requests.size(); i++) {
+			var request = requests.get(i);
+			aggregators.add(new SiteAggregator(request.startDate(), request.endDate(), request.focusIntervals(), request.groupings(), request.includeEntries()));
+			scanStartDates[i] = request.startDate();
+			if (request.startDate() == null || request.endDate() == null || request.includeEntries()) continue;
+			usesRollups[i] = true;
+			scanStartDates[i] = request.endDate().plusDays(1);
+			LocalDate end = request.endDate().isBefore(lastClosedDay) ? request.endDate() : lastClosedDay;
+			if (!end.isBefore(request.startDate())) {
+				if (rollupStartDate == null || request.startDate().isBefore(rollupStartDate)) rollupStartDate = request.startDate();
+				if (rollupEndDate == null || end.isAfter(rollupEndDate)) rollupEndDate = end;
+			}
+			if (request.endDate().isAfter(lastClosedDay)) usesCheckpoint = true;
+			rollupIntervals.addAll(request.focusIntervals());
+			rollupGroupings.addAll(request.groupings());
+		}
+		List<DailyRollup> rollups = new ArrayList<>();
+		// The checkpoint comes first, since it saves the rollups of any of its days that are over by now.
+		List<DailyRollup> openRollups = List.of();
+		if (usesCheckpoint) {
+			// Entries may be up to a day ahead of UTC in their own offset.
+			LocalDate lastOpenDay = now.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(1);
+			openRollups = this.getOpenRollups(scan, lastClosedDay.plusDays(1), lastOpenDay, List.copyOf(rollupIntervals), List.copyOf(rollupGroupings));
+		}
+		if (rollupStartDate != null) {
+			rollups.addAll(this.getRollups(scan, rollupStartDate, rollupEndDate, List.copyOf(rollupIntervals), List.copyOf(rollupGroupings)));
+		}
+		rollups.addAll(openRollups);
+		for (var rollup : rollups) {
+			for (int i = 0; i < requests.size(); i++) {
+				// Rollups outside a request's period are ignored by its aggregator.
+				if (usesRollups[i]) aggregators.get(i).accept(rollup);
+			}
+		}
+
+		// Then scan the remaining days of all requests together.
+		List<SiteAggregator> templates = new ArrayList<>();
+		List<Integer> scanned = new ArrayList<>();
+		LocalDate scanStartDate = null;
+		LocalDate scanEndDate = null;
+		boolean unboundedStart = false;
+		boolean unboundedEnd = false;
+		for (int i = 0; i < requests.size(); i++) {
+			var request = requests.get(i);
+			LocalDate start = scanStartDates[i];
+			LocalDate end = request.endDate();
+			if (start != null && end != null && start.isAfter(end)) continue;
+			templates.add(new SiteAggregator(start, end, request.focusIntervals(), request.groupings(), request.includeEntries()));
+			scanned.add(i);
+			if (start == null) unboundedStart = true;
+			else if (scanStartDate == null || start.isBefore(scanStartDate)) scanStartDate = start;
+			if (end == null) unboundedEnd = true;
+			else if (scanEndDate == null || end.isAfter(scanEndDate)) scanEndDate = end;
+		}
+		if (!templates.isEmpty()) {
+			var result = scan.run(unboundedStart ? null : scanStartDate, unboundedEnd ? null : scanEndDate, new MultiAggregator(templates));
+			for (int k = 0; k < scanned.size(); k++) {
+				aggregators.get(scanned.get(k)).merge(result.get(k));
+			}
+		}
+
+		long measurementDuration = System.currentTimeMillis() - measurementStartedAt;
+		List<ReportData> data = new ArrayList<>(requests.size());
+		for (int i = 0; i < requests.size(); i++) {
+			var request = requests.get(i);
+			var aggregator = aggregators.get(i);
+			data.add(new ReportData(
+					OffsetDateTime.now(),
+					request.startDate() != null ? request.startDate() : Objects.requireNonNullElseGet(aggregator.getFirstTimestamp(), OffsetDateTime::now).toLocalDate(),
+					request.endDate() != null ? request.endDate() : Objects.requireNonNullElseGet(aggregator.getLastTimestamp(), OffsetDateTime::now).toLocalDate(),
+					siteName,
+					measurementDuration,
+					scan.fileSizeTraversed.get(),
+					scan.fileCount.get(),
+					aggregator.getEntries(),
+					aggregator.getPerformanceData(),
+					aggregator.getFocusIntervalPerformanceData(),
+					aggregator.getGroupedPerformanceData()
+			));
+		}
+		return data;
+	}
+
+	/**
+	 * Gets the daily rollups of a site for a range of days that are over,
+	 * building and saving any rollups that are missing or that don't cover
+	 * all focus intervals and groupings.
+	 * @param scan The scan of the site's data.
+	 * @param startDate The first day, inclusive.
+	 * @param endDate The last day, inclusive.
+	 * @param focusIntervals The focus intervals that the rollups must cover.
+	 * @param groupings The groupings that the rollups must cover.
+	 * @return The rollups, ordered by day.
+	 * @throws IOException If an error occurs while reading or writing data.
+	 */
+	private List<DailyRollup> getRollups(Scan scan, LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, List<Grouping> groupings) throws IOException {
+		// Days before the site's first data don't need rollups, even empty ones.
+		LocalDate firstDay = scan.firstDay();
+		if (firstDay == null) return List.of();
+		if (startDate.isBefore(firstDay)) startDate = firstDay;
+		Map<LocalDate, DailyRollup> rollups = new TreeMap<>();
+		LocalDate firstMissing = null;
+		LocalDate lastMissing = null;
+		// Focus intervals and groupings of existing rollups are kept when they're rebuilt.
+		Set<FocusInterval> intervals = new LinkedHashSet<>(focusIntervals);
+		Set<Grouping> rollupGroupings = EnumSet.noneOf(Grouping.class);
+		for (var grouping : groupings) {
+			if (grouping.isStoredInRollups()) rollupGroupings.add(grouping);
+		}
+		for (var date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+			var rollup = DailyRollups.read(scan.siteDir, date);
+			if (rollup != null && rollup.covers(focusIntervals, groupings)) {
+				rollups.put(date, rollup);
+				scan.fileCount.incrementAndGet();
+				scan.fileSizeTraversed.addAndGet(DailyRollups.size(scan.siteDir, date));
+				continue;
+			}
+			if (rollup != null) {
+				intervals.addAll(rollup.focusIntervals().keySet());
+				rollupGroupings.addAll(rollup.groups().keySet());
+			}
+			if (firstMissing == null) firstMissing = date;
+			lastMissing = date;
+		}
+		if (firstMissing != null) {
+			var built = scan.run(firstMissing, lastMissing, new DailyAggregator(firstMissing, lastMissing, List.copyOf(intervals), List.copyOf(rollupGroupings)));
+			for (var rollup : built.getRollups()) {
+				if (rollups.containsKey(rollup.date())) continue;
+				DailyRollups.write(scan.siteDir, rollup);
+				rollups.put(rollup.date(), rollup);
+			}
+		}
+		return new ArrayList<>(rollups.values());
+	}
+
+	/**
+	 * Gets the rollups of the days that aren't over yet, from the site's
+	 * checkpoint. If the checkpoint covers all focus intervals and groupings,
+	 * and its data files haven't been compacted since, it's brought up to date
+	 * by reading only the entries that were written after it was saved.
+	 * Otherwise, it's rebuilt from all data of those days. Any days of the
+	 * checkpoint that are over by now are saved as daily rollups, unless they
+	 * already have one. The updated checkpoint is saved for later
+	 * measurements.
+	 * @param scan The scan of the site's data.
+	 * @param startDate The first day that isn't over yet.
+	 * @param endDate The last day that may have any entries yet.
+	 * @param focusIntervals The focus intervals that the rollups must cover.
+	 * @param groupings The groupings that the rollups must cover.
+	 * @return The rollups, ordered by day.
+	 * @throws IOException If an error occurs while reading or writing data.
+	 */
+	private List<DailyRollup> getOpenRollups(Scan scan, LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, List<Grouping> groupings) throws IOException {
+		var checkpoint = Checkpoints.read(scan.siteDir);
+		// Focus intervals and groupings of an existing checkpoint are kept when it's rebuilt.
+		Set<FocusInterval> intervals = new LinkedHashSet<>(focusIntervals);
+		Set<Grouping> checkpointGroupings = EnumSet.noneOf(Grouping.class);
+		for (var grouping : groupings) {
+			if (grouping.isStoredInRollups()) checkpointGroupings.add(grouping);
+		}
+		LocalDate aggregateStartDate = startDate;
+		Map<String, Long> offsets = null;
+		List<DailyRollup> previousRollups = List.of();
+		if (checkpoint != null) {
+			intervals.addAll(checkpoint.focusIntervals());
+			checkpointGroupings.addAll(checkpoint.groupings());
+			if (checkpoint.covers(focusIntervals, groupings) && !checkpoint.startDate().isAfter(startDate) && scan.canContinue(checkpoint)) {
+				aggregateStartDate = checkpoint.startDate();
+				offsets = checkpoint.positions();
+				previousRollups = checkpoint.rollups();
+				scan.fileCount.incrementAndGet();
+				scan.fileSizeTraversed.addAndGet(Checkpoints.size(scan.siteDir));
 			}
 		}
+		if (endDate.isBefore(aggregateStartDate)) endDate = aggregateStartDate;
 
-		Map<FocusInterval, ReportData.PerformanceData> focusIntervalPerformanceData = new HashMap<>();
-		for (var interval : focusIntervals) {
-			var e = focusIntervalEntries.computeIfAbsent(interval, fi -> new ArrayList<>());
-			focusIntervalPerformanceData.put(interval, computePerformanceData(e));
-		}
-
-		return new ReportData(
-				OffsetDateTime.now(),
-				startDate != null ? startDate : entries.get(0).timestamp().toLocalDate(),
-				endDate != null ? endDate : entries.get(entries.size() - 1).timestamp().toLocalDate(),
-				siteName,
-				System.currentTimeMillis() - measurementStartedAt,
-				fileSizeTraversed,
-				fileCount,
-				entries.toArray(new MonitorEntry[0]),
-				computePerformanceData(entries),
-				focusIntervalPerformanceData
-		);
+		var template = new DailyAggregator(aggregateStartDate, endDate, List.copyOf(intervals), List.copyOf(checkpointGroupings));
+		Map<Path, Long> positions = new ConcurrentHashMap<>();
+		var scanned = scan.runFrom(aggregateStartDate, template, offsets, positions);
+		var aggregator = template.newPartial();
+		previousRollups.forEach(aggregator::accept);
+		aggregator.merge(scanned);
+
+		List<DailyRollup> rollups = new ArrayList<>();
+		for (var rollup : aggregator.getRollups()) {
+			if (!rollup.date().isBefore(startDate)) {
+				rollups.add(rollup);
+			} else if (DailyRollups.read(scan.siteDir, rollup.date()) == null) {
+				DailyRollups.write(scan.siteDir, rollup);
+			}
+		}
+		if (positions.values().stream().anyMatch(p -> p < 0)) {
+			System.err.println("Not saving checkpoint for " + scan.siteDir + ", since some of its data could not be read.");
+			return rollups;
+		}
+		Map<String, Long> segmentPositions = new TreeMap<>();
+		positions.forEach((path, position) -> segmentPositions.put(scan.siteDir.relativize(path).toString(), position));
+		Checkpoints.write(scan.siteDir, new Checkpoint(startDate, endDate, List.copyOf(intervals), List.copyOf(checkpointGroupings), segmentPositions, scan.summaryFileNames(startDate), rollups));
+		return rollups;
 	}
 
 	/**
-	 * Computes performance data for a set of entries.
-	 * @param entries The entries to extract performance data from.
-	 * @return The data that was obtained.
+	 * A scan of a site's data files, which keeps track of the files that were
+	 * read over any number of runs. Each run reads the segments and summary
+	 * files of a single snapshot of the site's manifest, and is repeated if
+	 * data was compacted while it was read, so that no data is counted twice
+	 * or skipped.
 	 */
-	private ReportData.PerformanceData computePerformanceData(List<MonitorEntry> entries) {
-		if (entries.size() == 0) return new ReportData.PerformanceData(0, 100, Duration.ZERO, Duration.ZERO, 100, 0);
-
-		long responseTimeSum = 0;
-		long totalDowntime = 0;
-		long totalUptime = 0;
-		long errorResponses = 0;
-		MonitorEntry previousEntry = null;
-
-		Collections.sort(entries);
-		for (var entry : entries) {
-			Duration timeSinceLastEntry = previousEntry == null ? Duration.ZERO : Duration.between(previousEntry.timestamp(), entry.timestamp());
-			if (!entry.isOk()) {
-				errorResponses++;
-				// If we have noticed a continuous span of time in which the service is consistently not ok, measure this as totalDowntime.
-				if (previousEntry != null && !previousEntry.isOk()) {
-					totalDowntime += timeSinceLastEntry.toMillis();
+	private static class Scan {
+		/**
+		 * The maximum number of times that a run is attempted, if data keeps
+		 * being compacted while it's read.
+		 */
+		private static final int MAX_ATTEMPTS = 3;
+
+		private final Path siteDir;
+		private final SegmentReader reader;
+		private final AtomicLong fileSizeTraversed = new AtomicLong();
+		private final AtomicInteger fileCount = new AtomicInteger();
+		private SegmentManifest manifest;
+
+		private Scan(Path siteDir) {
+			this.siteDir = siteDir;
+			this.reader = new SegmentReader(siteDir);
+		}
+
+		/**
+		 * @return The snapshot of the site's manifest that the latest run
+		 * read, loading one if there was no run yet.
+		 * @throws IOException If the site's manifest could not be read.
+		 */
+		private SegmentManifest manifest() throws IOException {
+			if (this.manifest == null) this.manifest = SegmentManifest.loadOrScan(this.siteDir);
+			return this.manifest;
+		}
+
+		/**
+		 * Runs a scan of a snapshot of the site's files, repeating it with a
+		 * new snapshot if the site's data was compacted in the meantime.
+		 * @param scan A function that scans the files of the current snapshot.
+		 * @param positions The positions that the scan puts the offsets of
+		 *                  the segments that it read in, or null.
+		 * @return The aggregator of the scanned data.
+		 * @throws IOException If the site's manifest could not be read.
+		 */
+		private <A> A runSnapshot(IOSupplier<A> scan, Map<Path, Long> positions) throws IOException {
+			long size = this.fileSizeTraversed.get();
+			int count = this.fileCount.get();
+			for (int attempt = 1; ; attempt++) {
+				this.manifest = SegmentManifest.loadOrScan(this.siteDir);
+				A result = scan.get();
+				var current = SegmentManifest.load(this.siteDir);
+				if (attempt == MAX_ATTEMPTS || current == null || current.getGeneration() == this.manifest.getGeneration()) return result;
+				System.err.println("Data of " + this.siteDir + " was compacted while it was being read, so it's read again.");
+				this.fileSizeTraversed.set(size);
+				this.fileCount.set(count);
+				if (positions != null) positions.clear();
+			}
+		}
+
+		/**
+		 * Scans all files that may contain data in a measurement period.
+		 * @param startDate The start of the measurement period, inclusive, or
+		 *                  null.
+		 * @param endDate The end of the measurement period, inclusive, or null.
+		 * @param template An aggregator to create partial aggregators from.
+		 * @return The aggregator of all data.
+		 * @throws IOException If the site's manifest could not be read.
+		 */
+		private <A extends PartialAggregator<A>> A run(LocalDate startDate, LocalDate endDate, A template) throws IOException {
+			Long startMillis = toRangeStartMillis(startDate);
+			Long endMillis = toRangeEndMillis(endDate);
+			return this.runSnapshot(() -> {
+				List<SegmentScanTask.Source> sources = new ArrayList<>();
+
+				// Compacted data is older than any remaining entries, so summaries come first.
+				for (var path : this.summaryFiles(startMillis, endMillis)) {
+					sources.add(new SegmentScanTask.Source(path, true));
 				}
-			} else if (previousEntry != null && previousEntry.isOk()) {
-				// If we have a continuous span of time in which the service is consistently ok, measure this as totalUptime.
-				totalUptime += timeSinceLastEntry.toMillis();
+
+				// Then all files that have been generated for the selected site, which may contain entries in the measurement period.
+				// Only the last segment is still written to, so all others are sealed.
+				var last = this.manifest.getLast();
+				for (var segment : this.manifest.select(startMillis, endMillis)) {
+					Path path = this.siteDir.resolve(segment.file());
+					if (Files.notExists(path)) continue;
+					boolean sealed = last != null && !segment.file().equals(last.file());
+					sources.add(new SegmentScanTask.Source(path, false, 0, sealed));
+				}
+
+				var task = new SegmentScanTask<>(sources, template, this.reader, this.fileSizeTraversed, this.fileCount, startMillis, endMillis);
+				return ForkJoinPool.commonPool().invoke(task);
+			}, null);
+		}
+
+		/**
+		 * Scans all files that may contain data from a given day onwards,
+		 * continuing the scan of each segment from an offset.
+		 * @param startDate The first day, inclusive.
+		 * @param template An aggregator to create partial aggregators from,
+		 *                 which must not need complete entries.
+		 * @param offsets The offset from which to continue the scan of each
+		 *                segment, by the name of its file, or null to scan
+		 *                all files from the start. Summaries are only scanned
+		 *                if this is null, since they never change.
+		 * @param positions A thread-safe map to put the offset up to which each
+		 *                  segment was scanned in, or -1 if it couldn't be
+		 *                  read.
+		 * @return The aggregator of the scanned data.
+		 * @throws IOException If the site's manifest could not be read.
+		 */
+		private <A extends PartialAggregator<A>> A runFrom(LocalDate startDate, A template, Map<String, Long> offsets, Map<Path, Long> positions) throws IOException {
+			Long startMillis = toRangeStartMillis(startDate);
+			return this.runSnapshot(() -> {
+				List<SegmentScanTask.Source> sources = new ArrayList<>();
+				if (offsets == null) {
+					for (var path : this.summaryFiles(startMillis, null)) {
+						sources.add(new SegmentScanTask.Source(path, true));
+					}
+				}
+				for (var segment : this.manifest.select(startMillis, null)) {
+					Path path = this.siteDir.resolve(segment.file());
+					if (Files.notExists(path)) continue;
+					long offset = offsets == null ? 0 : offsets.getOrDefault(segment.file(), 0L);
+					sources.add(new SegmentScanTask.Source(path, false, offset, false));
+				}
+				var task = new SegmentScanTask<>(sources, template, this.reader, this.fileSizeTraversed, this.fileCount, positions);
+				return ForkJoinPool.commonPool().invoke(task);
+			}, positions);
+		}
+
+		/**
+		 * Checks if a scan can continue from a checkpoint, which is the case
+		 * as long as all of its segments are still there, none of them got
+		 * shorter, and no summaries were added or removed for its days.
+		 * @param checkpoint The checkpoint.
+		 * @return True if the scan can continue from the checkpoint.
+		 * @throws IOException If the files could not be checked.
+		 */
+		private boolean canContinue(Checkpoint checkpoint) throws IOException {
+			for (var entry : checkpoint.positions().entrySet()) {
+				Path path = this.siteDir.resolve(entry.getKey());
+				if (Files.notExists(path) || Files.size(path) < entry.getValue()) return false;
 			}
-			responseTimeSum += entry.responseTime();
-			previousEntry = entry;
+			return this.summaryFileNames(checkpoint.startDate()).equals(checkpoint.summaryFiles());
 		}
 
-		float averageResponseTime = (float) (responseTimeSum / (double) entries.size());
-		float successPercentage = (float) ((entries.size() - errorResponses) / (double) entries.size()) * 100.0f;
-		float uptimePercentage = 100.0f;
-		if (totalUptime > 0 || totalDowntime > 0) {
-			uptimePercentage *= (float) (totalUptime / (double) (totalUptime + totalDowntime));
+		/**
+		 * @param startDate The first day, inclusive.
+		 * @return The names of all summary files that may contain data from
+		 * the given day onwards.
+		 * @throws IOException If a summary directory could not be listed.
+		 */
+		private List<String> summaryFileNames(LocalDate startDate) throws IOException {
+			return this.summaryFiles(toRangeStartMillis(startDate), null).stream()
+					.map(path -> this.siteDir.relativize(path).toString())
+					.toList();
+		}
+
+		/**
+		 * @return The first day that may have any of the site's data, in the
+		 * local date of its entries, or null if the site has no data.
+		 * @throws IOException If the site's files could not be listed.
+		 */
+		private LocalDate firstDay() throws IOException {
+			Long first = null;
+			var manifest = this.manifest();
+			for (var tier : SummaryTier.values()) {
+				for (var path : manifest.getSummaryFiles(tier)) {
+					long start = tier.fileStart(path.getFileName().toString()).toEpochMilli();
+					if (first == null || start < first) first = start;
+				}
+			}
+			for (var segment : manifest.getSegments()) {
+				long start = segment.firstTimestamp() >= 0 ? segment.firstTimestamp() : segment.createdAt();
+				if (first == null || start < first) first = start;
+			}
+			if (first == null) return null;
+			// Entries may be up to a day behind UTC in their own offset.
+			return Instant.ofEpochMilli(first).atOffset(ZoneOffset.UTC).toLocalDate().minusDays(1);
 		}
 
-		return new ReportData.PerformanceData(
-				averageResponseTime,
-				successPercentage,
-				Duration.ofMillis(totalUptime),
-				Duration.ofMillis(totalDowntime),
-				uptimePercentage,
-				entries.size()
-		);
+		/**
+		 * Lists the summary files of the current snapshot that may contain
+		 * data within a range, ordered by time, starting with the coarsest
+		 * tier.
+		 * @param startMillis The start of the range, in epoch millis, or null.
+		 * @param endMillis The end of the range, in epoch millis, or null.
+		 * @return The summary files.
+		 * @throws IOException If a summary directory could not be listed.
+		 */
+		private List<Path> summaryFiles(Long startMillis, Long endMillis) throws IOException {
+			List<Path> files = new ArrayList<>();
+			var tiers = SummaryTier.values();
+			for (int i = tiers.length - 1; i >= 0; i--) {
+				var tier = tiers[i];
+				for (var path : this.manifest().getSummaryFiles(tier)) {
+					String name = path.getFileName().toString();
+					if (endMillis != null && tier.fileStart(name).toEpochMilli() >= endMillis) continue;
+					if (startMillis != null && tier.fileEnd(name).toEpochMilli() <= startMillis) continue;
+					files.add(path);
+				}
+			}
+			return files;
+		}
 	}
 
 	/**
-	 * Determines if it is necessary to read a file for a measurement, based on
-	 * the end date of the measurement period, and the file's timestamp name.
-	 * @param path The path to the file.
-	 * @param endDate The measurement period's ending date (inclusive).
-	 * @return True if the file's contents should be processed, or false otherwise.
+	 * A supplier that may throw an {@link IOException}.
+	 * @param <T> The type of the result.
 	 */
-	private boolean shouldReadFile(Path path, LocalDate endDate) {
-		if (!Files.isRegularFile(path) || !path.getFileName().toString().endsWith(".csv")) return false;
-		LocalDateTime fileStartTimestamp = LocalDateTime.parse(
-				path.getFileName().toString().split("\\.")[0],
-				DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")
-		);
-		// Skip this file if it starts outside our measurement period.
-		return endDate == null || !fileStartTimestamp.isAfter(endDate.plusDays(1).atStartOfDay());
+	@FunctionalInterface
+	private interface IOSupplier<T> {
+		T get() throws IOException;
 	}
 
 	/**
-	 * Determines if a single record should be read, based on the measurement
-	 * period's start and end date, and the record's timestamp.
-	 * @param recordTimestamp The record's timestamp.
+	 * Converts the start date of a measurement period to the earliest instant
+	 * at which a record in the period may have been taken. Records are
+	 * filtered by their local date and time, so this takes the largest
+	 * possible offset into account.
 	 * @param startDate The measurement period's starting date (inclusive).
+	 * @return The start of the range, in epoch millis, or null if there is no
+	 * start date.
+	 */
+	private static Long toRangeStartMillis(LocalDate startDate) {
+		if (startDate == null) return null;
+		return startDate.atStartOfDay().toInstant(ZoneOffset.MAX).toEpochMilli();
+	}
+
+	/**
+	 * Converts the end date of a measurement period to the instant before which
+	 * all records in the period must have been taken. Records are filtered by
+	 * their local date and time, so this takes the smallest possible offset
+	 * into account.
 	 * @param endDate The measurement period's ending date (inclusive).
-	 * @return True if the record should be read and included in data, or false
-	 * otherwise.
+	 * @return The end of the range, in epoch millis, or null if there is no
+	 * end date.
 	 */
-	private boolean shouldReadRecord(OffsetDateTime recordTimestamp, LocalDate startDate, LocalDate endDate) {
-		return (startDate == null || recordTimestamp.toLocalDateTime().isAfter(startDate.atStartOfDay())) &&
-				(endDate == null || recordTimestamp.toLocalDateTime().isBefore(endDate.plusDays(1).atStartOfDay()));
+	private static Long toRangeEndMillis(LocalDate endDate) {
+		if (endDate == null) return null;
+		return endDate.plusDays(1).atStartOfDay().toInstant(ZoneOffset.MIN).toEpochMilli();
 	}
 }
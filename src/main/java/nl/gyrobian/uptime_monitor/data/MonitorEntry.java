@@ -4,7 +4,9 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.stream.Stream;
 
 /**
  * Represents a single measurement for a site.
@@ -14,8 +16,30 @@ public record MonitorEntry(
 		String url,
 		int responseCode,
 		int responseTime,
-		String details
+		String details,
+		ProbeTimings timings
 ) implements Comparable<MonitorEntry> {
+	/**
+	 * The index of the first phase timing column in a record. Records written
+	 * before phase timings were introduced don't have these columns.
+	 */
+	private static final int TIMINGS_INDEX = 5;
+	/**
+	 * The response code of an entry for a probe that failed without getting
+	 * a response, like when the connection was refused or timed out. It's not
+	 * a valid HTTP status code, and counts as an error. Such entries have a
+	 * response time of -1, since no response time was measured.
+	 */
+	public static final int NO_RESPONSE = 999;
+
+	/**
+	 * The headers of the columns in a record file.
+	 */
+	public static final String[] CSV_HEADERS = Stream.concat(
+			Stream.of("Timestamp", "URL", "Response Code", "Response Time (ms)", "Response Details"),
+			Stream.of(ProbeTimings.CSV_HEADERS)
+	).toArray(String[]::new);
+
 	public static MonitorEntry fromCsvRecord(CSVRecord record) throws IOException {
 		try {
 			return new MonitorEntry(
@@ -23,7 +47,8 @@ public record MonitorEntry(
 					record.get(1),
 					Integer.parseInt(record.get(2)),
 					Integer.parseInt(record.get(3)),
-					record.get(4)
+					record.get(4),
+					parseTimings(record)
 			);
 		} catch (DateTimeParseException e) {
 			throw new IOException("Could not parse \"" + record.get(0) + "\" as an OffsetDateTime.", e);
@@ -32,6 +57,35 @@ public record MonitorEntry(
 		}
 	}
 
+	private static ProbeTimings parseTimings(CSVRecord record) throws IOException {
+		if (record.size() < TIMINGS_INDEX + ProbeTimings.CSV_HEADERS.length) return ProbeTimings.UNKNOWN;
+		long[] values = new long[ProbeTimings.CSV_HEADERS.length];
+		for (int i = 0; i < values.length; i++) {
+			String s = record.get(TIMINGS_INDEX + i);
+			try {
+				values[i] = s.isEmpty() ? -1 : Long.parseLong(s);
+			} catch (NumberFormatException e) {
+				throw new IOException("Could not parse \"" + s + "\" as a phase timing.", e);
+			}
+		}
+		return new ProbeTimings(values[0], values[1], values[2], values[3], values[4]);
+	}
+
+	/**
+	 * @return The values of this entry, in the order of {@link #CSV_HEADERS}.
+	 */
+	public Object[] toCsvValues() {
+		Object[] timingValues = timings.toCsvValues();
+		Object[] values = new Object[TIMINGS_INDEX + timingValues.length];
+		values[0] = timestamp.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+		values[1] = url;
+		values[2] = responseCode;
+		values[3] = responseTime;
+		values[4] = details;
+		System.arraycopy(timingValues, 0, values, TIMINGS_INDEX, timingValues.length);
+		return values;
+	}
+
 	public boolean isOk() {
 		return responseCode < 400;
 	}
@@ -0,0 +1,74 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the entries and summaries of a single site into several
+ * {@link SiteAggregator}s at once, each with its own measurement period,
+ * focus intervals and groupings, so that they can all be computed from a
+ * single scan of the site's data.
+ */
+class MultiAggregator implements PartialAggregator<MultiAggregator> {
+	private final List<SiteAggregator> aggregators;
+	private final boolean needsEntries;
+
+	/**
+	 * Constructs the aggregator.
+	 * @param aggregators The aggregators to give all data to.
+	 */
+	MultiAggregator(List<SiteAggregator> aggregators) {
+		this.aggregators = List.copyOf(aggregators);
+		this.needsEntries = aggregators.stream().anyMatch(SiteAggregator::needsEntries);
+	}
+
+	/**
+	 * @param index The index of one of the aggregators.
+	 * @return The aggregator.
+	 */
+	SiteAggregator get(int index) {
+		return this.aggregators.get(index);
+	}
+
+	@Override
+	public MultiAggregator newPartial() {
+		List<SiteAggregator> partials = new ArrayList<>(this.aggregators.size());
+		for (var aggregator : this.aggregators) {
+			partials.add(aggregator.newPartial());
+		}
+		return new MultiAggregator(partials);
+	}
+
+	@Override
+	public void merge(MultiAggregator next) {
+		for (int i = 0; i < this.aggregators.size(); i++) {
+			this.aggregators.get(i).merge(next.aggregators.get(i));
+		}
+	}
+
+	@Override
+	public boolean needsEntries() {
+		return this.needsEntries;
+	}
+
+	@Override
+	public void accept(MonitorEntry entry) {
+		for (var aggregator : this.aggregators) {
+			aggregator.accept(entry);
+		}
+	}
+
+	@Override
+	public void accept(EntryRow row) {
+		for (var aggregator : this.aggregators) {
+			aggregator.accept(row);
+		}
+	}
+
+	@Override
+	public void accept(SummaryEntry summary) {
+		for (var aggregator : this.aggregators) {
+			aggregator.accept(summary);
+		}
+	}
+}
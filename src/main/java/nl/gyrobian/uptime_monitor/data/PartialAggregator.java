@@ -0,0 +1,32 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import nl.gyrobian.uptime_monitor.storage.EntrySink;
+
+/**
+ * An aggregator of a site's entries and summaries, which can aggregate
+ * separate parts of the data independently, to be merged in order of time
+ * afterwards.
+ * @param <A> The type of the aggregator itself.
+ */
+interface PartialAggregator<A extends PartialAggregator<A>> extends EntrySink {
+	/**
+	 * Adds a summary.
+	 * @param summary The summary to add.
+	 */
+	void accept(SummaryEntry summary);
+
+	/**
+	 * Creates an empty aggregator with the same settings as this one, for
+	 * aggregating a part of the data.
+	 * @return The new aggregator.
+	 */
+	A newPartial();
+
+	/**
+	 * Merges an aggregator of the data that directly follows this one's data
+	 * into this one.
+	 * @param next The aggregator to merge, which was created with
+	 *             {@link #newPartial()}.
+	 */
+	void merge(A next);
+}
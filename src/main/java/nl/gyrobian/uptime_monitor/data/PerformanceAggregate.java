@@ -0,0 +1,335 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A mergeable summary of a series of entries, from which performance data can
+ * be computed. Entries are added in order of their timestamps, and aggregates
+ * of different series can be merged into one. Uptime and downtime are measured
+ * between consecutive entries, so an aggregate keeps the timestamp and status
+ * of its first and last entry, which lets a merge count the time between two
+ * series just as if their entries had been added one by one. Response times
+ * are also kept in a {@link LatencyHistogram}, for estimating percentiles.
+ * Entries without a response time, like those of probes that got no response
+ * at all, count towards uptime and success, but not towards response times.
+ */
+public class PerformanceAggregate {
+	/**
+	 * The headers of the columns of an aggregate, in a summary file.
+	 */
+	public static final String[] CSV_HEADERS = {
+			"Count", "Errors", "Response Time Sum (ms)", "Uptime (ms)", "Downtime (ms)",
+			"First Timestamp", "First Ok", "Last Timestamp", "Last Ok",
+			"DNS Sum (us)", "DNS Count", "Connect Sum (us)", "Connect Count", "TLS Sum (us)", "TLS Count",
+			"TTFB Sum (us)", "TTFB Count", "Body Sum (us)", "Body Count",
+			"Response Time Histogram", "Response Time Count"
+	};
+	/**
+	 * The number of columns that every aggregate has. Aggregates that were
+	 * written before response time histograms were introduced don't have the
+	 * last two columns, and those written before entries without a response
+	 * time were left out of response times don't have the last column.
+	 */
+	private static final int REQUIRED_COLUMNS = CSV_HEADERS.length - 2;
+	private static final int PHASES = 5;
+
+	private long count = 0;
+	private long errors = 0;
+	private long responseTimeSum = 0;
+	private long responseTimeCount = 0;
+	private long uptime = 0;
+	private long downtime = 0;
+	private long firstTimestamp = -1;
+	private boolean firstOk = false;
+	private long lastTimestamp = -1;
+	private boolean lastOk = false;
+	private final long[] phaseSums = new long[PHASES];
+	private final long[] phaseCounts = new long[PHASES];
+	private final LatencyHistogram responseTimes = new LatencyHistogram();
+
+	/**
+	 * Adds an entry, which should not be older than any entry that was added
+	 * before it.
+	 * @param entry The entry to add.
+	 */
+	public void add(MonitorEntry entry) {
+		var timings = entry.timings();
+		this.add(entry.timestamp().toInstant().toEpochMilli(), entry.isOk(), entry.responseTime(),
+				timings.dnsMicros(), timings.connectMicros(), timings.tlsMicros(), timings.ttfbMicros(), timings.bodyMicros());
+	}
+
+	private void add(long timestamp, boolean ok, int responseTime, long dns, long connect, long tls, long ttfb, long body) {
+		if (this.count == 0) {
+			this.firstTimestamp = timestamp;
+			this.firstOk = ok;
+		} else {
+			this.addGap(timestamp, ok);
+		}
+		this.lastTimestamp = timestamp;
+		this.lastOk = ok;
+		this.count++;
+		if (!ok) this.errors++;
+		if (responseTime >= 0) {
+			this.responseTimeSum += responseTime;
+			this.responseTimeCount++;
+			this.responseTimes.add(responseTime);
+		}
+		this.addPhase(0, dns);
+		this.addPhase(1, connect);
+		this.addPhase(2, tls);
+		this.addPhase(3, ttfb);
+		this.addPhase(4, body);
+	}
+
+	/**
+	 * Adds a batch of entries, which should not be older than any entry that
+	 * was added before them. The gaps between entries and the response time
+	 * histogram are computed entry by entry, and the remaining sums and counts
+	 * with the given kernels. Negative response times are unknown, and are
+	 * left out of the response times.
+	 * @param batch The batch of entries.
+	 * @param kernels The kernels to use.
+	 */
+	void add(EntryBatch batch, AggregationKernels kernels) {
+		int size = batch.size();
+		if (size == 0) return;
+		long[] timestamps = batch.epochMillis();
+		int[] responseCodes = batch.responseCodes();
+		int[] responseTimes = batch.responseTimes();
+		int start = 0;
+		if (this.count == 0) {
+			this.firstTimestamp = timestamps[0];
+			this.firstOk = responseCodes[0] < 400;
+			this.lastTimestamp = this.firstTimestamp;
+			this.lastOk = this.firstOk;
+			if (responseTimes[0] >= 0) this.responseTimes.add(responseTimes[0]);
+			start = 1;
+		}
+		for (int i = start; i < size; i++) {
+			boolean ok = responseCodes[i] < 400;
+			this.addGap(timestamps[i], ok);
+			this.lastTimestamp = timestamps[i];
+			this.lastOk = ok;
+			if (responseTimes[i] >= 0) this.responseTimes.add(responseTimes[i]);
+		}
+		this.count += size;
+		this.errors += kernels.countAtLeast(responseCodes, size, 400);
+		this.responseTimeSum += kernels.sumNonNegative(responseTimes, size);
+		this.responseTimeCount += kernels.countAtLeast(responseTimes, size, 0);
+		for (int p = 0; p < PHASES; p++) {
+			this.phaseSums[p] += kernels.sumNonNegative(batch.timings(p), size);
+			this.phaseCounts[p] += kernels.countNonNegative(batch.timings(p), size);
+		}
+	}
+
+	/**
+	 * Merges another aggregate into this one. Whichever of the two starts
+	 * first is treated as the earlier series.
+	 * @param other The aggregate to merge into this one.
+	 */
+	public void merge(PerformanceAggregate other) {
+		if (other.count == 0) return;
+		if (this.count == 0) {
+			this.copyFrom(other);
+			return;
+		}
+		if (other.firstTimestamp < this.firstTimestamp) {
+			var merged = new PerformanceAggregate();
+			merged.copyFrom(other);
+			merged.append(this);
+			this.copyFrom(merged);
+		} else {
+			this.append(other);
+		}
+	}
+
+	/**
+	 * Appends an aggregate of a series which comes after this one's.
+	 * @param next The aggregate to append.
+	 */
+	private void append(PerformanceAggregate next) {
+		this.addGap(next.firstTimestamp, next.firstOk);
+		this.count += next.count;
+		this.errors += next.errors;
+		this.responseTimeSum += next.responseTimeSum;
+		this.responseTimeCount += next.responseTimeCount;
+		this.uptime += next.uptime;
+		this.downtime += next.downtime;
+		if (next.lastTimestamp >= this.lastTimestamp) {
+			this.lastTimestamp = next.lastTimestamp;
+			this.lastOk = next.lastOk;
+		}
+		for (int i = 0; i < PHASES; i++) {
+			this.phaseSums[i] += next.phaseSums[i];
+			this.phaseCounts[i] += next.phaseCounts[i];
+		}
+		this.responseTimes.merge(next.responseTimes);
+	}
+
+	/**
+	 * Counts the time between the last entry and a following entry as uptime
+	 * or downtime, if both have the same status.
+	 * @param timestamp The timestamp of the following entry, in epoch millis.
+	 * @param ok Whether the following entry was ok.
+	 */
+	private void addGap(long timestamp, boolean ok) {
+		// Entries may be slightly out of order, since probes can complete out of order.
+		long gap = Math.max(0, timestamp - this.lastTimestamp);
+		if (ok && this.lastOk) {
+			this.uptime += gap;
+		} else if (!ok && !this.lastOk) {
+			this.downtime += gap;
+		}
+	}
+
+	private void addPhase(int phase, long micros) {
+		if (micros < 0) return;
+		this.phaseSums[phase] += micros;
+		this.phaseCounts[phase]++;
+	}
+
+	private void copyFrom(PerformanceAggregate other) {
+		this.count = other.count;
+		this.errors = other.errors;
+		this.responseTimeSum = other.responseTimeSum;
+		this.responseTimeCount = other.responseTimeCount;
+		this.uptime = other.uptime;
+		this.downtime = other.downtime;
+		this.firstTimestamp = other.firstTimestamp;
+		this.firstOk = other.firstOk;
+		this.lastTimestamp = other.lastTimestamp;
+		this.lastOk = other.lastOk;
+		System.arraycopy(other.phaseSums, 0, this.phaseSums, 0, PHASES);
+		System.arraycopy(other.phaseCounts, 0, this.phaseCounts, 0, PHASES);
+		this.responseTimes.copyFrom(other.responseTimes);
+	}
+
+	/**
+	 * @return The number of entries in this aggregate.
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return The timestamp of the first entry, in epoch millis, or -1 if the
+	 * aggregate is empty.
+	 */
+	public long getFirstTimestamp() {
+		return this.firstTimestamp;
+	}
+
+	/**
+	 * @return The timestamp of the last entry, in epoch millis, or -1 if the
+	 * aggregate is empty.
+	 */
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	/**
+	 * Computes performance data from this aggregate.
+	 * @return The performance data.
+	 */
+	public ReportData.PerformanceData toPerformanceData() {
+		if (this.count == 0) return new ReportData.PerformanceData(0, ReportData.ResponseTimePercentiles.UNKNOWN, 100, Duration.ZERO, Duration.ZERO, 100, 0, ReportData.PhaseTimes.UNKNOWN);
+		float averageResponseTime = this.responseTimeCount == 0 ? 0 : (float) (this.responseTimeSum / (double) this.responseTimeCount);
+		float successPercentage = (float) ((this.count - this.errors) / (double) this.count) * 100.0f;
+		float uptimePercentage = 100.0f;
+		if (this.uptime > 0 || this.downtime > 0) {
+			uptimePercentage *= (float) (this.uptime / (double) (this.uptime + this.downtime));
+		}
+		return new ReportData.PerformanceData(
+				averageResponseTime,
+				new ReportData.ResponseTimePercentiles(
+						this.responseTimes.percentile(50),
+						this.responseTimes.percentile(95),
+						this.responseTimes.percentile(99)
+				),
+				successPercentage,
+				Duration.ofMillis(this.uptime),
+				Duration.ofMillis(this.downtime),
+				uptimePercentage,
+				this.count,
+				new ReportData.PhaseTimes(
+						this.averagePhase(0),
+						this.averagePhase(1),
+						this.averagePhase(2),
+						this.averagePhase(3),
+						this.averagePhase(4)
+				)
+		);
+	}
+
+	/**
+	 * Computes the average of a phase, in milliseconds.
+	 * @param phase The index of the phase.
+	 * @return The average, or -1 if the phase was never observed.
+	 */
+	private float averagePhase(int phase) {
+		if (this.phaseCounts[phase] == 0) return -1;
+		return (float) (this.phaseSums[phase] / (double) this.phaseCounts[phase] / 1000.0);
+	}
+
+	/**
+	 * @return The values of this aggregate, in the order of {@link #CSV_HEADERS}.
+	 */
+	public Object[] toCsvValues() {
+		Object[] values = new Object[CSV_HEADERS.length];
+		values[0] = this.count;
+		values[1] = this.errors;
+		values[2] = this.responseTimeSum;
+		values[3] = this.uptime;
+		values[4] = this.downtime;
+		values[5] = this.firstTimestamp;
+		values[6] = this.firstOk;
+		values[7] = this.lastTimestamp;
+		values[8] = this.lastOk;
+		for (int i = 0; i < PHASES; i++) {
+			values[9 + 2 * i] = this.phaseSums[i];
+			values[10 + 2 * i] = this.phaseCounts[i];
+		}
+		values[19] = this.responseTimes.toCsvValue();
+		values[20] = this.responseTimeCount;
+		return values;
+	}
+
+	/**
+	 * Reads an aggregate from a record in a summary file.
+	 * @param record The record.
+	 * @param offset The index of the aggregate's first column.
+	 * @return The aggregate.
+	 * @throws IOException If the record is not a valid aggregate.
+	 */
+	public static PerformanceAggregate fromCsvRecord(CSVRecord record, int offset) throws IOException {
+		if (record.size() < offset + REQUIRED_COLUMNS) throw new IOException("Summary record has too few columns.");
+		var aggregate = new PerformanceAggregate();
+		try {
+			aggregate.count = Long.parseLong(record.get(offset));
+			aggregate.errors = Long.parseLong(record.get(offset + 1));
+			aggregate.responseTimeSum = Long.parseLong(record.get(offset + 2));
+			aggregate.uptime = Long.parseLong(record.get(offset + 3));
+			aggregate.downtime = Long.parseLong(record.get(offset + 4));
+			aggregate.firstTimestamp = Long.parseLong(record.get(offset + 5));
+			aggregate.firstOk = Boolean.parseBoolean(record.get(offset + 6));
+			aggregate.lastTimestamp = Long.parseLong(record.get(offset + 7));
+			aggregate.lastOk = Boolean.parseBoolean(record.get(offset + 8));
+			for (int i = 0; i < PHASES; i++) {
+				aggregate.phaseSums[i] = Long.parseLong(record.get(offset + 9 + 2 * i));
+				aggregate.phaseCounts[i] = Long.parseLong(record.get(offset + 10 + 2 * i));
+			}
+			if (record.size() > offset + REQUIRED_COLUMNS) {
+				aggregate.responseTimes.addCsvValue(record.get(offset + REQUIRED_COLUMNS));
+			}
+			aggregate.responseTimeCount = record.size() > offset + REQUIRED_COLUMNS + 1
+					? Long.parseLong(record.get(offset + REQUIRED_COLUMNS + 1))
+					: aggregate.count;
+		} catch (NumberFormatException e) {
+			throw new IOException("Could not parse summary record.", e);
+		}
+		return aggregate;
+	}
+}
@@ -0,0 +1,42 @@
+package nl.gyrobian.uptime_monitor.data;
+
+/**
+ * The durations of the individual phases of a single probe, in microseconds.
+ * A negative value means that the phase was not observed, for example because
+ * an already-open connection was reused, or because the entry was recorded
+ * before phase timings were introduced.
+ *
+ * @param dnsMicros The time it took to resolve the site's host name.
+ * @param connectMicros The time it took to establish a TCP connection.
+ * @param tlsMicros The time it took to complete the TLS handshake.
+ * @param ttfbMicros The time from sending the request until the response
+ *                   headers were received.
+ * @param bodyMicros The time it took to read the response body, after the
+ *                   headers were received.
+ */
+public record ProbeTimings(
+		long dnsMicros,
+		long connectMicros,
+		long tlsMicros,
+		long ttfbMicros,
+		long bodyMicros
+) {
+	public static final ProbeTimings UNKNOWN = new ProbeTimings(-1, -1, -1, -1, -1);
+
+	/**
+	 * The headers of the columns that phase timings are recorded in.
+	 */
+	public static final String[] CSV_HEADERS = {"DNS (us)", "Connect (us)", "TLS (us)", "TTFB (us)", "Body (us)"};
+
+	/**
+	 * @return The phase timings as CSV values, where phases that were not
+	 * observed are left empty.
+	 */
+	public Object[] toCsvValues() {
+		return new Object[]{csvValue(dnsMicros), csvValue(connectMicros), csvValue(tlsMicros), csvValue(ttfbMicros), csvValue(bodyMicros)};
+	}
+
+	private static Object csvValue(long micros) {
+		return micros < 0 ? null : micros;
+	}
+}
@@ -0,0 +1,117 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring buffer of the most recent entries of a site, which is kept
+ * in memory by the running monitor so that recent performance can be measured
+ * without reading any files. The fields of each entry are stored in primitive
+ * arrays, and once the buffer is full, each new entry replaces the oldest one.
+ * <p>
+ *     Entries are added without any locks. Each slot has a sequence number,
+ *     which is cleared while the slot is written, and set to the entry's
+ *     position once it's complete. Readers check the sequence number before
+ *     and after reading a slot, and skip slots that were overwritten in
+ *     between, so they never block writers, and never see a partly written
+ *     entry.
+ * </p>
+ */
+public final class RecentSamples {
+	private static final int PHASES = 5;
+
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLongArray sequences;
+	private final long[] timestamps;
+	private final int[] responseCodes;
+	private final int[] responseTimes;
+	private final int[][] timings;
+
+	/**
+	 * Constructs an empty buffer.
+	 * @param capacity The number of entries to keep, which is rounded up to a
+	 *                 power of two.
+	 */
+	public RecentSamples(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Invalid number of samples: " + capacity);
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		if (capacity == 1) size = 1;
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) this.sequences.setPlain(i, -1);
+		this.timestamps = new long[size];
+		this.responseCodes = new int[size];
+		this.responseTimes = new int[size];
+		this.timings = new int[PHASES][size];
+	}
+
+	/**
+	 * @return The number of entries that this buffer can hold.
+	 */
+	public int getCapacity() {
+		return this.mask + 1;
+	}
+
+	/**
+	 * Adds an entry, replacing the oldest entry if the buffer is full.
+	 * Entries should be added in order of their timestamps.
+	 * @param entry The entry to add.
+	 */
+	public void add(MonitorEntry entry) {
+		long sequence = this.head.getAndIncrement();
+		int i = (int) (sequence & this.mask);
+		this.sequences.setOpaque(i, -1);
+		// The slot must be marked as being written before any of its fields change.
+		VarHandle.storeStoreFence();
+		this.timestamps[i] = entry.timestamp().toInstant().toEpochMilli();
+		this.responseCodes[i] = entry.responseCode();
+		this.responseTimes[i] = entry.responseTime();
+		var t = entry.timings();
+		this.timings[0][i] = toInt(t.dnsMicros());
+		this.timings[1][i] = toInt(t.connectMicros());
+		this.timings[2][i] = toInt(t.tlsMicros());
+		this.timings[3][i] = toInt(t.ttfbMicros());
+		this.timings[4][i] = toInt(t.bodyMicros());
+		this.sequences.setRelease(i, sequence);
+	}
+
+	/**
+	 * Aggregates the entries in this buffer that were taken at or after a
+	 * given time.
+	 * @param sinceMillis The time of the earliest entry to include, in epoch
+	 *                    millis.
+	 * @return The aggregate of the entries.
+	 */
+	public PerformanceAggregate aggregate(long sinceMillis) {
+		var aggregate = new PerformanceAggregate();
+		var kernels = AggregationKernels.get();
+		var batch = new EntryBatch();
+		var row = new EntryRow();
+		long end = this.head.get();
+		for (long sequence = Math.max(0, end - this.getCapacity()); sequence < end; sequence++) {
+			int i = (int) (sequence & this.mask);
+			if (this.sequences.getAcquire(i) != sequence) continue;
+			long timestamp = this.timestamps[i];
+			row.setTimestamp(Math.floorDiv(timestamp, 1000L), (int) Math.floorMod(timestamp, 1000L) * 1_000_000, 0);
+			row.setResponseCode(this.responseCodes[i]);
+			row.setResponseTime(this.responseTimes[i]);
+			for (int p = 0; p < PHASES; p++) row.setTiming(p, this.timings[p][i]);
+			// The fields must be read before checking that the slot wasn't overwritten meanwhile.
+			VarHandle.acquireFence();
+			if (this.sequences.getOpaque(i) != sequence || timestamp < sinceMillis) continue;
+			batch.add(row);
+			if (batch.size() == EntryBatch.CAPACITY) {
+				aggregate.add(batch, kernels);
+				batch.clear();
+			}
+		}
+		aggregate.add(batch, kernels);
+		return aggregate;
+	}
+
+	private static int toInt(long micros) {
+		return (int) Math.max(-1, Math.min(Integer.MAX_VALUE, micros));
+	}
+}
@@ -1,5 +1,7 @@
 package nl.gyrobian.uptime_monitor.data;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
@@ -16,7 +18,15 @@ import java.util.Map;
  * @param measurementDuration The time it took to perform the measurement.
  * @param totalFilesSize The total size of all files examined.
  * @param fileCount The number of files examined.
- * @param entries A list of all entries.
+ * @param entries A list of all entries that have not been compacted into
+ *                summaries, or null if entries were not requested.
+ *                Compacted entries are only included in the performance
+ *                data.
+ * @param aggregatePerformance The performance data for the whole range.
+ * @param focusIntervalPerformanceData The performance data for each focus
+ *                                     interval.
+ * @param groupedPerformanceData The performance data for each non-empty
+ *                               group of each requested grouping.
  */
 public record ReportData(
 		OffsetDateTime generatedAt,
@@ -26,25 +36,76 @@ public record ReportData(
 		long measurementDuration,
 		long totalFilesSize,
 		int fileCount,
-		MonitorEntry[] entries,
+		@JsonInclude(JsonInclude.Include.NON_NULL) EntryColumns entries,
 		PerformanceData aggregatePerformance,
-		Map<FocusInterval, PerformanceData> focusIntervalPerformanceData
+		Map<FocusInterval, PerformanceData> focusIntervalPerformanceData,
+		@JsonInclude(JsonInclude.Include.NON_EMPTY) Map<Grouping, Map<String, PerformanceData>> groupedPerformanceData
 ) {
 	/**
 	 * Performance data that has been computed for a set of entries.
 	 * @param averageResponseTime The average response time, in milliseconds.
+	 * @param responseTimePercentiles Percentiles of the response time.
 	 * @param successPercent The percentage of requests that were successful.
 	 * @param totalUptime The total duration during which the site was online.
 	 * @param totalDowntime The total duration during which the site was down.
 	 * @param uptimePercent The percentage of time that the site was up.
 	 * @param entryCount The number of entries that make up this data.
+	 * @param averagePhaseTimes The average duration of each phase of a probe.
 	 */
 	public record PerformanceData(
 			float averageResponseTime,
+			ResponseTimePercentiles responseTimePercentiles,
 			float successPercent,
 			Duration totalUptime,
 			Duration totalDowntime,
 			float uptimePercent,
-			long entryCount
+			long entryCount,
+			PhaseTimes averagePhaseTimes
 	) {}
+
+	/**
+	 * Percentiles of the response time, in milliseconds, estimated with a
+	 * relative error of at most about 1.6%. Entries that were compacted before
+	 * response time histograms were introduced are not included. If there
+	 * are no entries to compute percentiles from, the values are -1.
+	 * @param p50 The median response time.
+	 * @param p95 The 95th percentile of the response time.
+	 * @param p99 The 99th percentile of the response time.
+	 */
+	public record ResponseTimePercentiles(
+			float p50,
+			float p95,
+			float p99
+	) {
+		public static final ResponseTimePercentiles UNKNOWN = new ResponseTimePercentiles(-1, -1, -1);
+	}
+
+	/**
+	 * The average duration of each phase of a probe, in milliseconds. A phase
+	 * that was not observed for any of the entries has a value of -1.
+	 * @param dns The time spent resolving the site's host name.
+	 * @param connect The time spent establishing a TCP connection.
+	 * @param tls The time spent on the TLS handshake.
+	 * @param timeToFirstByte The time from sending the request until the
+	 *                        response headers were received.
+	 * @param body The time spent reading the response body.
+	 */
+	public record PhaseTimes(
+			float dns,
+			float connect,
+			float tls,
+			float timeToFirstByte,
+			float body
+	) {
+		public static final PhaseTimes UNKNOWN = new PhaseTimes(-1, -1, -1, -1, -1);
+
+		/**
+		 * Formats a phase time for display.
+		 * @param millis The phase time, in milliseconds.
+		 * @return The formatted phase time.
+		 */
+		public static String format(float millis) {
+			return millis < 0 ? "n/a" : String.format("%.3f ms", millis);
+		}
+	}
 }
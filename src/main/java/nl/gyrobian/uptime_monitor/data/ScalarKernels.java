@@ -0,0 +1,55 @@
+package nl.gyrobian.uptime_monitor.data;
+
+/**
+ * Aggregation kernels that use plain loops.
+ */
+final class ScalarKernels implements AggregationKernels {
+	static final ScalarKernels INSTANCE = new ScalarKernels();
+
+	private ScalarKernels() {}
+
+	@Override
+	public long sumNonNegative(int[] values, int length) {
+		long sum = 0;
+		for (int i = 0; i < length; i++) {
+			if (values[i] >= 0) sum += values[i];
+		}
+		return sum;
+	}
+
+	@Override
+	public int countAtLeast(int[] values, int length, int threshold) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (values[i] >= threshold) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public long sumNonNegative(long[] values, int length) {
+		long sum = 0;
+		for (int i = 0; i < length; i++) {
+			if (values[i] >= 0) sum += values[i];
+		}
+		return sum;
+	}
+
+	@Override
+	public int countNonNegative(long[] values, int length) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (values[i] >= 0) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public int countInRange(long[] values, int length, long min, long max) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (values[i] >= min && values[i] <= max) count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,148 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import nl.gyrobian.uptime_monitor.storage.SegmentReader;
+import nl.gyrobian.uptime_monitor.storage.SummaryFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fork-join task that scans a range of a site's data files, ordered by time,
+ * into a partial aggregate. Ranges of more than one file are split in half,
+ * and the partial aggregates of both halves are merged in order, so the result
+ * is the same as if all files had been scanned one after another.
+ * @param <A> The type of aggregator to scan the files into.
+ */
+class SegmentScanTask<A extends PartialAggregator<A>> extends RecursiveTask<A> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A single data file to scan.
+	 * @param path The path to the file.
+	 * @param summary Whether the file is a summary file, as opposed to a
+	 *                segment of entries.
+	 * @param offset The offset in the segment from which to continue an
+	 *               earlier scan, or 0 to scan the whole file.
+	 * @param sealed Whether the file is a segment that is no longer written
+	 *               to, so that its index can be used.
+	 */
+	record Source(Path path, boolean summary, long offset, boolean sealed) {
+		Source(Path path, boolean summary) {
+			this(path, summary, 0, false);
+		}
+	}
+
+	private final List<Source> sources;
+	private final A template;
+	private final SegmentReader reader;
+	private final AtomicLong fileSizeTraversed;
+	private final AtomicInteger fileCount;
+	private final Map<Path, Long> positions;
+	private final Long startMillis;
+	private final Long endMillis;
+
+	/**
+	 * Constructs a task that scans the data of the files within a range of
+	 * time. Sealed segments are only scanned in the part that may have
+	 * entries within the range, but other entries may still be passed to the
+	 * aggregator.
+	 * @param sources The files to scan, ordered by time.
+	 * @param template An aggregator to create partial aggregators from.
+	 * @param reader The reader for the site's segments.
+	 * @param fileSizeTraversed A counter for the total size of all scanned
+	 *                          data.
+	 * @param fileCount A counter for the number of scanned files.
+	 * @param startMillis The start of the range, inclusive, in epoch millis,
+	 *                    or null for no start.
+	 * @param endMillis The end of the range, exclusive, in epoch millis, or
+	 *                  null for no end.
+	 */
+	SegmentScanTask(List<Source> sources, A template, SegmentReader reader, AtomicLong fileSizeTraversed, AtomicInteger fileCount, Long startMillis, Long endMillis) {
+		this(sources, template, reader, fileSizeTraversed, fileCount, null, startMillis, endMillis);
+	}
+
+	/**
+	 * Constructs a task that scans segments from their offsets, and keeps
+	 * track of how far each segment was scanned, so that a later scan can
+	 * continue from there. The aggregator must not need complete entries.
+	 * @param sources The files to scan, ordered by time.
+	 * @param template An aggregator to create partial aggregators from.
+	 * @param reader The reader for the site's segments.
+	 * @param fileSizeTraversed A counter for the total size of all scanned
+	 *                          data.
+	 * @param fileCount A counter for the number of scanned files.
+	 * @param positions A thread-safe map to put the offset up to which each
+	 *                  segment was scanned in, or null to scan whole files.
+	 *                  Segments that couldn't be read get -1.
+	 */
+	SegmentScanTask(List<Source> sources, A template, SegmentReader reader, AtomicLong fileSizeTraversed, AtomicInteger fileCount, Map<Path, Long> positions) {
+		this(sources, template, reader, fileSizeTraversed, fileCount, positions, null, null);
+	}
+
+	private SegmentScanTask(List<Source> sources, A template, SegmentReader reader, AtomicLong fileSizeTraversed, AtomicInteger fileCount, Map<Path, Long> positions, Long startMillis, Long endMillis) {
+		this.sources = sources;
+		this.template = template;
+		this.reader = reader;
+		this.fileSizeTraversed = fileSizeTraversed;
+		this.fileCount = fileCount;
+		this.positions = positions;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+	}
+
+	@Override
+	protected A compute() {
+		if (this.sources.size() <= 1) {
+			var aggregator = this.template.newPartial();
+			if (!this.sources.isEmpty()) this.scan(this.sources.get(0), aggregator);
+			return aggregator;
+		}
+		int middle = this.sources.size() / 2;
+		var first = new SegmentScanTask<>(this.sources.subList(0, middle), this.template, this.reader, this.fileSizeTraversed, this.fileCount, this.positions, this.startMillis, this.endMillis);
+		var second = new SegmentScanTask<>(this.sources.subList(middle, this.sources.size()), this.template, this.reader, this.fileSizeTraversed, this.fileCount, this.positions, this.startMillis, this.endMillis);
+		second.fork();
+		var result = first.compute();
+		result.merge(second.join());
+		return result;
+	}
+
+	/**
+	 * Scans a single file. Files that can't be read are skipped, and if
+	 * positions are kept, their position is set to -1.
+	 * @param source The file to scan.
+	 * @param aggregator The aggregator to add the file's data to.
+	 */
+	private void scan(Source source, A aggregator) {
+		try {
+			if (!source.summary() && this.positions != null) {
+				long end = this.reader.read(source.path(), source.offset(), aggregator);
+				this.positions.put(source.path(), end);
+				if (end > source.offset()) {
+					this.fileSizeTraversed.addAndGet(end - source.offset());
+					this.fileCount.incrementAndGet();
+				}
+				return;
+			}
+			long size;
+			if (source.summary()) {
+				SummaryFile.read(source.path(), aggregator::accept);
+				size = Files.size(source.path());
+			} else {
+				size = this.reader.read(source.path(), this.startMillis, this.endMillis, source.sealed(), aggregator);
+			}
+			if (size > 0) {
+				this.fileSizeTraversed.addAndGet(size);
+				this.fileCount.incrementAndGet();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			if (this.positions != null) this.positions.put(source.path(), -1L);
+		}
+	}
+}
@@ -0,0 +1,438 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the entries and summaries of a single site in a single pass, as
+ * they're read, into the performance data for the whole measurement period,
+ * for each focus interval, and for each group of every requested
+ * {@link Grouping}. Only one aggregate is kept for the period, each focus
+ * interval and each group, so memory use doesn't depend on the number of
+ * entries, unless the entries themselves are explicitly kept too.
+ * <p>
+ *     Entries and summaries must be given in order of time. Entries of a site
+ *     are written in that order, since a site is never probed again while a
+ *     probe is still in flight.
+ * </p>
+ * <p>
+ *     Separate parts of the data can be aggregated independently, using
+ *     {@link #newPartial()}, and then merged in order of time. Since every
+ *     aggregate keeps the state of its first and last entry, the result is
+ *     exactly the same as if all data had been added to a single aggregator.
+ * </p>
+ */
+public class SiteAggregator implements PartialAggregator<SiteAggregator> {
+	private final LocalDate startDate;
+	private final LocalDate endDate;
+	private final long startLocalMillis;
+	private final long endLocalMillis;
+	private final List<FocusInterval> focusIntervals;
+	private final FocusIntervalTable focusIntervalTable;
+	private final List<Grouping> groupings;
+	private final PerformanceAggregate aggregate = new PerformanceAggregate();
+	private final PerformanceAggregate[] focusIntervalAggregates;
+	private final PerformanceAggregate[][] groupAggregates;
+	private final EntryColumns entries;
+	private final AggregationKernels kernels = AggregationKernels.get();
+	/**
+	 * The buffered entry rows, which are added to the aggregates in batches.
+	 * This is only allocated once the first row is added, unless the batch
+	 * is shared.
+	 */
+	private EntryBatch batch;
+	private long firstMillis = Long.MAX_VALUE;
+	private int firstOffsetSeconds;
+	private long lastMillis = Long.MIN_VALUE;
+	private int lastOffsetSeconds;
+
+	/**
+	 * Constructs the aggregator.
+	 * @param startDate The start of the measurement period, inclusive, or null.
+	 * @param endDate The end of the measurement period, inclusive, or null.
+	 * @param focusIntervals The focus intervals to compute separate
+	 *                       statistics for.
+	 * @param groupings The groupings to compute separate statistics for.
+	 * @param keepEntries Whether to keep every entry in the measurement
+	 *                    period, in addition to the aggregates.
+	 */
+	public SiteAggregator(LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, List<Grouping> groupings, boolean keepEntries) {
+		this(startDate, endDate, focusIntervals, focusIntervals.isEmpty() ? null : new FocusIntervalTable(focusIntervals), groupings, keepEntries, null);
+	}
+
+	/**
+	 * Constructs the aggregator with a lookup table of its focus intervals and
+	 * a batch for buffering entry rows, which may both be shared with other
+	 * aggregators. A batch can only be shared as long as each aggregator is
+	 * flushed before another one is given anything.
+	 * @param startDate The start of the measurement period, inclusive, or null.
+	 * @param endDate The end of the measurement period, inclusive, or null.
+	 * @param focusIntervals The focus intervals to compute separate
+	 *                       statistics for.
+	 * @param focusIntervalTable The lookup table of the focus intervals, or
+	 *                           null if there are none.
+	 * @param groupings The groupings to compute separate statistics for.
+	 * @param keepEntries Whether to keep every entry in the measurement
+	 *                    period, in addition to the aggregates.
+	 * @param batch The batch to buffer entry rows in, or null.
+	 */
+	SiteAggregator(LocalDate startDate, LocalDate endDate, List<FocusInterval> focusIntervals, FocusIntervalTable focusIntervalTable, List<Grouping> groupings, boolean keepEntries, EntryBatch batch) {
+		this.batch = batch;
+		this.startDate = startDate;
+		this.endDate = endDate;
+		// The period is compared to the local date and time of each entry, as milliseconds since 1970-01-01T00:00.
+		this.startLocalMillis = startDate == null ? Long.MIN_VALUE : startDate.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+		this.endLocalMillis = endDate == null ? Long.MAX_VALUE : endDate.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+		this.focusIntervals = List.copyOf(focusIntervals);
+		this.focusIntervalAggregates = new PerformanceAggregate[focusIntervals.size()];
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			this.focusIntervalAggregates[i] = new PerformanceAggregate();
+		}
+		this.focusIntervalTable = focusIntervalTable;
+		this.groupings = List.copyOf(groupings);
+		this.groupAggregates = new PerformanceAggregate[this.groupings.size()][];
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			this.groupAggregates[g] = new PerformanceAggregate[this.groupings.get(g).bucketCount()];
+			for (int b = 0; b < this.groupAggregates[g].length; b++) {
+				this.groupAggregates[g][b] = new PerformanceAggregate();
+			}
+		}
+		this.entries = keepEntries ? new EntryColumns() : null;
+	}
+
+	/**
+	 * Creates an empty aggregator with the same measurement period, focus
+	 * intervals, groupings and settings as this one, for aggregating a part of
+	 * the data.
+	 * @return The new aggregator.
+	 */
+	@Override
+	public SiteAggregator newPartial() {
+		return new SiteAggregator(this.startDate, this.endDate, this.focusIntervals, this.focusIntervalTable, this.groupings, this.entries != null, null);
+	}
+
+	/**
+	 * Merges an aggregator of the data that directly follows this one's data
+	 * into this one.
+	 * @param next The aggregator to merge, which was created with
+	 *             {@link #newPartial()}.
+	 */
+	@Override
+	public void merge(SiteAggregator next) {
+		this.flush();
+		next.flush();
+		this.aggregate.merge(next.aggregate);
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			this.focusIntervalAggregates[i].merge(next.focusIntervalAggregates[i]);
+		}
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			for (int b = 0; b < this.groupAggregates[g].length; b++) {
+				this.groupAggregates[g][b].merge(next.groupAggregates[g][b]);
+			}
+		}
+		if (this.entries != null) this.entries.addAll(next.entries);
+		if (next.firstMillis <= next.lastMillis) {
+			this.updateBounds(next.firstMillis, next.firstOffsetSeconds);
+			this.updateBounds(next.lastMillis, next.lastOffsetSeconds);
+		}
+	}
+
+	@Override
+	public boolean needsEntries() {
+		return this.entries != null;
+	}
+
+	/**
+	 * Adds an entry, if it is within the measurement period.
+	 * @param entry The entry to add.
+	 */
+	@Override
+	public void accept(MonitorEntry entry) {
+		this.flush();
+		long localMillis = toLocalMillis(entry.timestamp());
+		if (localMillis < this.startLocalMillis || localMillis >= this.endLocalMillis) return;
+		this.aggregate.add(entry);
+		if (this.focusIntervalTable != null) {
+			for (int mask = this.focusIntervalTable.maskOf(entry.timestamp().toLocalTime().toNanoOfDay()); mask != 0; mask &= mask - 1) {
+				this.focusIntervalAggregates[Integer.numberOfTrailingZeros(mask)].add(entry);
+			}
+		}
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			this.groupAggregates[g][this.groupings.get(g).bucketOf(localMillis, entry.responseCode())].add(entry);
+		}
+		if (this.entries != null) this.entries.add(entry);
+		this.updateBounds(entry.timestamp());
+	}
+
+	/**
+	 * Adds the fields of an entry, if it is within the measurement period.
+	 * Rows are buffered, and added to the aggregates a batch at a time.
+	 * @param row The fields of the entry to add.
+	 */
+	@Override
+	public void accept(EntryRow row) {
+		if (this.batch == null) this.batch = new EntryBatch();
+		this.batch.add(row);
+		if (this.batch.isFull()) this.flush();
+	}
+
+	/**
+	 * Adds any buffered entry rows to the aggregates, selecting the rows in
+	 * the measurement period, and then those in each focus interval, with the
+	 * aggregation kernels.
+	 */
+	void flush() {
+		if (this.batch == null || this.batch.size() == 0) return;
+		var inPeriod = this.select(this.batch, this.batch.localMillis(), this.startLocalMillis, this.endLocalMillis - 1);
+		if (inPeriod != null) {
+			this.aggregate.add(inPeriod, this.kernels);
+			this.flushFocusIntervals(inPeriod);
+			this.flushGroups(inPeriod);
+			long[] millis = inPeriod.epochMillis();
+			long[] localMillis = inPeriod.localMillis();
+			for (int i = 0; i < inPeriod.size(); i++) {
+				this.updateBounds(millis[i], (int) ((localMillis[i] - millis[i]) / 1000));
+			}
+		}
+		this.batch.clear();
+	}
+
+	/**
+	 * Adds the rows of a batch to the focus intervals that contain them, which
+	 * are looked up once for each row.
+	 * @param batch The batch.
+	 */
+	private void flushFocusIntervals(EntryBatch batch) {
+		if (this.focusIntervalTable == null) return;
+		int size = batch.size();
+		long[] nanoOfDay = batch.nanoOfDay();
+		int[] masks = batch.masks();
+		for (int j = 0; j < size; j++) {
+			masks[j] = this.focusIntervalTable.maskOf(nanoOfDay[j]);
+		}
+		long[] keys = batch.keys();
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			for (int j = 0; j < size; j++) {
+				keys[j] = (masks[j] >>> i) & 1;
+			}
+			var inInterval = this.select(batch, keys, 1, 1);
+			if (inInterval != null) this.focusIntervalAggregates[i].add(inInterval, this.kernels);
+		}
+	}
+
+	/**
+	 * Adds the rows of a batch to their group of each grouping.
+	 * @param batch The batch.
+	 */
+	private void flushGroups(EntryBatch batch) {
+		int size = batch.size();
+		long[] localMillis = batch.localMillis();
+		int[] responseCodes = batch.responseCodes();
+		long[] keys = batch.keys();
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			var grouping = this.groupings.get(g);
+			long minKey = Long.MAX_VALUE;
+			long maxKey = Long.MIN_VALUE;
+			for (int j = 0; j < size; j++) {
+				keys[j] = grouping.bucketOf(localMillis[j], responseCodes[j]);
+				minKey = Math.min(minKey, keys[j]);
+				maxKey = Math.max(maxKey, keys[j]);
+			}
+			for (long b = minKey; b <= maxKey; b++) {
+				var inGroup = this.select(batch, keys, b, b);
+				if (inGroup != null) this.groupAggregates[g][(int) b].add(inGroup, this.kernels);
+			}
+		}
+	}
+
+	/**
+	 * Selects the rows of a batch whose key is within a range.
+	 * @param batch The batch.
+	 * @param keys One of the columns of the batch.
+	 * @param min The minimum key, inclusive.
+	 * @param max The maximum key, inclusive.
+	 * @return The batch itself if all rows are selected, its scratch batch
+	 * with the selected rows if only some are, or null if none are.
+	 */
+	private EntryBatch select(EntryBatch batch, long[] keys, long min, long max) {
+		int count = this.kernels.countInRange(keys, batch.size(), min, max);
+		if (count == 0) return null;
+		if (count == batch.size()) return batch;
+		var selection = batch.scratch();
+		batch.selectInto(keys, min, max, selection);
+		return selection;
+	}
+
+	/**
+	 * Adds a summary, if the start of its bucket is within the measurement
+	 * period.
+	 * @param summary The summary to add.
+	 */
+	@Override
+	public void accept(SummaryEntry summary) {
+		this.flush();
+		long localMillis = toLocalMillis(summary.bucketStart());
+		if (localMillis < this.startLocalMillis || localMillis >= this.endLocalMillis) return;
+		this.aggregate.merge(summary.aggregate());
+		if (this.focusIntervalTable != null) {
+			for (int mask = this.focusIntervalTable.maskOf(summary.bucketStart().toLocalTime().toNanoOfDay()); mask != 0; mask &= mask - 1) {
+				this.focusIntervalAggregates[Integer.numberOfTrailingZeros(mask)].merge(summary.aggregate());
+			}
+		}
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			int bucket = this.groupings.get(g).bucketOfSummary(localMillis);
+			if (bucket >= 0) this.groupAggregates[g][bucket].merge(summary.aggregate());
+		}
+		this.updateBounds(summary.bucketStart());
+	}
+
+	/**
+	 * Adds a daily rollup, if its day is within the measurement period. The
+	 * rollup must cover all of this aggregator's focus intervals and
+	 * groupings. Since
+	 * rollups don't keep the offsets of their entries, the first and last
+	 * timestamps of the rollup are taken to be in UTC.
+	 * @param rollup The rollup to add.
+	 */
+	public void accept(DailyRollup rollup) {
+		this.flush();
+		long localMillis = rollup.date().atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+		if (localMillis < this.startLocalMillis || localMillis >= this.endLocalMillis) return;
+		this.aggregate.merge(rollup.aggregate());
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			this.focusIntervalAggregates[i].merge(rollup.focusIntervals().get(this.focusIntervals.get(i)));
+		}
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			var grouping = this.groupings.get(g);
+			if (grouping.isStoredInRollups()) {
+				var groups = rollup.groups().get(grouping);
+				for (int b = 0; b < this.groupAggregates[g].length; b++) {
+					this.groupAggregates[g][b].merge(groups.get(b));
+				}
+			} else {
+				this.groupAggregates[g][grouping.bucketOf(localMillis, 0)].merge(rollup.aggregate());
+			}
+		}
+		if (rollup.aggregate().getCount() > 0) {
+			this.updateBounds(rollup.aggregate().getFirstTimestamp(), 0);
+			this.updateBounds(rollup.aggregate().getLastTimestamp(), 0);
+		}
+	}
+
+	/**
+	 * Creates a rollup of this aggregator's data, which is only meaningful if
+	 * its measurement period is a single day.
+	 * @param date The day.
+	 * @return The rollup, which is empty if nothing was added.
+	 */
+	DailyRollup toRollup(LocalDate date) {
+		this.flush();
+		Map<FocusInterval, PerformanceAggregate> focusIntervalAggregates = new LinkedHashMap<>();
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			focusIntervalAggregates.put(this.focusIntervals.get(i), this.focusIntervalAggregates[i]);
+		}
+		Map<Grouping, List<PerformanceAggregate>> groups = new EnumMap<>(Grouping.class);
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			if (this.groupings.get(g).isStoredInRollups()) {
+				groups.put(this.groupings.get(g), List.of(this.groupAggregates[g]));
+			}
+		}
+		return new DailyRollup(date, this.aggregate, focusIntervalAggregates, groups);
+	}
+
+	private void updateBounds(OffsetDateTime timestamp) {
+		this.updateBounds(timestamp.toInstant().toEpochMilli(), timestamp.getOffset().getTotalSeconds());
+	}
+
+	private void updateBounds(long millis, int offsetSeconds) {
+		if (millis < this.firstMillis) {
+			this.firstMillis = millis;
+			this.firstOffsetSeconds = offsetSeconds;
+		}
+		if (millis > this.lastMillis) {
+			this.lastMillis = millis;
+			this.lastOffsetSeconds = offsetSeconds;
+		}
+	}
+
+	/**
+	 * @param timestamp A timestamp.
+	 * @return The local date and time of the timestamp, in its own offset, as
+	 * milliseconds since 1970-01-01T00:00.
+	 */
+	private static long toLocalMillis(OffsetDateTime timestamp) {
+		return (timestamp.toEpochSecond() + timestamp.getOffset().getTotalSeconds()) * 1000 + timestamp.getNano() / 1_000_000;
+	}
+
+	/**
+	 * @return The performance data for the whole measurement period.
+	 */
+	public ReportData.PerformanceData getPerformanceData() {
+		this.flush();
+		return this.aggregate.toPerformanceData();
+	}
+
+	/**
+	 * @return The performance data for each focus interval.
+	 */
+	public Map<FocusInterval, ReportData.PerformanceData> getFocusIntervalPerformanceData() {
+		this.flush();
+		Map<FocusInterval, ReportData.PerformanceData> data = new LinkedHashMap<>();
+		for (int i = 0; i < this.focusIntervalAggregates.length; i++) {
+			data.put(this.focusIntervals.get(i), this.focusIntervalAggregates[i].toPerformanceData());
+		}
+		return data;
+	}
+
+	/**
+	 * @return The performance data for each non-empty group of each grouping.
+	 */
+	public Map<Grouping, Map<String, ReportData.PerformanceData>> getGroupedPerformanceData() {
+		this.flush();
+		Map<Grouping, Map<String, ReportData.PerformanceData>> data = new EnumMap<>(Grouping.class);
+		for (int g = 0; g < this.groupAggregates.length; g++) {
+			var grouping = this.groupings.get(g);
+			Map<String, ReportData.PerformanceData> groups = new LinkedHashMap<>();
+			for (int b = 0; b < this.groupAggregates[g].length; b++) {
+				if (this.groupAggregates[g][b].getCount() == 0) continue;
+				groups.put(grouping.bucketName(b), this.groupAggregates[g][b].toPerformanceData());
+			}
+			data.put(grouping, groups);
+		}
+		return data;
+	}
+
+	/**
+	 * @return The entries in the measurement period, or null if entries are
+	 * not kept.
+	 */
+	public EntryColumns getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * @return The earliest timestamp in the measurement period, or null if
+	 * nothing was added.
+	 */
+	public OffsetDateTime getFirstTimestamp() {
+		this.flush();
+		if (this.firstMillis > this.lastMillis) return null;
+		return Instant.ofEpochMilli(this.firstMillis).atOffset(ZoneOffset.ofTotalSeconds(this.firstOffsetSeconds));
+	}
+
+	/**
+	 * @return The latest timestamp in the measurement period, or null if
+	 * nothing was added.
+	 */
+	public OffsetDateTime getLastTimestamp() {
+		this.flush();
+		if (this.firstMillis > this.lastMillis) return null;
+		return Instant.ofEpochMilli(this.lastMillis).atOffset(ZoneOffset.ofTotalSeconds(this.lastOffsetSeconds));
+	}
+}
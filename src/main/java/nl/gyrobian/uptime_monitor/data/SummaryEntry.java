@@ -0,0 +1,50 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.stream.Stream;
+
+/**
+ * Represents the aggregated measurements for a site during a single bucket of
+ * time, like a minute or an hour, which replace the bucket's entries once old
+ * data is compacted.
+ * @param bucketStart The start of the bucket, in the offset of its entries.
+ * @param aggregate The aggregate of the entries in the bucket.
+ */
+public record SummaryEntry(OffsetDateTime bucketStart, PerformanceAggregate aggregate) implements Comparable<SummaryEntry> {
+	/**
+	 * The headers of the columns in a summary file.
+	 */
+	public static final String[] CSV_HEADERS = Stream.concat(
+			Stream.of("Bucket"),
+			Stream.of(PerformanceAggregate.CSV_HEADERS)
+	).toArray(String[]::new);
+
+	public static SummaryEntry fromCsvRecord(CSVRecord record) throws IOException {
+		try {
+			return new SummaryEntry(OffsetDateTime.parse(record.get(0)), PerformanceAggregate.fromCsvRecord(record, 1));
+		} catch (DateTimeParseException e) {
+			throw new IOException("Could not parse \"" + record.get(0) + "\" as an OffsetDateTime.", e);
+		}
+	}
+
+	/**
+	 * @return The values of this entry, in the order of {@link #CSV_HEADERS}.
+	 */
+	public Object[] toCsvValues() {
+		Object[] aggregateValues = aggregate.toCsvValues();
+		Object[] values = new Object[1 + aggregateValues.length];
+		values[0] = bucketStart.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+		System.arraycopy(aggregateValues, 0, values, 1, aggregateValues.length);
+		return values;
+	}
+
+	@Override
+	public int compareTo(SummaryEntry o) {
+		return this.bucketStart.compareTo(o.bucketStart);
+	}
+}
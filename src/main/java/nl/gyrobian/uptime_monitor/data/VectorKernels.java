@@ -0,0 +1,88 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Aggregation kernels that use the incubating Vector API, which compiles to
+ * SIMD instructions where the CPU supports them. This class may only be
+ * loaded if the vector module is available. Values that don't fill a whole
+ * vector are handled by a plain loop.
+ */
+final class VectorKernels implements AggregationKernels {
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	@Override
+	public long sumNonNegative(int[] values, int length) {
+		// Lanes are widened to longs, so that long series can't overflow.
+		var sum = LongVector.zero(LONGS);
+		int i = 0;
+		for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+			var v = IntVector.fromArray(INTS, values, i).lanewise(VectorOperators.MAX, 0);
+			sum = sum.add(v.convertShape(VectorOperators.I2L, LONGS, 0))
+					.add(v.convertShape(VectorOperators.I2L, LONGS, 1));
+		}
+		long result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			if (values[i] >= 0) result += values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public int countAtLeast(int[] values, int length, int threshold) {
+		int count = 0;
+		int i = 0;
+		for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+			count += IntVector.fromArray(INTS, values, i).compare(VectorOperators.GE, threshold).trueCount();
+		}
+		for (; i < length; i++) {
+			if (values[i] >= threshold) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public long sumNonNegative(long[] values, int length) {
+		var sum = LongVector.zero(LONGS);
+		int i = 0;
+		for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+			sum = sum.add(LongVector.fromArray(LONGS, values, i).lanewise(VectorOperators.MAX, 0L));
+		}
+		long result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			if (values[i] >= 0) result += values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public int countNonNegative(long[] values, int length) {
+		int count = 0;
+		int i = 0;
+		for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+			count += LongVector.fromArray(LONGS, values, i).compare(VectorOperators.GE, 0L).trueCount();
+		}
+		for (; i < length; i++) {
+			if (values[i] >= 0) count++;
+		}
+		return count;
+	}
+
+	@Override
+	public int countInRange(long[] values, int length, long min, long max) {
+		int count = 0;
+		int i = 0;
+		for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+			var v = LongVector.fromArray(LONGS, values, i);
+			count += v.compare(VectorOperators.GE, min).and(v.compare(VectorOperators.LE, max)).trueCount();
+		}
+		for (; i < length; i++) {
+			if (values[i] >= min && values[i] <= max) count++;
+		}
+		return count;
+	}
+}
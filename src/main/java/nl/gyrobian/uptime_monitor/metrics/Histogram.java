@@ -0,0 +1,57 @@
+package nl.gyrobian.uptime_monitor.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of observed values, with fixed bucket boundaries, in the style
+ * of a Prometheus histogram. Each bucket is counted by its own
+ * {@link LongAdder}, so observations from many threads don't contend with
+ * each other.
+ */
+public class Histogram {
+	private final double[] upperBounds;
+	private final LongAdder[] buckets;
+	private final DoubleAdder sum = new DoubleAdder();
+
+	/**
+	 * Constructs an empty histogram.
+	 * @param upperBounds The inclusive upper bound of each bucket, in
+	 *                    ascending order. A last bucket without an upper
+	 *                    bound is added for all larger values.
+	 */
+	public Histogram(double... upperBounds) {
+		this.upperBounds = upperBounds.clone();
+		this.buckets = new LongAdder[upperBounds.length + 1];
+		for (int i = 0; i < this.buckets.length; i++) this.buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Observes a value.
+	 * @param value The value.
+	 */
+	public void observe(double value) {
+		int i = 0;
+		while (i < this.upperBounds.length && value > this.upperBounds[i]) i++;
+		this.buckets[i].increment();
+		this.sum.add(value);
+	}
+
+	double[] getUpperBounds() {
+		return this.upperBounds;
+	}
+
+	/**
+	 * @return The number of observations in each bucket, where the last
+	 * bucket has no upper bound. The counts are not cumulative.
+	 */
+	long[] getBucketCounts() {
+		long[] counts = new long[this.buckets.length];
+		for (int i = 0; i < counts.length; i++) counts[i] = this.buckets[i].sum();
+		return counts;
+	}
+
+	double getSum() {
+		return this.sum.sum();
+	}
+}
@@ -0,0 +1,147 @@
+package nl.gyrobian.uptime_monitor.metrics;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of the running monitor, which are kept for the whole process,
+ * and can be written in the Prometheus text exposition format. Components
+ * look up their metrics once, and update them without any locks from then on.
+ */
+public final class Metrics {
+	private static final String PREFIX = "uptime_monitor_";
+	/**
+	 * The upper bounds of the report generation histogram's buckets, in
+	 * seconds.
+	 */
+	private static final double[] REPORT_DURATION_BUCKETS = {0.1, 0.5, 1, 5, 10, 30, 60, 300, 600};
+
+	private static final Map<String, SiteMetrics> sites = new ConcurrentHashMap<>();
+	private static final LongAdder reportsGenerated = new LongAdder();
+	private static final LongAdder reportFailures = new LongAdder();
+	private static final Histogram reportDurations = new Histogram(REPORT_DURATION_BUCKETS);
+	private static volatile LongSupplier queueDepth;
+	private static volatile long queueCapacity;
+
+	private Metrics() {}
+
+	/**
+	 * Gets the metrics of a site, creating them if they don't exist yet.
+	 * @param siteName The name of the site.
+	 * @return The site's metrics.
+	 */
+	public static SiteMetrics site(String siteName) {
+		return sites.computeIfAbsent(siteName, s -> new SiteMetrics());
+	}
+
+	/**
+	 * Registers the recorder's queue, so that its depth can be reported.
+	 * @param depth A supplier of the number of results in the queue.
+	 * @param capacity The capacity of the queue.
+	 */
+	public static void registerQueue(LongSupplier depth, long capacity) {
+		queueCapacity = capacity;
+		queueDepth = depth;
+	}
+
+	/**
+	 * Counts a generation of one or more reports at once.
+	 * @param reportCount The number of reports that were generated.
+	 * @param durationNanos How long it took to generate them.
+	 * @param successful Whether the reports were generated successfully.
+	 */
+	public static void reportsGenerated(int reportCount, long durationNanos, boolean successful) {
+		if (successful) {
+			reportsGenerated.add(reportCount);
+		} else {
+			reportFailures.add(reportCount);
+		}
+		reportDurations.observe(durationNanos / 1e9);
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format.
+	 * @param out The writer to write to.
+	 */
+	public static void write(PrintWriter out) {
+		Map<String, SiteMetrics> sorted = new TreeMap<>(sites);
+		writeSiteCounter(out, "probes_sent_total", "Probes that were sent.", sorted, m -> m.probesSent);
+		writeSiteCounter(out, "probes_skipped_total", "Probes that were skipped because the previous probe was still in progress.", sorted, m -> m.probesSkipped);
+		writeHeader(out, "responses_total", "Responses that were received, by status class.", "counter");
+		for (var entry : sorted.entrySet()) {
+			for (int i = 0; i < 5; i++) {
+				writeSample(out, "responses_total", labels(entry.getKey()) + ",class=\"" + (i + 1) + "xx\"", entry.getValue().responsesByClass[i].sum());
+			}
+		}
+		writeHeader(out, "probe_failures_total", "Probes that failed without a response, by reason.", "counter");
+		for (var entry : sorted.entrySet()) {
+			for (var failure : SiteMetrics.Failure.values()) {
+				writeSample(out, "probe_failures_total", labels(entry.getKey()) + ",reason=\"" + failure.name().toLowerCase(Locale.ROOT) + "\"", entry.getValue().failures[failure.ordinal()].sum());
+			}
+		}
+		writeSiteCounter(out, "results_dropped_total", "Results that were dropped because the recorder was not keeping up.", sorted, m -> m.resultsDropped);
+		writeSiteCounter(out, "records_written_total", "Records that were written to record files.", sorted, m -> m.recordsWritten);
+		writeSiteCounter(out, "bytes_written_total", "Bytes that were written to record files.", sorted, m -> m.bytesWritten);
+		writeSiteCounter(out, "file_rollovers_total", "Rollovers of record files to a new file.", sorted, m -> m.rollovers);
+		writeSiteCounter(out, "file_syncs_total", "Syncs of record files to the storage device.", sorted, m -> m.syncs);
+		writeHeader(out, "response_time_seconds", "Response times of probes.", "histogram");
+		for (var entry : sorted.entrySet()) {
+			writeHistogram(out, "response_time_seconds", labels(entry.getKey()), entry.getValue().responseTimes);
+		}
+
+		var depth = queueDepth;
+		if (depth != null) {
+			writeHeader(out, "recorder_queue_depth", "Results waiting to be written by the recorder.", "gauge");
+			writeSample(out, "recorder_queue_depth", null, depth.getAsLong());
+			writeHeader(out, "recorder_queue_capacity", "The maximum number of results that can wait to be written.", "gauge");
+			writeSample(out, "recorder_queue_capacity", null, queueCapacity);
+		}
+		writeHeader(out, "reports_generated_total", "Reports that were generated.", "counter");
+		writeSample(out, "reports_generated_total", null, reportsGenerated.sum());
+		writeHeader(out, "report_failures_total", "Reports that could not be generated.", "counter");
+		writeSample(out, "report_failures_total", null, reportFailures.sum());
+		writeHeader(out, "report_generation_duration_seconds", "Durations of generating reports, which are generated together when they're due at the same time.", "histogram");
+		writeHistogram(out, "report_generation_duration_seconds", null, reportDurations);
+		out.flush();
+	}
+
+	private static void writeSiteCounter(PrintWriter out, String name, String help, Map<String, SiteMetrics> sites, Function<SiteMetrics, LongAdder> counter) {
+		writeHeader(out, name, help, "counter");
+		for (var entry : sites.entrySet()) {
+			writeSample(out, name, labels(entry.getKey()), counter.apply(entry.getValue()).sum());
+		}
+	}
+
+	private static void writeHistogram(PrintWriter out, String name, String labels, Histogram histogram) {
+		String prefix = labels == null ? "" : labels + ",";
+		double[] upperBounds = histogram.getUpperBounds();
+		long[] counts = histogram.getBucketCounts();
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			String bound = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+			writeSample(out, name + "_bucket", prefix + "le=\"" + bound + "\"", cumulative);
+		}
+		out.print(PREFIX + name + "_sum" + (labels == null ? "" : "{" + labels + "}") + " " + histogram.getSum() + "\n");
+		writeSample(out, name + "_count", labels, cumulative);
+	}
+
+	private static void writeHeader(PrintWriter out, String name, String help, String type) {
+		out.print("# HELP " + PREFIX + name + " " + help + "\n");
+		out.print("# TYPE " + PREFIX + name + " " + type + "\n");
+	}
+
+	private static void writeSample(PrintWriter out, String name, String labels, long value) {
+		out.print(PREFIX + name + (labels == null ? "" : "{" + labels + "}") + " " + value + "\n");
+	}
+
+	private static String labels(String siteName) {
+		return "site=\"" + siteName.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+}
@@ -0,0 +1,70 @@
+package nl.gyrobian.uptime_monitor.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.gyrobian.uptime_monitor.config.MetricsConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small HTTP server that serves the {@link Metrics} of the running monitor
+ * at {@value #PATH}, in the Prometheus text exposition format, so that they
+ * can be scraped by Prometheus.
+ */
+public class MetricsServer implements Closeable {
+	/**
+	 * The path at which metrics are served.
+	 */
+	public static final String PATH = "/metrics";
+
+	private final HttpServer server;
+
+	/**
+	 * Starts serving metrics.
+	 * @param config The metrics configuration.
+	 * @throws IOException If the server could not be bound to its address.
+	 */
+	public MetricsServer(MetricsConfig config) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 0);
+		this.server.createContext(PATH, this::handle);
+		this.server.start();
+	}
+
+	/**
+	 * @return The address that the server is bound to.
+	 */
+	public InetSocketAddress getAddress() {
+		return this.server.getAddress();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			var buffer = new ByteArrayOutputStream();
+			var writer = new PrintWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+			Metrics.write(writer);
+			byte[] body = buffer.toByteArray();
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	/**
+	 * Stops the server, without waiting for requests that are still being
+	 * handled.
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+	}
+}
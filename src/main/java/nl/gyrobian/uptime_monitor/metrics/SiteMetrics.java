@@ -0,0 +1,109 @@
+package nl.gyrobian.uptime_monitor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a single monitored site, which are updated by its site
+ * monitor and its record writer. All counters are {@link LongAdder}s, so
+ * updating them never blocks, and rarely contends.
+ */
+public class SiteMetrics {
+	/**
+	 * The reasons for which a probe can fail without a response.
+	 */
+	public enum Failure {CONNECT_TIMEOUT, TIMEOUT, CONNECT, REJECTED, OTHER}
+
+	/**
+	 * The upper bounds of the response time histogram's buckets, in seconds.
+	 */
+	private static final double[] RESPONSE_TIME_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+	final LongAdder probesSent = new LongAdder();
+	final LongAdder probesSkipped = new LongAdder();
+	final LongAdder[] responsesByClass = newAdders(5);
+	final LongAdder[] failures = newAdders(Failure.values().length);
+	final LongAdder resultsDropped = new LongAdder();
+	final LongAdder recordsWritten = new LongAdder();
+	final LongAdder bytesWritten = new LongAdder();
+	final LongAdder rollovers = new LongAdder();
+	final LongAdder syncs = new LongAdder();
+	final Histogram responseTimes = new Histogram(RESPONSE_TIME_BUCKETS);
+
+	SiteMetrics() {}
+
+	/**
+	 * Counts a probe that was sent.
+	 */
+	public void probeSent() {
+		this.probesSent.increment();
+	}
+
+	/**
+	 * Counts a probe that was skipped, because the previous probe of the site
+	 * was still in progress.
+	 */
+	public void probeSkipped() {
+		this.probesSkipped.increment();
+	}
+
+	/**
+	 * Counts a response to a probe.
+	 * @param statusCode The response's status code.
+	 * @param responseTimeMillis The response time, in milliseconds.
+	 */
+	public void response(int statusCode, int responseTimeMillis) {
+		int statusClass = statusCode / 100;
+		if (statusClass >= 1 && statusClass <= 5) this.responsesByClass[statusClass - 1].increment();
+		this.responseTimes.observe(responseTimeMillis / 1000.0);
+	}
+
+	/**
+	 * Counts a probe that failed without a response.
+	 * @param failure The reason for the failure.
+	 */
+	public void failure(Failure failure) {
+		this.failures[failure.ordinal()].increment();
+	}
+
+	/**
+	 * Counts a result that was dropped because the recorder wasn't keeping up.
+	 */
+	public void resultDropped() {
+		this.resultsDropped.increment();
+	}
+
+	/**
+	 * Counts a record that was written to the site's record file.
+	 */
+	public void recordWritten() {
+		this.recordsWritten.increment();
+	}
+
+	/**
+	 * Counts bytes that were written to the site's record files.
+	 * @param bytes The number of bytes.
+	 */
+	public void bytesWritten(long bytes) {
+		this.bytesWritten.add(bytes);
+	}
+
+	/**
+	 * Counts a rollover of the site's record file to a new file.
+	 */
+	public void rollover() {
+		this.rollovers.increment();
+	}
+
+	/**
+	 * Counts a sync of the site's record file to the storage device.
+	 */
+	public void sync() {
+		this.syncs.increment();
+	}
+
+	private static LongAdder[] newAdders(int count) {
+		var adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) adders[i] = new LongAdder();
+		return adders;
+	}
+}
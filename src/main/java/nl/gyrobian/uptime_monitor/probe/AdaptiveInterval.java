@@ -0,0 +1,87 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import nl.gyrobian.uptime_monitor.config.AdaptiveConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the current probe interval for a site that is probed
+ * adaptively. After a failure or a latency spike, the interval drops to the
+ * configured minimum so the start and end of an outage are pinned down
+ * precisely. While the site is stable, the interval grows by the backoff
+ * factor after every probe, up to the configured maximum.
+ * <p>
+ *     Results for a site are reported one at a time, since the scheduler
+ *     never runs two probes of the same site at once, but the interval is
+ *     read from the scheduler's thread, so it is kept in a volatile field.
+ * </p>
+ */
+public class AdaptiveInterval {
+	/**
+	 * The weight of the newest sample in the moving average of response times.
+	 */
+	private static final double AVERAGE_WEIGHT = 0.2;
+	/**
+	 * The number of samples needed before latency spikes are detected.
+	 */
+	private static final int WARMUP_SAMPLES = 5;
+
+	private final long minMillis;
+	private final long maxMillis;
+	private final double backoff;
+	private final double spikeFactor;
+
+	private volatile long currentMillis;
+	private double averageResponseTime = 0;
+	private int samples = 0;
+
+	/**
+	 * Constructs the adaptive interval.
+	 * @param config The adaptive probing configuration.
+	 * @param initialSeconds The interval to start with, in seconds.
+	 */
+	public AdaptiveInterval(AdaptiveConfig config, int initialSeconds) {
+		if (config.getMinInterval() < 1 || config.getMaxInterval() < config.getMinInterval()) {
+			throw new IllegalArgumentException("Invalid adaptive interval range: " + config.getMinInterval() + " - " + config.getMaxInterval());
+		}
+		this.minMillis = TimeUnit.SECONDS.toMillis(config.getMinInterval());
+		this.maxMillis = TimeUnit.SECONDS.toMillis(config.getMaxInterval());
+		this.backoff = Math.max(1.0, config.getBackoff());
+		this.spikeFactor = config.getLatencySpikeFactor();
+		this.currentMillis = Math.max(this.minMillis, Math.min(this.maxMillis, TimeUnit.SECONDS.toMillis(initialSeconds)));
+	}
+
+	/**
+	 * @return The interval until the next probe, in milliseconds.
+	 */
+	public long getCurrentMillis() {
+		return this.currentMillis;
+	}
+
+	/**
+	 * Updates the interval with the result of a probe that received a
+	 * response.
+	 * @param ok Whether the response indicates that the site is ok.
+	 * @param responseTime The response time of the probe.
+	 */
+	public void onResponse(boolean ok, double responseTime) {
+		boolean spike = this.samples >= WARMUP_SAMPLES && responseTime > this.averageResponseTime * this.spikeFactor;
+		this.averageResponseTime = this.samples == 0
+				? responseTime
+				: AVERAGE_WEIGHT * responseTime + (1 - AVERAGE_WEIGHT) * this.averageResponseTime;
+		this.samples++;
+		if (!ok || spike) {
+			this.currentMillis = this.minMillis;
+		} else {
+			this.currentMillis = Math.min(this.maxMillis, Math.round(this.currentMillis * this.backoff));
+		}
+	}
+
+	/**
+	 * Updates the interval after a probe that failed without a response, like
+	 * one that timed out.
+	 */
+	public void onFailure() {
+		this.currentMillis = this.minMillis;
+	}
+}
@@ -0,0 +1,138 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.gyrobian.uptime_monitor.config.CaptureConfig;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body handler that captures a bounded prefix of response bodies with one of
+ * the configured media types, and discards all other bodies as they arrive,
+ * without buffering them. Optionally, only the value at a JSON pointer is
+ * kept from the captured body.
+ */
+public class BodyCapture implements HttpResponse.BodyHandler<String> {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final List<MediaType> mediaTypes;
+	private final int maxBytes;
+	private final JsonPointer jsonPointer;
+
+	public BodyCapture(CaptureConfig config) {
+		this.mediaTypes = new ArrayList<>();
+		if (config.getMediaTypes() != null) {
+			for (var text : config.getMediaTypes()) {
+				var type = MediaType.parse(text);
+				if (type == null) throw new IllegalArgumentException("Invalid media type in capture configuration: " + text);
+				this.mediaTypes.add(type);
+			}
+		}
+		this.maxBytes = Math.max(0, config.getMaxBytes());
+		this.jsonPointer = config.getJsonPointer() == null || config.getJsonPointer().isBlank() ? null : JsonPointer.compile(config.getJsonPointer());
+	}
+
+	@Override
+	public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo info) {
+		var contentType = info.headers().firstValue("Content-Type").map(MediaType::parse).orElse(null);
+		if (contentType == null || this.maxBytes == 0 || this.mediaTypes.stream().noneMatch(type -> type.matches(contentType))) {
+			return HttpResponse.BodySubscribers.replacing(null);
+		}
+		Charset charset = charsetOf(contentType.parameters().get("charset"));
+		return HttpResponse.BodySubscribers.mapping(new CappedSubscriber(this.maxBytes), bytes -> this.extract(bytes, charset));
+	}
+
+	/**
+	 * Finds the charset of a body.
+	 * @param name The name of the charset, as given in the Content-Type
+	 *             header, or null.
+	 * @return The charset, or UTF-8 if no name was given, or the name is
+	 * malformed or unsupported.
+	 */
+	private static Charset charsetOf(String name) {
+		if (name == null) return StandardCharsets.UTF_8;
+		try {
+			return Charset.forName(name);
+		} catch (IllegalArgumentException e) {
+			// Malformed and unsupported names both end up here.
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	/**
+	 * Converts the captured bytes to the details to record.
+	 * @param bytes The captured bytes.
+	 * @param charset The charset of the body.
+	 * @return The details to record.
+	 */
+	private String extract(byte[] bytes, Charset charset) {
+		if (this.jsonPointer == null) return new String(bytes, charset);
+		try {
+			var node = MAPPER.readTree(new String(bytes, charset)).at(this.jsonPointer);
+			if (node.isMissingNode()) return null;
+			return node.isValueNode() ? node.asText() : node.toString();
+		} catch (IOException e) {
+			// The body is not valid JSON, or it was truncated.
+			return null;
+		}
+	}
+
+	/**
+	 * A body subscriber which copies incoming bytes until a limit is reached,
+	 * and then keeps consuming the rest of the body without storing it, so the
+	 * connection can be reused.
+	 */
+	private static class CappedSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+		private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+		private final int maxBytes;
+		private byte[] buffer = new byte[256];
+		private int size = 0;
+
+		private CappedSubscriber(int maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public CompletionStage<byte[]> getBody() {
+			return this.result;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> items) {
+			for (var item : items) {
+				int n = Math.min(item.remaining(), this.maxBytes - this.size);
+				if (n <= 0) continue;
+				if (this.size + n > this.buffer.length) {
+					this.buffer = Arrays.copyOf(this.buffer, Math.min(this.maxBytes, Math.max(this.buffer.length * 2, this.size + n)));
+				}
+				item.get(this.buffer, this.size, n);
+				this.size += n;
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			this.result.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			this.result.complete(Arrays.copyOf(this.buffer, this.size));
+		}
+	}
+}
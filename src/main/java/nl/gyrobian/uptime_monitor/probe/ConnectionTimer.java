@@ -0,0 +1,108 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import nl.gyrobian.uptime_monitor.data.ProbeTimings;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the network phases of a probe, which the shared HTTP client does
+ * not expose: resolving the site's host name, opening a TCP connection to it,
+ * and for HTTPS sites, the TLS handshake. They're measured on a separate
+ * connection that is closed right after the handshake. This blocks, so it's
+ * done on threads of its own, and never on the scheduler's dispatch thread or
+ * the threads that process responses.
+ * <p>
+ *     Host names are resolved through the JVM's address cache, just like the
+ *     HTTP client does, so the DNS phase is only slow when the cached address
+ *     has expired.
+ * </p>
+ */
+public class ConnectionTimer {
+	private final ExecutorService executor;
+	private final int connectTimeoutMillis;
+
+	/**
+	 * Constructs the connection timer.
+	 * @param connectTimeoutSeconds The number of seconds to wait for a
+	 *                              connection to be established, and for the
+	 *                              TLS handshake to complete.
+	 */
+	public ConnectionTimer(int connectTimeoutSeconds) {
+		this.connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(connectTimeoutSeconds);
+		this.executor = Executors.newCachedThreadPool(r -> {
+			var thread = new Thread(r, "probe-connection-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Measures the network phases of a probe to the given URI, asynchronously.
+	 * @param uri The URI that the probe is sent to.
+	 * @return A future that completes with the timings, of which only the DNS,
+	 * connect and TLS phases are set. Phases that could not be measured, like
+	 * when the connection was refused, are -1. The future never completes
+	 * exceptionally, since it's up to the probe's request to tell whether the
+	 * site could be reached.
+	 */
+	public CompletableFuture<ProbeTimings> measure(URI uri) {
+		try {
+			return CompletableFuture.supplyAsync(() -> this.measureNow(uri), this.executor)
+					.exceptionally(throwable -> ProbeTimings.UNKNOWN);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.completedFuture(ProbeTimings.UNKNOWN);
+		}
+	}
+
+	private ProbeTimings measureNow(URI uri) {
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		int port = uri.getPort() >= 0 ? uri.getPort() : (secure ? 443 : 80);
+		long dns = -1;
+		long connect = -1;
+		long tls = -1;
+		try {
+			long start = System.nanoTime();
+			InetAddress address = InetAddress.getByName(uri.getHost());
+			long resolved = System.nanoTime();
+			dns = micros(resolved - start);
+			try (var socket = new Socket()) {
+				socket.connect(new InetSocketAddress(address, port), this.connectTimeoutMillis);
+				long connected = System.nanoTime();
+				connect = micros(connected - resolved);
+				if (secure) {
+					socket.setSoTimeout(this.connectTimeoutMillis);
+					try (var sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, uri.getHost(), port, true)) {
+						sslSocket.startHandshake();
+						tls = micros(System.nanoTime() - connected);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The phases up to the one that failed are kept.
+		}
+		return new ProbeTimings(dns, connect, tls, -1, -1);
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	/**
+	 * Stops the threads that measure connections. Measurements that are in
+	 * progress are left to complete.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+}
@@ -0,0 +1,54 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A parsed media type, as found in a Content-Type header.
+ *
+ * @param type The top-level type, in lower case.
+ * @param subtype The subtype, in lower case.
+ * @param parameters The parameters, with lower case names.
+ */
+public record MediaType(String type, String subtype, Map<String, String> parameters) {
+	/**
+	 * Parses a media type, like "application/json; charset=utf-8".
+	 * @param text The text to parse.
+	 * @return The media type, or null if the text is not a valid media type.
+	 */
+	public static MediaType parse(String text) {
+		String[] parts = text.split(";");
+		String[] types = parts[0].trim().split("/");
+		if (types.length != 2 || types[0].isBlank() || types[1].isBlank()) return null;
+		Map<String, String> parameters = new HashMap<>();
+		for (int i = 1; i < parts.length; i++) {
+			int eq = parts[i].indexOf('=');
+			if (eq < 0) continue;
+			String name = parts[i].substring(0, eq).trim().toLowerCase(Locale.ROOT);
+			String value = parts[i].substring(eq + 1).trim();
+			if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+				value = value.substring(1, value.length() - 1);
+			}
+			parameters.put(name, value);
+		}
+		return new MediaType(types[0].trim().toLowerCase(Locale.ROOT), types[1].trim().toLowerCase(Locale.ROOT), parameters);
+	}
+
+	/**
+	 * Determines if another media type matches this one, when this one is
+	 * used as a pattern. The types must be equal, and every parameter of this
+	 * media type must be present with the same value in the other.
+	 * @param other The media type to check.
+	 * @return True if the other media type matches.
+	 */
+	public boolean matches(MediaType other) {
+		if (!this.type.equals(other.type)) return false;
+		if (!this.subtype.equals("*") && !this.subtype.equals(other.subtype)) return false;
+		for (var entry : this.parameters.entrySet()) {
+			String value = other.parameters.get(entry.getKey());
+			if (value == null || !value.equalsIgnoreCase(entry.getValue())) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,71 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import nl.gyrobian.uptime_monitor.data.ProbeTimings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases of a single probe using the monotonic clock. The phases
+ * are marked from different threads as the request progresses, so each mark
+ * is stored in a volatile field.
+ * <p>
+ *     The shared HTTP client does not expose the DNS, connect and TLS phases,
+ *     so these are measured separately by a {@link ConnectionTimer}. Because
+ *     the client reuses pooled connections, the time to first byte only
+ *     includes connecting and the TLS handshake when the client had to open a
+ *     new connection, like for the first probe of a host.
+ * </p>
+ */
+public class PhaseTimer {
+	private final long startNanos = System.nanoTime();
+	private volatile long sentNanos = -1;
+	private volatile long headersNanos = -1;
+	private volatile long bodyNanos = -1;
+	private volatile ProbeTimings connection = ProbeTimings.UNKNOWN;
+
+	public void requestSent() {
+		this.sentNanos = System.nanoTime();
+	}
+
+	public void headersReceived() {
+		this.headersNanos = System.nanoTime();
+	}
+
+	public void bodyReceived() {
+		this.bodyNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets the network phases of the probe.
+	 * @param connection The timings measured by a {@link ConnectionTimer}.
+	 */
+	public void connectionMeasured(ProbeTimings connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * @return The total time from the start of the probe until the response
+	 * headers were received, in milliseconds.
+	 */
+	public int getResponseTimeMillis() {
+		return (int) TimeUnit.NANOSECONDS.toMillis(this.headersNanos - this.startNanos);
+	}
+
+	/**
+	 * @return The measured phase timings.
+	 */
+	public ProbeTimings getTimings() {
+		var connection = this.connection;
+		return new ProbeTimings(
+				connection.dnsMicros(),
+				connection.connectMicros(),
+				connection.tlsMicros(),
+				this.sentNanos < 0 || this.headersNanos < 0 ? -1 : micros(this.headersNanos - this.sentNanos),
+				this.headersNanos < 0 || this.bodyNanos < 0 ? -1 : micros(this.bodyNanos - this.headersNanos)
+		);
+	}
+
+	private static long micros(long nanos) {
+		return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
@@ -0,0 +1,155 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import nl.gyrobian.uptime_monitor.config.ProbeConfig;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * The probe engine runs all probes asynchronously, typically as a
+ * {@link java.net.http.HttpClient#sendAsync} completion chain on the shared
+ * {@link ProbeTransport}, so that no thread is blocked while waiting for a
+ * site to respond. A global limit is placed on the number of probes that may
+ * be in flight at once; any probes submitted beyond that limit are queued and
+ * started as soon as another probe completes.
+ */
+public class ProbeEngine {
+	private final ProbeTransport transport;
+	private final ExecutorService executor;
+	private final int maxConcurrent;
+	private final Semaphore permits;
+	private final Queue<PendingProbe> pending = new ConcurrentLinkedQueue<>();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Constructs the probe engine.
+	 * @param transport The transport to send requests with.
+	 * @param executor The executor which the transport uses to process
+	 *                 responses. It is shut down together with the engine.
+	 * @param config The probe configuration.
+	 */
+	public ProbeEngine(ProbeTransport transport, ExecutorService executor, ProbeConfig config) {
+		this.transport = transport;
+		this.executor = executor;
+		this.maxConcurrent = Math.max(1, config.getMaxConcurrent());
+		this.permits = new Semaphore(this.maxConcurrent);
+	}
+
+	/**
+	 * Creates the executor that should be given to both the transport and the
+	 * engine.
+	 * @param config The probe configuration.
+	 * @return The executor service.
+	 */
+	public static ExecutorService createExecutor(ProbeConfig config) {
+		int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors();
+		return Executors.newFixedThreadPool(threads, r -> {
+			var thread = new Thread(r, "probe-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public ProbeTransport getTransport() {
+		return this.transport;
+	}
+
+	/**
+	 * Submits a probe to the engine. The given probe function is only invoked
+	 * once a slot is available, so if the maximum number of concurrent probes
+	 * has been reached, the probe is queued until another one completes.
+	 * @param probe A function that starts the probe and returns a future that
+	 *              completes when the probe is done.
+	 * @param <T> The type of the probe's result.
+	 * @return A future that completes with the probe's result.
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> probe) {
+		var future = new CompletableFuture<T>();
+		if (this.shutdown) {
+			future.completeExceptionally(rejection());
+			return future;
+		}
+		this.pending.add(new PendingProbe(future, () -> {
+			CompletableFuture<T> result;
+			try {
+				result = probe.get();
+			} catch (RuntimeException e) {
+				result = CompletableFuture.failedFuture(e);
+			}
+			result.whenComplete((value, throwable) -> {
+				this.permits.release();
+				this.drain();
+				if (throwable != null) {
+					future.completeExceptionally(throwable);
+				} else {
+					future.complete(value);
+				}
+			});
+		}));
+		// The engine may have been shut down while the probe was being queued.
+		if (this.shutdown) {
+			this.rejectPending();
+		} else {
+			this.drain();
+		}
+		return future;
+	}
+
+	/**
+	 * Starts as many pending probes as there are free permits.
+	 */
+	private void drain() {
+		while (!this.shutdown && !this.pending.isEmpty() && this.permits.tryAcquire()) {
+			var probe = this.pending.poll();
+			if (probe == null) {
+				this.permits.release();
+				return;
+			}
+			probe.start().run();
+		}
+	}
+
+	/**
+	 * Completes the futures of all pending probes exceptionally, without
+	 * starting them.
+	 */
+	private void rejectPending() {
+		PendingProbe probe;
+		while ((probe = this.pending.poll()) != null) {
+			probe.future().completeExceptionally(rejection());
+		}
+	}
+
+	private static RejectedExecutionException rejection() {
+		return new RejectedExecutionException("The probe engine has been shut down.");
+	}
+
+	/**
+	 * Shuts down the engine, discarding any queued probes and waiting for any
+	 * probes that are still in flight to complete. The futures of discarded
+	 * probes complete exceptionally with a
+	 * {@link RejectedExecutionException}.
+	 * @param timeout The maximum time to wait for in-flight probes.
+	 * @param unit The unit of the timeout.
+	 * @return True if all in-flight probes completed, or false if the timeout
+	 * elapsed first.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public synchronized boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		if (this.shutdown) return this.executor.isTerminated();
+		this.shutdown = true;
+		this.rejectPending();
+		boolean idle = this.permits.tryAcquire(this.maxConcurrent, timeout, unit);
+		this.executor.shutdown();
+		this.transport.getConnectionTimer().shutdown();
+		return idle && this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * A probe that is waiting for a free slot.
+	 * @param future The future of the probe's result.
+	 * @param start Starts the probe.
+	 */
+	private record PendingProbe(CompletableFuture<?> future, Runnable start) {}
+}
@@ -0,0 +1,270 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A hashed timing wheel which schedules the probes of all sites on a single
+ * thread. The wheel consists of a fixed number of slots, each of which covers
+ * one tick of time. Every tick, the tasks in the current slot whose deadline
+ * has been reached are handed off to an executor.
+ * <p>
+ *     Recurring tasks are given a deterministic phase offset within their
+ *     interval that is derived from a hash of their key (usually the site's
+ *     name), so sites that share an interval are spread out instead of all
+ *     firing at the same moment. An optional jitter can be added to each
+ *     individual run.
+ * </p>
+ */
+public class ProbeScheduler implements Closeable {
+	private final long tickNanos;
+	private final int wheelSize;
+	private final int mask;
+	private final ArrayDeque<Timeout>[] wheel;
+	private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+	private final Executor dispatcher;
+	private final Thread worker;
+	private final long startNanos;
+	private volatile boolean running = true;
+	private long tick = 0;
+
+	/**
+	 * Constructs and starts the scheduler.
+	 * @param tickDuration The duration of one tick, which is the resolution of
+	 *                     the scheduler.
+	 * @param wheelSize The number of slots in the wheel. This is rounded up to
+	 *                  the nearest power of two.
+	 * @param dispatcher The executor that due tasks are run on.
+	 */
+	@SuppressWarnings("unchecked")
+	public ProbeScheduler(Duration tickDuration, int wheelSize, Executor dispatcher) {
+		if (tickDuration.toMillis() < 1) throw new IllegalArgumentException("Tick duration must be at least 1 millisecond.");
+		if (wheelSize < 1 || wheelSize > (1 << 30)) throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+		this.tickNanos = tickDuration.toNanos();
+		int size = 1;
+		while (size < wheelSize) size <<= 1;
+		this.wheelSize = size;
+		this.mask = this.wheelSize - 1;
+		this.wheel = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[this.wheelSize];
+		for (int i = 0; i < this.wheelSize; i++) {
+			this.wheel[i] = new ArrayDeque<>();
+		}
+		this.dispatcher = dispatcher;
+		this.startNanos = System.nanoTime();
+		this.worker = new Thread(this::run, "probe-scheduler");
+		this.worker.start();
+	}
+
+	public Duration getTickDuration() {
+		return Duration.ofNanos(this.tickNanos);
+	}
+
+	public int getWheelSize() {
+		return this.wheelSize;
+	}
+
+	/**
+	 * Schedules a task to run repeatedly. The first run happens at a phase
+	 * offset within the first interval that is derived from the given key. The
+	 * next run is scheduled once the previous run's result completes, at one
+	 * interval after the previous run was due, so the phase is kept stable and
+	 * runs of the same task never overlap. If a run takes longer than its
+	 * interval, the next run is started right away.
+	 * @param key The key that determines the task's phase, like a site name.
+	 * @param task The task to run, which returns a stage that completes when
+	 *             the run is done.
+	 * @param intervalMillis Supplies the interval, in milliseconds. This is
+	 *                       consulted before every run, so it may change.
+	 * @param jitterMillis The maximum random offset, in milliseconds, which is
+	 *                     applied in either direction to each run.
+	 */
+	public void scheduleRecurring(String key, Supplier<? extends CompletionStage<?>> task, LongSupplier intervalMillis, long jitterMillis) {
+		long interval = Math.max(1, intervalMillis.getAsLong());
+		long phase = Math.floorMod(hash(key), interval);
+		long firstDue = System.nanoTime() - this.startNanos + TimeUnit.MILLISECONDS.toNanos(phase);
+		new RecurringTask(task, intervalMillis, TimeUnit.MILLISECONDS.toNanos(jitterMillis)).scheduleAt(firstDue);
+	}
+
+	/**
+	 * Computes a well-mixed, deterministic hash for a key.
+	 * @param key The key to hash.
+	 * @return The hash.
+	 */
+	private static long hash(String key) {
+		long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * The main loop of the worker thread, which waits for each tick and then
+	 * expires the tasks in its slot.
+	 */
+	private void run() {
+		while (this.running) {
+			long deadline = this.tickNanos * (this.tick + 1);
+			long sleepNanos = deadline - (System.nanoTime() - this.startNanos);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (!this.running) break;
+				}
+				continue;
+			}
+			this.transferIncoming();
+			this.expire(this.wheel[(int) (this.tick & this.mask)], deadline);
+			this.tick++;
+		}
+	}
+
+	/**
+	 * Moves newly scheduled tasks into the slot of the wheel that corresponds
+	 * to their deadline.
+	 */
+	private void transferIncoming() {
+		Timeout timeout;
+		while ((timeout = this.incoming.poll()) != null) {
+			long dueTick = timeout.deadline / this.tickNanos;
+			timeout.remainingRounds = Math.max(0, (dueTick - this.tick) / this.wheelSize);
+			long slotTick = Math.max(dueTick, this.tick);
+			this.wheel[(int) (slotTick & this.mask)].add(timeout);
+		}
+	}
+
+	/**
+	 * Dispatches all tasks in a slot whose deadline has been reached, and
+	 * decrements the remaining rounds of the others.
+	 * @param slot The slot to expire.
+	 * @param deadline The deadline of the current tick.
+	 */
+	private void expire(ArrayDeque<Timeout> slot, long deadline) {
+		int size = slot.size();
+		for (int i = 0; i < size; i++) {
+			var timeout = slot.poll();
+			if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+				try {
+					this.dispatcher.execute(timeout.task);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			} else {
+				if (timeout.remainingRounds > 0) timeout.remainingRounds--;
+				slot.add(timeout);
+			}
+		}
+	}
+
+	/**
+	 * @return True if the scheduler has been closed and its worker thread has
+	 * stopped.
+	 */
+	public boolean isTerminated() {
+		return !this.running && !this.worker.isAlive();
+	}
+
+	/**
+	 * Stops the scheduler. Tasks that have already been dispatched are not
+	 * affected, but no further tasks will be run.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+		this.worker.interrupt();
+	}
+
+	/**
+	 * Waits for the worker thread to stop after the scheduler was closed.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return True if the worker thread has stopped.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		this.worker.join(Math.max(1, unit.toMillis(timeout)));
+		return !this.worker.isAlive();
+	}
+
+	/**
+	 * A task waiting in the wheel.
+	 */
+	private static final class Timeout {
+		private final long deadline;
+		private final Runnable task;
+		private long remainingRounds;
+
+		private Timeout(long deadline, Runnable task) {
+			this.deadline = deadline;
+			this.task = task;
+		}
+	}
+
+	/**
+	 * A task which reschedules itself each time a run completes.
+	 */
+	private final class RecurringTask {
+		private final Supplier<? extends CompletionStage<?>> task;
+		private final LongSupplier intervalMillis;
+		private final long jitterNanos;
+
+		private RecurringTask(Supplier<? extends CompletionStage<?>> task, LongSupplier intervalMillis, long jitterNanos) {
+			this.task = task;
+			this.intervalMillis = intervalMillis;
+			this.jitterNanos = jitterNanos;
+		}
+
+		/**
+		 * Schedules the next run of this task.
+		 * @param due The time at which the run is due, without jitter, in
+		 *            nanoseconds since the scheduler started.
+		 */
+		private void scheduleAt(long due) {
+			if (!running) return;
+			long deadline = due;
+			if (this.jitterNanos > 0) {
+				deadline += ThreadLocalRandom.current().nextLong(-this.jitterNanos, this.jitterNanos + 1);
+			}
+			incoming.add(new Timeout(Math.max(0, deadline), () -> this.fire(due)));
+		}
+
+		/**
+		 * Runs the task, and schedules the next run once it completes.
+		 * @param due The time at which this run was due.
+		 */
+		private void fire(long due) {
+			CompletionStage<?> stage;
+			try {
+				stage = this.task.get();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				stage = null;
+			}
+			if (stage == null) {
+				this.scheduleNext(due);
+			} else {
+				stage.whenComplete((result, throwable) -> this.scheduleNext(due));
+			}
+		}
+
+		/**
+		 * Schedules the run that follows the one that was due at the given
+		 * time.
+		 * @param previousDue The time at which the previous run was due.
+		 */
+		private void scheduleNext(long previousDue) {
+			long next = previousDue + TimeUnit.MILLISECONDS.toNanos(Math.max(1, this.intervalMillis.getAsLong()));
+			long now = System.nanoTime() - startNanos;
+			this.scheduleAt(Math.max(next, now));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package nl.gyrobian.uptime_monitor.probe;
+
+import nl.gyrobian.uptime_monitor.config.HttpConfig;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * The single HTTP transport that is shared by all site monitors. Because there
+ * is only one {@link HttpClient}, there is also only one selector thread, one
+ * connection pool and one TLS context for the whole application. Connections
+ * are pooled per authority, so sites which share a host will reuse the same
+ * connections, and HTTP/2 streams for the same origin are multiplexed over a
+ * single connection.
+ */
+public class ProbeTransport {
+	private final HttpClient httpClient;
+	private final HttpRequest.Builder requestBuilder;
+	private final ConnectionTimer connectionTimer;
+
+	/**
+	 * Constructs the transport. Note that the JDK's HTTP client reads its pool
+	 * settings from system properties the first time a client is created, so
+	 * this should be constructed before any other {@link HttpClient}.
+	 * @param config The HTTP configuration to use.
+	 * @param executor The executor that the client uses to process responses.
+	 */
+	public ProbeTransport(HttpConfig config, Executor executor) {
+		setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", config.getConnectionPoolSize());
+		setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", config.getKeepAliveTimeout());
+		this.httpClient = HttpClient.newBuilder()
+				.followRedirects(HttpClient.Redirect.ALWAYS)
+				.connectTimeout(Duration.ofSeconds(config.getConnectTimeout()))
+				.version(HttpClient.Version.HTTP_2)
+				.executor(executor)
+				.build();
+		this.requestBuilder = HttpRequest.newBuilder()
+				.GET()
+				.setHeader("Cache-Control", "no-cache")
+				.setHeader("User-Agent", "SiteMonitor")
+				.setHeader("Accept", "*/*")
+				.timeout(Duration.ofSeconds(config.getRequestTimeout()));
+		this.connectionTimer = new ConnectionTimer(config.getConnectTimeout());
+	}
+
+	/**
+	 * Builds a new probe request for the given URL, using the default headers
+	 * and timeout.
+	 * @param uri The URI to send the request to.
+	 * @return The request.
+	 */
+	public HttpRequest newRequest(URI uri) {
+		return this.requestBuilder.copy().uri(uri).build();
+	}
+
+	public HttpClient getHttpClient() {
+		return this.httpClient;
+	}
+
+	public ConnectionTimer getConnectionTimer() {
+		return this.connectionTimer;
+	}
+
+	/**
+	 * Sets a system property, unless it has already been set explicitly (for
+	 * example with a -D command line flag).
+	 * @param key The property key.
+	 * @param value The value to set.
+	 */
+	private static void setPropertyIfAbsent(String key, int value) {
+		if (System.getProperty(key) == null) {
+			System.setProperty(key, String.valueOf(value));
+		}
+	}
+}
@@ -5,16 +5,19 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
- * Simple job that when executed, generates a report.
+ * Simple job that when executed, generates all reports that are due at the
+ * same time, reading each site's data only once.
  */
 public class ReportGenerationJob implements Job {
 	@Override
+	@SuppressWarnings("unchecked")
 	public void execute(JobExecutionContext context) throws JobExecutionException {
-		ReportGenerator generator = (ReportGenerator) context.getJobDetail().getJobDataMap().get("generator");
+		var generators = (List<ReportGenerator>) context.getJobDetail().getJobDataMap().get("generators");
 		try {
-			generator.generate();
+			ReportPlanner.generate(generators);
 		} catch (IOException e) {
 			throw new JobExecutionException(e);
 		}
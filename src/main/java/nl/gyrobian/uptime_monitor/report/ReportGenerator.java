@@ -4,12 +4,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.AllArgsConstructor;
-import net.lingala.zip4j.ZipFile;
+import net.lingala.zip4j.io.outputstream.ZipOutputStream;
+import net.lingala.zip4j.model.ZipParameters;
 import nl.gyrobian.uptime_monitor.command.format.PdfWriter;
 import nl.gyrobian.uptime_monitor.config.MailConfig;
 import nl.gyrobian.uptime_monitor.config.ReportDistributionConfig;
 import nl.gyrobian.uptime_monitor.data.FocusInterval;
-import nl.gyrobian.uptime_monitor.data.MeasurementService;
+import nl.gyrobian.uptime_monitor.data.Grouping;
+import nl.gyrobian.uptime_monitor.data.MeasurementRequest;
 import nl.gyrobian.uptime_monitor.data.ReportData;
 
 import javax.mail.*;
@@ -17,17 +19,18 @@ import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.Period;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Properties;
 import java.util.stream.Collectors;
@@ -45,6 +48,8 @@ public class ReportGenerator {
 	private final Format format;
 	private final Period span;
 	private final List<FocusInterval> focusIntervals;
+	private final List<Grouping> groupings;
+	private final boolean includeEntries;
 	private final List<ReportDistributionConfig> distributionConfigs;
 	private final MailConfig mailConfig;
 
@@ -53,46 +58,108 @@ public class ReportGenerator {
 	 * for every individual site that this generator is responsible for. The ZIP
 	 * file has the format "yyyy-MM-dd_HH-mm-ss_report-name.zip".
 	 * @throws IOException If an error occurs while generating the report.
+	 * @see ReportPlanner#generate(List)
 	 */
 	public void generate() throws IOException {
-		System.out.println("Generating report: " + name + ".");
-		String sanitizedName = name.replaceAll("\\s+", "-");
-		OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-		String timestamp = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-		Path dir = REPORTS_DIR.resolve(timestamp + "_" + sanitizedName);
-		Files.createDirectories(dir);
-		var zip = new ZipFile(dir.toFile().getAbsolutePath() + ".zip");
-		for (var site : sites) {
-			var file = generateSiteReport(site, dir, now.minus(span).toLocalDate(), now.toLocalDate());
-			System.out.println("Generated site report: " + file);
-			zip.addFile(file.toFile());
-		}
-		// Remove the directory once we're done.
-		try (var s = Files.walk(dir).map(Path::toFile).sorted(Comparator.reverseOrder())) {
-			s.forEach(File::delete);
-		}
-		distributeReport(zip.getFile().toPath());
+		ReportPlanner.generate(List.of(this));
+	}
+
+	/**
+	 * Starts generating the report, by opening the ZIP file that its site
+	 * reports are written to.
+	 * @param now The time at which the report is generated.
+	 * @return The run of this generator, to add site reports to.
+	 * @throws IOException If the ZIP file could not be created.
+	 */
+	Run start(OffsetDateTime now) throws IOException {
+		return new Run(now);
 	}
 
 	/**
-	 * Generates an individual site report for a single site, and returns the
-	 * path to the file that the report is contained in.
-	 * @param site The site to generate the report for.
-	 * @param dir The directory to generate the report in.
-	 * @param start The starting date (inclusive) for the report.
-	 * @param end The ending date (inclusive) for the report.
-	 * @return The path to the generated file.
-	 * @throws IOException If an error occurs while writing the file.
+	 * A single run of a report generator, which writes the reports of its
+	 * sites into the entries of a ZIP file, without writing them to disk
+	 * first. Site reports may be added from several threads at once, in which
+	 * case they're rendered concurrently and written to the ZIP file one at a
+	 * time.
 	 */
-	private Path generateSiteReport(String site, Path dir, LocalDate start, LocalDate end) throws IOException {
-		var data = new MeasurementService().getData(site, start, end, focusIntervals);
-		Path file = dir.resolve(site + format.extension());
-		switch (format) {
-			case TEXT -> writeText(data, file);
-			case JSON -> writeJson(data, file);
-			case PDF -> writePdf(data, file);
+	class Run {
+		private final OffsetDateTime now;
+		private final Path file;
+		private final ZipOutputStream zip;
+
+		private Run(OffsetDateTime now) throws IOException {
+			System.out.println("Generating report: " + name + ".");
+			String sanitizedName = name.replaceAll("\\s+", "-");
+			String timestamp = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+			this.now = now;
+			this.file = REPORTS_DIR.resolve(timestamp + "_" + sanitizedName + ".zip").toAbsolutePath();
+			Files.createDirectories(REPORTS_DIR);
+			this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file)));
+		}
+
+		/**
+		 * @return The sites that this report covers.
+		 */
+		List<String> sites() {
+			return sites;
+		}
+
+		/**
+		 * @return The measurement that this report needs for each of its
+		 * sites.
+		 */
+		MeasurementRequest request() {
+			return new MeasurementRequest(now.minus(span).toLocalDate(), now.toLocalDate(), focusIntervals, groupings, includeEntries && format == Format.JSON);
+		}
+
+		/**
+		 * Renders the report of a single site, and writes it as an entry of
+		 * the ZIP file. The report is rendered into memory first, so that
+		 * several sites can be rendered at once, and only writing the entry
+		 * itself is done one site at a time.
+		 * @param site The site.
+		 * @param data The site's report data, measured with {@link #request()}.
+		 * @throws IOException If an error occurs while writing the entry.
+		 */
+		void addSiteReport(String site, ReportData data) throws IOException {
+			String entryName = site + format.extension();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			switch (format) {
+				case TEXT -> writeText(data, out);
+				case JSON -> writeJson(data, out);
+				case PDF -> writePdf(data, out);
+			}
+			ZipParameters params = new ZipParameters();
+			params.setFileNameInZip(entryName);
+			synchronized (this) {
+				this.zip.putNextEntry(params);
+				out.writeTo(this.zip);
+				this.zip.closeEntry();
+			}
+			System.out.println("Generated site report: " + this.file.getFileName() + "/" + entryName);
+		}
+
+		/**
+		 * Finishes the report once all site reports are added, and
+		 * distributes it.
+		 * @throws IOException If the ZIP file could not be completed.
+		 */
+		synchronized void finish() throws IOException {
+			this.zip.close();
+			distributeReport(this.file);
+		}
+
+		/**
+		 * Discards the report, if it couldn't be generated completely.
+		 */
+		synchronized void discard() {
+			try {
+				this.zip.close();
+				Files.deleteIfExists(this.file);
+			} catch (IOException e) {
+				System.err.println("Could not remove incomplete report file " + this.file);
+			}
 		}
-		return file;
 	}
 
 	/**
@@ -112,14 +179,25 @@ public class ReportGenerator {
 	/**
 	 * Writes a textual report.
 	 * @param data The report data.
-	 * @param file The file to write to.
+	 * @param out The stream to write to.
 	 * @throws IOException If an error occurs while writing.
 	 */
-	private void writeText(ReportData data, Path file) throws IOException {
-		PrintWriter w = new PrintWriter(Files.newBufferedWriter(file));
+	private void writeText(ReportData data, OutputStream out) throws IOException {
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
 		w.printf("Performance data for site %s from %s to %s, generated in %d ms.\n", data.siteName(), data.startDate(), data.endDate(), data.measurementDuration());
 		w.printf("Average response time: %.2f (ms)\nPercent of requests that were successful: %.2f\n", data.aggregatePerformance().averageResponseTime(), data.aggregatePerformance().successPercent());
-		w.printf("Total number of entries: %d\n", data.entries().length);
+		var percentiles = data.aggregatePerformance().responseTimePercentiles();
+		w.printf("Response time percentiles: p50 %s, p95 %s, p99 %s\n", ReportData.PhaseTimes.format(percentiles.p50()), ReportData.PhaseTimes.format(percentiles.p95()), ReportData.PhaseTimes.format(percentiles.p99()));
+		w.printf("Total number of entries: %d\n", data.aggregatePerformance().entryCount());
+		var phases = data.aggregatePerformance().averagePhaseTimes();
+		w.printf("Average phase times: DNS %s, connect %s, TLS %s, time to first byte %s, body %s\n", ReportData.PhaseTimes.format(phases.dns()), ReportData.PhaseTimes.format(phases.connect()), ReportData.PhaseTimes.format(phases.tls()), ReportData.PhaseTimes.format(phases.timeToFirstByte()), ReportData.PhaseTimes.format(phases.body()));
+		for (var grouping : data.groupedPerformanceData().entrySet()) {
+			w.printf("Breakdown by %s:\n", grouping.getKey().name().toLowerCase().replace('_', ' '));
+			for (var group : grouping.getValue().entrySet()) {
+				var d = group.getValue();
+				w.printf("  %-9s uptime %.4f%%, success %.2f%%, average response time %.2f (ms), p95 %s, %d entries\n", group.getKey(), d.uptimePercent(), d.successPercent(), d.averageResponseTime(), ReportData.PhaseTimes.format(d.responseTimePercentiles().p95()), d.entryCount());
+			}
+		}
 		w.close();
 	}
 
@@ -127,14 +205,13 @@ public class ReportGenerator {
 	 * Writes a JSON report that contains a full serialized version of the
 	 * report data.
 	 * @param data The report data.
-	 * @param file The file to write to.
+	 * @param out The stream to write to.
 	 * @throws IOException If an error occurs while writing.
 	 */
-	private void writeJson(ReportData data, Path file) throws IOException {
+	private void writeJson(ReportData data, OutputStream out) throws IOException {
 		ObjectMapper mapper = new ObjectMapper();
 		mapper.registerModule(new JavaTimeModule());
 		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-		var out = Files.newBufferedWriter(file);
 		mapper.writerWithDefaultPrettyPrinter().writeValue(out, data);
 		out.close();
 	}
@@ -142,11 +219,10 @@ public class ReportGenerator {
 	/**
 	 * Writes a PDF report.
 	 * @param data The report data.
-	 * @param file The file to write to.
+	 * @param out The stream to write to.
 	 * @throws IOException If an error occurs while writing.
 	 */
-	private void writePdf(ReportData data, Path file) throws IOException {
-		var out = Files.newOutputStream(file);
+	private void writePdf(ReportData data, OutputStream out) throws IOException {
 		var writer = new PdfWriter();
 		writer.write(data, out);
 		out.close();
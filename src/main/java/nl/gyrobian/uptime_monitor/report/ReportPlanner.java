@@ -0,0 +1,126 @@
+package nl.gyrobian.uptime_monitor.report;
+
+import nl.gyrobian.uptime_monitor.data.MeasurementRequest;
+import nl.gyrobian.uptime_monitor.data.MeasurementService;
+import nl.gyrobian.uptime_monitor.metrics.Metrics;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plans the generation of several reports at once, so that each site's data
+ * is only read once, even if the site is included in many of the reports.
+ * All reports that include a site are measured together, from a single scan
+ * over the union of their spans, after which each report's site report is
+ * written from its own aggregates.
+ * <p>
+ *     Sites are measured in parallel, with at most one site per processor at a
+ *     time, and each site's reports are streamed into their reports' ZIP files
+ *     as soon as it's measured, so generating the reports takes about as long
+ *     as measuring the slowest site.
+ * </p>
+ */
+public final class ReportPlanner {
+	private ReportPlanner() {}
+
+	/**
+	 * Generates a list of reports.
+	 * @param generators The generators of the reports.
+	 * @throws IOException If an error occurs while generating the reports.
+	 */
+	public static void generate(List<ReportGenerator> generators) throws IOException {
+		long startedAt = System.nanoTime();
+		OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+		List<ReportGenerator.Run> runs = new ArrayList<>(generators.size());
+		for (var generator : generators) {
+			runs.add(generator.start(now));
+		}
+		Map<String, List<ReportGenerator.Run>> runsBySite = new LinkedHashMap<>();
+		for (var run : runs) {
+			for (var site : run.sites()) {
+				runsBySite.computeIfAbsent(site, s -> new ArrayList<>()).add(run);
+			}
+		}
+		var service = new MeasurementService();
+		ExecutorService executor = createExecutor(runsBySite.size());
+		try {
+			List<Future<?>> futures = new ArrayList<>(runsBySite.size());
+			for (var entry : runsBySite.entrySet()) {
+				futures.add(executor.submit(() -> {
+					generateSiteReports(service, entry.getKey(), entry.getValue());
+					return null;
+				}));
+			}
+			for (var future : futures) {
+				await(future);
+			}
+		} catch (IOException | RuntimeException e) {
+			executor.shutdownNow();
+			runs.forEach(ReportGenerator.Run::discard);
+			Metrics.reportsGenerated(runs.size(), System.nanoTime() - startedAt, false);
+			throw e;
+		} finally {
+			executor.shutdownNow();
+		}
+		for (var run : runs) {
+			run.finish();
+		}
+		Metrics.reportsGenerated(runs.size(), System.nanoTime() - startedAt, true);
+	}
+
+	/**
+	 * Measures a site once for all the reports that include it, and adds the
+	 * site's report to each of them.
+	 * @param service The measurement service.
+	 * @param site The site.
+	 * @param siteRuns The runs of the reports that include the site.
+	 * @throws IOException If an error occurs while measuring the site or
+	 * writing its reports.
+	 */
+	private static void generateSiteReports(MeasurementService service, String site, List<ReportGenerator.Run> siteRuns) throws IOException {
+		List<MeasurementRequest> requests = siteRuns.stream().map(ReportGenerator.Run::request).toList();
+		if (siteRuns.size() > 1) {
+			System.out.println("Measuring site " + site + " once for " + siteRuns.size() + " reports.");
+		}
+		var data = service.getData(site, requests);
+		for (int i = 0; i < siteRuns.size(); i++) {
+			siteRuns.get(i).addSiteReport(site, data.get(i));
+		}
+	}
+
+	private static ExecutorService createExecutor(int siteCount) {
+		int threads = Math.max(1, Math.min(siteCount, Runtime.getRuntime().availableProcessors()));
+		return Executors.newFixedThreadPool(threads, r -> {
+			var thread = new Thread(r, "report-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Waits for the site reports of a single site to be generated.
+	 * @param future The future of the site's reports.
+	 * @throws IOException If the site's reports could not be generated.
+	 */
+	private static void await(Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating reports.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) throw ioException;
+			if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+			throw new IOException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * A read-only view of a binary segment file, which is memory-mapped so that
+ * its records can be scanned sequentially without any allocation per record.
+ * <p>
+ *     A binary segment starts with a {@value #HEADER_SIZE} byte header, which
+ *     holds the magic number, the format version and the record size. It is
+ *     followed by blocks of records, each of which starts with the length of
+ *     its records in bytes (4 bytes) and the CRC32C checksum of its records
+ *     (4 bytes). A block is written each time the writer is flushed, so a
+ *     crash can only ever damage the last block, which is then truncated by
+ *     {@link #validLength(Path)} when the segment is opened for appending.
+ *     Segments of version 1 have no blocks, and consist of records only.
+ * </p>
+ * <p>
+ *     Records are {@value #RECORD_SIZE} bytes wide, each holding the
+ *     following fields, in order:
+ * </p>
+ * <ul>
+ *     <li>The timestamp, in microseconds since the epoch (8 bytes).</li>
+ *     <li>The response code (4 bytes).</li>
+ *     <li>The response time, in milliseconds (4 bytes).</li>
+ *     <li>The id of the URL in the site's {@link UrlDictionary} (4 bytes).</li>
+ *     <li>The DNS, connect, TLS, time to first byte and body phase timings,
+ *     in microseconds, where -1 means not observed (4 bytes each).</li>
+ * </ul>
+ * <p>
+ *     Response details are not stored in binary segments.
+ * </p>
+ * <p>
+ *     Usage: call {@link #next()} until it returns false, and read the fields
+ *     of the current record with the getters in between.
+ * </p>
+ */
+public class BinarySegment {
+	public static final String EXTENSION = ".seg";
+	public static final int MAGIC = 0x554D5347; // "UMSG"
+	public static final short VERSION = 2;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 40;
+	public static final int BLOCK_HEADER_SIZE = 8;
+
+	static final int TIMESTAMP_OFFSET = 0;
+	static final int RESPONSE_CODE_OFFSET = 8;
+	static final int RESPONSE_TIME_OFFSET = 12;
+	static final int URL_ID_OFFSET = 16;
+	static final int TIMINGS_OFFSET = 20;
+
+	/**
+	 * Segments larger than this have their blocks verified in parallel.
+	 */
+	private static final int PARALLEL_VERIFY_THRESHOLD = 1024 * 1024;
+
+	private final ByteBuffer buffer;
+	private final int[] blockStarts;
+	private final int[] blockEnds;
+	private final int recordCount;
+	private final long end;
+	private final boolean hasBlocks;
+	private int block = -1;
+	private int position = 0;
+
+	private BinarySegment(ByteBuffer buffer, int[] blockStarts, int[] blockEnds, long end, boolean hasBlocks) {
+		this.buffer = buffer;
+		this.blockStarts = blockStarts;
+		this.blockEnds = blockEnds;
+		this.end = end;
+		this.hasBlocks = hasBlocks;
+		int count = 0;
+		for (int i = 0; i < blockStarts.length; i++) {
+			count += (blockEnds[i] - blockStarts[i]) / RECORD_SIZE;
+		}
+		this.recordCount = count;
+	}
+
+	/**
+	 * Opens and maps a binary segment file, and verifies the checksums of its
+	 * blocks. Blocks with an invalid checksum are skipped, and so is any
+	 * incomplete block at the end of the file.
+	 * @param file The file to open.
+	 * @return The segment.
+	 * @throws IOException If the file could not be mapped, or if it is not a
+	 * binary segment of a supported version.
+	 */
+	public static BinarySegment open(Path file) throws IOException {
+		return open(file, 0);
+	}
+
+	/**
+	 * Opens and maps a binary segment file, and verifies the checksums of its
+	 * blocks, starting at a given offset. Blocks with an invalid checksum are
+	 * skipped, and so is any incomplete block at the end of the file.
+	 * @param file The file to open.
+	 * @param start The offset of the first block to read, which must be the
+	 *              {@link #end()} of an earlier read of the same file, or 0 to
+	 *              read the whole file.
+	 * @return The segment.
+	 * @throws IOException If the file could not be mapped, or if it is not a
+	 * binary segment of a supported version.
+	 */
+	public static BinarySegment open(Path file, long start) throws IOException {
+		return open(file, start, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Opens and maps part of a binary segment file, and verifies the
+	 * checksums of its blocks. Blocks with an invalid checksum are skipped,
+	 * and so is any incomplete block at the end of the part.
+	 * @param file The file to open.
+	 * @param start The offset of the first block to read, which must be the
+	 *              {@link #end()} of an earlier read, a
+	 *              {@link #recordOffset() record offset}, or 0 to read from
+	 *              the start of the file.
+	 * @param limit The offset at which to stop reading, which must be a
+	 *              record offset or the end of the file.
+	 * @return The segment.
+	 * @throws IOException If the file could not be mapped, or if it is not a
+	 * binary segment of a supported version.
+	 */
+	static BinarySegment open(Path file, long start, long limit) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(limit, channel.size()));
+			if (!hasReadableHeader(buffer)) throw new IOException("File " + file + " is not a supported binary segment.");
+			int first = (int) Math.max(start, HEADER_SIZE);
+			if (buffer.getShort(4) == 1) {
+				int end = HEADER_SIZE + (buffer.limit() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+				if (end <= first) return new BinarySegment(buffer, new int[0], new int[0], first, false);
+				return new BinarySegment(buffer, new int[]{first}, new int[]{end}, end, false);
+			}
+			int blockCount = countBlocks(buffer, first);
+			int[] starts = new int[blockCount];
+			int[] ends = new int[blockCount];
+			int pos = first;
+			for (int i = 0; i < blockCount; i++) {
+				starts[i] = pos + BLOCK_HEADER_SIZE;
+				ends[i] = starts[i] + buffer.getInt(pos);
+				pos = ends[i];
+			}
+			boolean[] valid = new boolean[blockCount];
+			IntStream indices = IntStream.range(0, blockCount);
+			if (buffer.limit() > PARALLEL_VERIFY_THRESHOLD) indices = indices.parallel();
+			indices.forEach(i -> valid[i] = isBlockValid(buffer, starts[i] - BLOCK_HEADER_SIZE));
+			// An invalid last block may still be in the middle of being written, so reading stops before it.
+			long end = blockCount == 0 || valid[blockCount - 1] ? pos : starts[blockCount - 1] - BLOCK_HEADER_SIZE;
+			int validCount = 0;
+			for (int i = 0; i < blockCount; i++) {
+				if (valid[i]) {
+					starts[validCount] = starts[i];
+					ends[validCount] = ends[i];
+					validCount++;
+				}
+			}
+			if (validCount < blockCount) {
+				System.err.println("Skipping " + (blockCount - validCount) + " corrupted blocks in " + file);
+			}
+			return new BinarySegment(buffer, Arrays.copyOf(starts, validCount), Arrays.copyOf(ends, validCount), end, true);
+		}
+	}
+
+	/**
+	 * Determines the length of the valid part of a binary segment file, which
+	 * ends after the last complete block with a valid checksum. Anything after
+	 * that was torn by a crash while writing, and should be truncated before
+	 * appending to the file.
+	 * @param file The file to check.
+	 * @return The length of the valid part of the file.
+	 * @throws IOException If the file could not be read, or if it is not a
+	 * binary segment of the current version.
+	 */
+	public static long validLength(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (!hasValidHeader(buffer)) throw new IOException("File " + file + " is not a binary segment of the current version.");
+			int pos = HEADER_SIZE;
+			int blockCount = countBlocks(buffer, HEADER_SIZE);
+			int lastBlock = pos;
+			for (int i = 0; i < blockCount; i++) {
+				lastBlock = pos;
+				pos += BLOCK_HEADER_SIZE + buffer.getInt(pos);
+			}
+			// Only the last block can have been torn, so earlier blocks are never discarded.
+			if (blockCount > 0 && !isBlockValid(buffer, lastBlock)) return lastBlock;
+			return pos;
+		}
+	}
+
+	/**
+	 * Counts the complete blocks in a version 2 segment, by following their
+	 * length prefixes until the end of the buffer, or until a length is found
+	 * that is not valid.
+	 * @param buffer The segment's buffer.
+	 * @param start The offset of the first block.
+	 * @return The number of complete blocks.
+	 */
+	private static int countBlocks(ByteBuffer buffer, int start) {
+		int count = 0;
+		long pos = start;
+		while (pos + BLOCK_HEADER_SIZE <= buffer.limit()) {
+			int length = buffer.getInt((int) pos);
+			if (length <= 0 || length % RECORD_SIZE != 0 || pos + BLOCK_HEADER_SIZE + length > buffer.limit()) break;
+			pos += BLOCK_HEADER_SIZE + length;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Verifies the checksum of a block.
+	 * @param buffer The segment's buffer.
+	 * @param blockStart The offset of the block's header.
+	 * @return True if the block's checksum matches its records.
+	 */
+	private static boolean isBlockValid(ByteBuffer buffer, int blockStart) {
+		int length = buffer.getInt(blockStart);
+		var crc = new CRC32C();
+		crc.update(buffer.slice(blockStart + BLOCK_HEADER_SIZE, length));
+		return (int) crc.getValue() == buffer.getInt(blockStart + 4);
+	}
+
+	/**
+	 * Checks if a buffer starts with a valid header for the current version.
+	 * @param buffer The buffer to check.
+	 * @return True if the header is valid.
+	 */
+	static boolean hasValidHeader(ByteBuffer buffer) {
+		return hasReadableHeader(buffer) && buffer.getShort(4) == VERSION;
+	}
+
+	/**
+	 * Checks if a buffer starts with a header of any version that can be read.
+	 * @param buffer The buffer to check.
+	 * @return True if the header is valid.
+	 */
+	private static boolean hasReadableHeader(ByteBuffer buffer) {
+		return buffer.limit() >= HEADER_SIZE &&
+				buffer.getInt(0) == MAGIC &&
+				(buffer.getShort(4) == 1 || buffer.getShort(4) == VERSION) &&
+				buffer.getShort(6) == RECORD_SIZE;
+	}
+
+	/**
+	 * Writes a binary segment header into a buffer.
+	 * @param buffer The buffer to write to, which must have room for at least
+	 *               {@value #HEADER_SIZE} bytes.
+	 */
+	static void writeHeader(ByteBuffer buffer) {
+		buffer.putInt(0, MAGIC);
+		buffer.putShort(4, VERSION);
+		buffer.putShort(6, (short) RECORD_SIZE);
+		buffer.putLong(8, 0);
+	}
+
+	public int getRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * @return The offset up to which the segment is read, from which a later
+	 * read can continue once more blocks have been written.
+	 */
+	public long end() {
+		return this.end;
+	}
+
+	/**
+	 * @return The offset from which the segment can be read to get the
+	 * current record first, which is the offset of the record itself in
+	 * segments without blocks, and the offset of the record's block if the
+	 * record is the first in its block, or -1 if the segment can't be read
+	 * from the current record.
+	 */
+	public long recordOffset() {
+		if (!this.hasBlocks) return this.position;
+		return this.position == this.blockStarts[this.block] ? this.position - BLOCK_HEADER_SIZE : -1;
+	}
+
+	/**
+	 * Moves to the next record.
+	 * @return True if there is a next record, or false if the end of the
+	 * segment was reached.
+	 */
+	public boolean next() {
+		if (this.block >= 0 && this.position + RECORD_SIZE < this.blockEnds[this.block]) {
+			this.position += RECORD_SIZE;
+			return true;
+		}
+		if (this.block + 1 >= this.blockStarts.length) return false;
+		this.block++;
+		this.position = this.blockStarts[this.block];
+		return true;
+	}
+
+	public long timestampMicros() {
+		return this.buffer.getLong(this.position + TIMESTAMP_OFFSET);
+	}
+
+	public int responseCode() {
+		return this.buffer.getInt(this.position + RESPONSE_CODE_OFFSET);
+	}
+
+	public int responseTime() {
+		return this.buffer.getInt(this.position + RESPONSE_TIME_OFFSET);
+	}
+
+	public int urlId() {
+		return this.buffer.getInt(this.position + URL_ID_OFFSET);
+	}
+
+	/**
+	 * Gets one of the phase timings of the current record.
+	 * @param phase The index of the phase, in the order DNS, connect, TLS,
+	 *              time to first byte, and body.
+	 * @return The phase timing in microseconds, or -1 if not observed.
+	 */
+	public int timing(int phase) {
+		return this.buffer.getInt(this.position + TIMINGS_OFFSET + 4 * phase);
+	}
+}
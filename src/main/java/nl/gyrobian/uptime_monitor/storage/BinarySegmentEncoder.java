@@ -0,0 +1,97 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Encodes entries as fixed-width records of a {@link BinarySegment}. Records
+ * are collected into a block until the encoder is flushed, or the block is
+ * full, and then written along with the block's length and checksum.
+ */
+public class BinarySegmentEncoder implements SegmentEncoder {
+	private static final int MAX_BLOCK_RECORDS = 1024;
+
+	private final UrlDictionary urls;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BinarySegment.BLOCK_HEADER_SIZE + MAX_BLOCK_RECORDS * BinarySegment.RECORD_SIZE);
+	private final CRC32C crc = new CRC32C();
+	private int blockRecords = 0;
+
+	/**
+	 * Constructs the encoder for a site.
+	 * @param dir The site's directory, which holds its URL dictionary.
+	 * @throws IOException If the URL dictionary could not be loaded.
+	 */
+	public BinarySegmentEncoder(Path dir) throws IOException {
+		this.urls = UrlDictionary.load(dir);
+	}
+
+	@Override
+	public String extension() {
+		return BinarySegment.EXTENSION;
+	}
+
+	@Override
+	public boolean canAppendTo(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			var header = ByteBuffer.allocate(BinarySegment.HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0);
+			header.flip();
+			return BinarySegment.hasValidHeader(header);
+		}
+	}
+
+	@Override
+	public long validLength(Path file) throws IOException {
+		return BinarySegment.validLength(file);
+	}
+
+	@Override
+	public int writeHeader(OutputStream out) throws IOException {
+		var header = ByteBuffer.allocate(BinarySegment.HEADER_SIZE);
+		BinarySegment.writeHeader(header);
+		out.write(header.array());
+		return BinarySegment.HEADER_SIZE;
+	}
+
+	@Override
+	public int write(MonitorEntry entry, OutputStream out) throws IOException {
+		var ts = entry.timestamp().toInstant();
+		var timings = entry.timings();
+		int offset = BinarySegment.BLOCK_HEADER_SIZE + this.blockRecords * BinarySegment.RECORD_SIZE;
+		this.buffer.putLong(offset + BinarySegment.TIMESTAMP_OFFSET, ts.getEpochSecond() * 1_000_000L + ts.getNano() / 1_000);
+		this.buffer.putInt(offset + BinarySegment.RESPONSE_CODE_OFFSET, entry.responseCode());
+		this.buffer.putInt(offset + BinarySegment.RESPONSE_TIME_OFFSET, entry.responseTime());
+		this.buffer.putInt(offset + BinarySegment.URL_ID_OFFSET, this.urls.idOf(entry.url()));
+		this.putTiming(offset, 0, timings.dnsMicros());
+		this.putTiming(offset, 1, timings.connectMicros());
+		this.putTiming(offset, 2, timings.tlsMicros());
+		this.putTiming(offset, 3, timings.ttfbMicros());
+		this.putTiming(offset, 4, timings.bodyMicros());
+		this.blockRecords++;
+		return this.blockRecords == MAX_BLOCK_RECORDS ? this.flush(out) : 0;
+	}
+
+	@Override
+	public int flush(OutputStream out) throws IOException {
+		if (this.blockRecords == 0) return 0;
+		int length = this.blockRecords * BinarySegment.RECORD_SIZE;
+		this.crc.reset();
+		this.crc.update(this.buffer.array(), BinarySegment.BLOCK_HEADER_SIZE, length);
+		this.buffer.putInt(0, length);
+		this.buffer.putInt(4, (int) this.crc.getValue());
+		out.write(this.buffer.array(), 0, BinarySegment.BLOCK_HEADER_SIZE + length);
+		this.blockRecords = 0;
+		return BinarySegment.BLOCK_HEADER_SIZE + length;
+	}
+
+	private void putTiming(int offset, int phase, long micros) {
+		this.buffer.putInt(offset + BinarySegment.TIMINGS_OFFSET + 4 * phase, (int) Math.max(-1, Math.min(Integer.MAX_VALUE, micros)));
+	}
+}
@@ -0,0 +1,169 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.Checkpoint;
+import nl.gyrobian.uptime_monitor.data.DailyRollup;
+import nl.gyrobian.uptime_monitor.data.FocusInterval;
+import nl.gyrobian.uptime_monitor.data.Grouping;
+import nl.gyrobian.uptime_monitor.data.PerformanceAggregate;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Utility methods for reading and writing the checkpoint of a site, which is
+ * stored as "checkpoint.csv" in the site's daily rollups directory. The first
+ * column of each row holds the kind of the row:
+ * <ul>
+ *     <li>"Range": the first and last day of the checkpoint.</li>
+ *     <li>"Focus Interval": a focus interval that the checkpoint was built
+ *     for.</li>
+ *     <li>"Grouping": a grouping that the checkpoint was built for.</li>
+ *     <li>"Position": the name of a segment file, and the offset up to which
+ *     it was read.</li>
+ *     <li>"Summary": the name of a summary file with data for the
+ *     checkpoint's days.</li>
+ *     <li>"Rollup": a day, followed by a row of that day's rollup, in the
+ *     same layout as in a rollup file.</li>
+ * </ul>
+ */
+public final class Checkpoints {
+	/**
+	 * The headers of the columns in a checkpoint file, which describe its
+	 * rollup rows.
+	 */
+	public static final String[] CSV_HEADERS = Stream.concat(
+			Stream.of("Kind", "Date"),
+			Stream.of(DailyRollups.CSV_HEADERS)
+	).toArray(String[]::new);
+
+	private static final String RANGE = "Range";
+	private static final String FOCUS_INTERVAL = "Focus Interval";
+	private static final String GROUPING = "Grouping";
+	private static final String POSITION = "Position";
+	private static final String SUMMARY = "Summary";
+	private static final String ROLLUP = "Rollup";
+
+	private Checkpoints() {}
+
+	private static Path file(Path siteDir) {
+		return DailyRollups.directory(siteDir).resolve("checkpoint.csv");
+	}
+
+	/**
+	 * @param siteDir The site's directory.
+	 * @return The size of the site's checkpoint file, in bytes.
+	 * @throws IOException If the size could not be read.
+	 */
+	public static long size(Path siteDir) throws IOException {
+		return Files.size(file(siteDir));
+	}
+
+	/**
+	 * Reads the checkpoint of a site. A corrupted checkpoint is treated as
+	 * missing.
+	 * @param siteDir The site's directory.
+	 * @return The checkpoint, or null if there is none.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static Checkpoint read(Path siteDir) throws IOException {
+		Path path = file(siteDir);
+		if (Files.notExists(path)) return null;
+		LocalDate startDate = null;
+		LocalDate endDate = null;
+		List<FocusInterval> focusIntervals = new ArrayList<>();
+		List<Grouping> groupings = new ArrayList<>();
+		Map<String, Long> positions = new LinkedHashMap<>();
+		List<String> summaryFiles = new ArrayList<>();
+		Map<LocalDate, Map<String, PerformanceAggregate>> rollupScopes = new TreeMap<>();
+		try (var reader = Files.newBufferedReader(path)) {
+			boolean isHeader = true;
+			for (var record : CSVFormat.DEFAULT.parse(reader)) {
+				if (isHeader) {
+					isHeader = false;
+					continue;
+				}
+				switch (record.get(0)) {
+					case RANGE -> {
+						startDate = LocalDate.parse(record.get(1));
+						endDate = LocalDate.parse(record.get(2));
+					}
+					case FOCUS_INTERVAL -> focusIntervals.add(new FocusInterval(LocalTime.parse(record.get(1)), LocalTime.parse(record.get(2))));
+					case GROUPING -> groupings.add(Grouping.valueOf(record.get(1)));
+					case POSITION -> positions.put(record.get(1), Long.parseLong(record.get(2)));
+					case SUMMARY -> summaryFiles.add(record.get(1));
+					case ROLLUP -> {
+						if (record.size() < CSV_HEADERS.length) throw new IllegalArgumentException("Incomplete rollup row.");
+						var scopes = rollupScopes.computeIfAbsent(LocalDate.parse(record.get(1)), d -> new LinkedHashMap<>());
+						scopes.put(record.get(2), PerformanceAggregate.fromCsvRecord(record, 3));
+					}
+					default -> throw new IllegalArgumentException("Invalid row: " + record.get(0));
+				}
+			}
+			if (startDate == null) throw new IllegalArgumentException("Missing range.");
+			List<DailyRollup> rollups = new ArrayList<>(rollupScopes.size());
+			for (var entry : rollupScopes.entrySet()) {
+				var rollup = DailyRollups.fromScopes(entry.getKey(), entry.getValue());
+				if (rollup == null) throw new IllegalArgumentException("Incomplete rollup of " + entry.getKey());
+				rollups.add(rollup);
+			}
+			return new Checkpoint(startDate, endDate, focusIntervals, groupings, positions, summaryFiles, rollups);
+		} catch (IOException | DateTimeParseException | IllegalArgumentException | IllegalStateException e) {
+			System.err.println("Ignoring corrupted checkpoint " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the checkpoint of a site, replacing any existing checkpoint
+	 * atomically.
+	 * @param siteDir The site's directory.
+	 * @param checkpoint The checkpoint to write.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void write(Path siteDir, Checkpoint checkpoint) throws IOException {
+		Path path = file(siteDir);
+		Files.createDirectories(path.getParent());
+		// Checkpoints may be written by several reports at once, so each gets its own temporary file.
+		Path tmp = Files.createTempFile(path.getParent(), "checkpoint", ".tmp");
+		try (var writer = Files.newBufferedWriter(tmp)) {
+			var printer = CSVFormat.DEFAULT.print(writer);
+			printer.printRecord((Object[]) CSV_HEADERS);
+			printer.printRecord(RANGE, checkpoint.startDate(), checkpoint.endDate());
+			for (var interval : checkpoint.focusIntervals()) {
+				printer.printRecord(FOCUS_INTERVAL, interval.from(), interval.to());
+			}
+			for (var grouping : checkpoint.groupings()) {
+				printer.printRecord(GROUPING, grouping.name());
+			}
+			for (var entry : checkpoint.positions().entrySet()) {
+				printer.printRecord(POSITION, entry.getKey(), entry.getValue());
+			}
+			for (var summaryFile : checkpoint.summaryFiles()) {
+				printer.printRecord(SUMMARY, summaryFile);
+			}
+			for (var rollup : checkpoint.rollups()) {
+				for (var values : DailyRollups.toCsvRows(rollup)) {
+					Object[] row = new Object[2 + values.length];
+					row[0] = ROLLUP;
+					row[1] = rollup.date();
+					System.arraycopy(values, 0, row, 2, values.length);
+					printer.printRecord(row);
+				}
+			}
+			printer.flush();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
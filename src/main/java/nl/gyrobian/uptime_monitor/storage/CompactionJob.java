@@ -0,0 +1,17 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Simple job that when executed, compacts old measurement data.
+ */
+@DisallowConcurrentExecution
+public class CompactionJob implements Job {
+	@Override
+	public void execute(JobExecutionContext context) {
+		Compactor compactor = (Compactor) context.getJobDetail().getJobDataMap().get("compactor");
+		compactor.compact();
+	}
+}
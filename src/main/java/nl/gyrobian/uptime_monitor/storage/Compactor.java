@@ -0,0 +1,240 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.config.CompactionConfig;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import nl.gyrobian.uptime_monitor.data.PerformanceAggregate;
+import nl.gyrobian.uptime_monitor.data.SummaryEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compacts old measurement data for every site that is being recorded. Segment
+ * files whose entries are all older than the raw retention are rolled into
+ * per-minute summaries, minute summaries older than the minute retention are
+ * rolled into per-hour summaries, and hour summaries and daily rollups older
+ * than the hour retention are deleted.
+ * <p>
+ *     Summary files are never changed. Each step of compaction writes new
+ *     summary files, and then commits them in the site's manifest, along with
+ *     the removal of the segments or summary files that they replace. Readers
+ *     switch over at that point, and only then are the replaced files deleted.
+ *     If compaction is interrupted before the commit, the new files are
+ *     ignored and deleted by the next compaction, which compacts the same data
+ *     again, so no data is ever counted twice.
+ * </p>
+ */
+public class Compactor {
+	private final MeasurementRecorder recorder;
+	private final Period rawRetention;
+	private final Period minuteRetention;
+	private final Period hourRetention;
+
+	/**
+	 * Constructs the compactor.
+	 * @param config The compaction configuration.
+	 * @param recorder The recorder whose sites to compact.
+	 */
+	public Compactor(CompactionConfig config, MeasurementRecorder recorder) {
+		this.recorder = recorder;
+		this.rawRetention = parseRetention(config.getRawRetention(), "raw-retention");
+		this.minuteRetention = parseRetention(config.getMinuteRetention(), "minute-retention");
+		this.hourRetention = config.getHourRetention() == null ? null : parseRetention(config.getHourRetention(), "hour-retention");
+	}
+
+	private static Period parseRetention(String text, String name) {
+		if (text == null) throw new IllegalArgumentException("Missing " + name + " for compaction.");
+		Period period = Period.parse(text.trim());
+		if (period.isNegative() || period.isZero()) throw new IllegalArgumentException("Invalid " + name + " for compaction: " + text);
+		return period;
+	}
+
+	/**
+	 * Compacts the data of every site that is being recorded. Errors for one
+	 * site don't stop the others from being compacted.
+	 */
+	public void compact() {
+		for (var writer : this.recorder.getWriters()) {
+			try {
+				this.compactSite(writer);
+			} catch (IOException e) {
+				System.err.println("Could not compact data for site " + writer.getSiteName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Compacts the data of a single site.
+	 * @param writer The site's record writer.
+	 * @throws IOException If an error occurs while reading or writing data.
+	 */
+	private void compactSite(SiteRecordWriter writer) throws IOException {
+		var now = OffsetDateTime.now(ZoneOffset.UTC);
+		var manifest = writer.getManifest();
+		deleteUncommittedSummaries(manifest);
+		int segments = this.compactSegments(writer, now.minus(this.rawRetention).toInstant());
+		int minuteFiles = this.compactMinuteSummaries(manifest, now.minus(this.minuteRetention).toInstant());
+		int hourFiles = this.hourRetention == null ? 0 : this.deleteHourSummaries(manifest, now.minus(this.hourRetention).toInstant());
+		// Daily rollups are removed along with the data they were built from.
+		if (this.hourRetention != null) DailyRollups.deleteBefore(writer.getDir(), now.minus(this.hourRetention).toInstant());
+		if (segments > 0 || minuteFiles > 0 || hourFiles > 0) {
+			System.out.printf("Compacted data for site %s: %d segments into minute summaries, %d days of minute summaries into hour summaries, and deleted %d months of hour summaries.\n", writer.getSiteName(), segments, minuteFiles, hourFiles);
+		}
+	}
+
+	/**
+	 * Deletes the summary files of a site that aren't listed in its manifest,
+	 * which were written by a compaction that was interrupted before it could
+	 * commit them.
+	 * @param manifest The site's manifest.
+	 * @throws IOException If a file could not be deleted.
+	 */
+	private static void deleteUncommittedSummaries(SegmentManifest manifest) throws IOException {
+		for (var tier : SummaryTier.values()) {
+			var committed = manifest.getSummaryFiles(tier);
+			for (var file : tier.listFiles(manifest.getDir())) {
+				if (!committed.contains(file)) Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Rolls the oldest segments of a site into minute summaries.
+	 * @param writer The site's record writer.
+	 * @param cutoff The instant before which all entries of a segment must
+	 *               have been taken for it to be compacted.
+	 * @return The number of segments that were compacted.
+	 * @throws IOException If an error occurs while reading or writing data.
+	 */
+	private int compactSegments(SiteRecordWriter writer, Instant cutoff) throws IOException {
+		var manifest = writer.getManifest();
+		var segments = manifest.selectBefore(cutoff.toEpochMilli());
+		if (segments.isEmpty()) return 0;
+		var reader = new SegmentReader(writer.getDir());
+		Map<Instant, SummaryEntry> buckets = new TreeMap<>();
+		List<MonitorEntry> entries = new ArrayList<>();
+		for (var segment : segments) {
+			Path path = writer.getDir().resolve(segment.file());
+			if (Files.notExists(path)) continue;
+			reader.read(path, entries::add);
+			Collections.sort(entries);
+			for (var entry : entries) {
+				addToBucket(buckets, SummaryTier.MINUTE, entry.timestamp()).add(entry);
+			}
+			entries.clear();
+		}
+		var replaced = new ArrayList<Path>();
+		var written = writeBuckets(SummaryTier.MINUTE, manifest, buckets.values(), replaced);
+		List<String> files = segments.stream().map(SegmentManifest.Segment::file).toList();
+		manifest.commit(files, Map.of(SummaryTier.MINUTE, fileNames(replaced)), Map.of(SummaryTier.MINUTE, written));
+		for (var file : files) {
+			Path path = writer.getDir().resolve(file);
+			Files.deleteIfExists(path);
+			Files.deleteIfExists(SegmentIndex.file(path));
+		}
+		for (var file : replaced) {
+			Files.deleteIfExists(file);
+		}
+		return segments.size();
+	}
+
+	/**
+	 * Rolls the minute summaries of every day before a cutoff into hour
+	 * summaries.
+	 * @param manifest The site's manifest.
+	 * @param cutoff The cutoff.
+	 * @return The number of minute summary files that were compacted.
+	 * @throws IOException If an error occurs while reading or writing data.
+	 */
+	private int compactMinuteSummaries(SegmentManifest manifest, Instant cutoff) throws IOException {
+		var files = manifest.getSummaryFiles(SummaryTier.MINUTE).stream()
+				.filter(p -> !SummaryTier.MINUTE.fileEnd(p.getFileName().toString()).isAfter(cutoff))
+				.toList();
+		if (files.isEmpty()) return 0;
+		Map<Instant, SummaryEntry> buckets = new TreeMap<>();
+		for (var file : files) {
+			SummaryFile.read(file, e -> addToBucket(buckets, SummaryTier.HOUR, e.bucketStart()).merge(e.aggregate()));
+		}
+		var replaced = new ArrayList<Path>();
+		var written = writeBuckets(SummaryTier.HOUR, manifest, buckets.values(), replaced);
+		manifest.commit(List.of(), Map.of(SummaryTier.MINUTE, fileNames(files), SummaryTier.HOUR, fileNames(replaced)), Map.of(SummaryTier.HOUR, written));
+		for (var file : files) {
+			Files.deleteIfExists(file);
+		}
+		for (var file : replaced) {
+			Files.deleteIfExists(file);
+		}
+		return files.size();
+	}
+
+	/**
+	 * Deletes the hour summaries of every month before a cutoff.
+	 * @param manifest The site's manifest.
+	 * @param cutoff The cutoff.
+	 * @return The number of hour summary files that were deleted.
+	 * @throws IOException If a file could not be deleted.
+	 */
+	private int deleteHourSummaries(SegmentManifest manifest, Instant cutoff) throws IOException {
+		var files = manifest.getSummaryFiles(SummaryTier.HOUR).stream()
+				.filter(p -> !SummaryTier.HOUR.fileEnd(p.getFileName().toString()).isAfter(cutoff))
+				.toList();
+		if (files.isEmpty()) return 0;
+		manifest.commit(List.of(), Map.of(SummaryTier.HOUR, fileNames(files)), Map.of());
+		for (var file : files) {
+			Files.deleteIfExists(file);
+		}
+		return files.size();
+	}
+
+	/**
+	 * Gets the aggregate of the bucket that a timestamp belongs to, creating
+	 * it if needed.
+	 * @param buckets The buckets, by their start.
+	 * @param tier The tier that the buckets belong to.
+	 * @param timestamp The timestamp.
+	 * @return The bucket's aggregate.
+	 */
+	private static PerformanceAggregate addToBucket(Map<Instant, SummaryEntry> buckets, SummaryTier tier, OffsetDateTime timestamp) {
+		var bucketStart = tier.truncate(timestamp);
+		return buckets.computeIfAbsent(bucketStart.toInstant(), k -> new SummaryEntry(bucketStart, new PerformanceAggregate())).aggregate();
+	}
+
+	/**
+	 * Merges buckets with the summary files of a tier, into new files for the
+	 * manifest's next generation.
+	 * @param tier The tier.
+	 * @param manifest The site's manifest.
+	 * @param buckets The buckets, ordered by their start.
+	 * @param replaced A list to add the existing summary files to that the new
+	 *                 files replace.
+	 * @return The names of the new files.
+	 * @throws IOException If a summary file could not be read or written.
+	 */
+	private static List<String> writeBuckets(SummaryTier tier, SegmentManifest manifest, Collection<SummaryEntry> buckets, List<Path> replaced) throws IOException {
+		Map<Instant, Path> existing = new HashMap<>();
+		for (var file : manifest.getSummaryFiles(tier)) {
+			existing.put(tier.fileStart(file.getFileName().toString()), file);
+		}
+		long generation = manifest.getGeneration() + 1;
+		Map<String, List<SummaryEntry>> byFile = new LinkedHashMap<>();
+		for (var bucket : buckets) {
+			byFile.computeIfAbsent(tier.fileName(bucket.bucketStart(), generation), f -> new ArrayList<>()).add(bucket);
+		}
+		for (var entry : byFile.entrySet()) {
+			Path source = existing.get(tier.fileStart(entry.getKey()));
+			SummaryFile.merge(source, tier.directory(manifest.getDir()).resolve(entry.getKey()), entry.getValue());
+			if (source != null) replaced.add(source);
+		}
+		return new ArrayList<>(byFile.keySet());
+	}
+
+	private static List<String> fileNames(List<Path> files) {
+		return files.stream().map(p -> p.getFileName().toString()).toList();
+	}
+}
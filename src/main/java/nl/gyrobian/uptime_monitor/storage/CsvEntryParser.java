@@ -0,0 +1,448 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.EntryRow;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A parser for the CSV record files that are written by the
+ * {@link CsvSegmentEncoder}, which reads the fields of each row directly from
+ * the file's bytes into a reused {@link EntryRow}, without creating any
+ * objects per row. Timestamps are decoded straight to epoch seconds. Rows that
+ * don't follow the layout that the encoder writes are parsed with Commons CSV
+ * instead, so any valid CSV row is still read correctly.
+ */
+class CsvEntryParser {
+	private static final long DAYS_0000_TO_1970 = 719528L;
+
+	private final Path path;
+	private final ByteBuffer buffer;
+	private final int limit;
+	private final EntryRow row = new EntryRow();
+	private final SegmentIndex.Builder index;
+	private int pos;
+
+	private CsvEntryParser(Path path, ByteBuffer buffer, SegmentIndex.Builder index) {
+		this.path = path;
+		this.buffer = buffer;
+		this.limit = buffer.limit();
+		this.index = index;
+	}
+
+	/**
+	 * Parses all entries in a CSV record file, skipping its header row.
+	 * Corrupted records are skipped, and an incomplete record at the end of
+	 * the file is ignored.
+	 * @param path The path to the file.
+	 * @param sink The sink to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	static void parse(Path path, EntrySink sink) throws IOException {
+		parse(path, sink, null);
+	}
+
+	/**
+	 * Parses all entries in a CSV record file, skipping its header row, and
+	 * adds each entry to an index of the file. Corrupted records are skipped,
+	 * and an incomplete record at the end of the file is ignored.
+	 * @param path The path to the file.
+	 * @param sink The sink to pass each entry to.
+	 * @param index The builder of the file's index, or null.
+	 * @throws IOException If the file could not be read.
+	 */
+	static void parse(Path path, EntrySink sink, SegmentIndex.Builder index) throws IOException {
+		ByteBuffer buffer;
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		var parser = new CsvEntryParser(path, buffer, index);
+		int headerEnd = parser.findRowEnd(0);
+		if (headerEnd < 0) return;
+		parser.pos = headerEnd;
+		parser.parseRows(sink);
+	}
+
+	/**
+	 * Parses the entries in part of a CSV record file, as found by its
+	 * {@link SegmentIndex}. Corrupted records are skipped, and an incomplete
+	 * record at the end of the part is ignored.
+	 * @param path The path to the file.
+	 * @param from The offset of the first row to parse.
+	 * @param to The offset at which to stop parsing, which must be the start
+	 *           of a row or the end of the file.
+	 * @param sink The sink to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	static void parse(Path path, long from, long to, EntrySink sink) throws IOException {
+		ByteBuffer buffer;
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(to, channel.size()));
+		}
+		var parser = new CsvEntryParser(path, buffer, null);
+		parser.pos = (int) Math.min(from, buffer.limit());
+		if (from == 0) {
+			int headerEnd = parser.findRowEnd(0);
+			if (headerEnd < 0) return;
+			parser.pos = headerEnd;
+		}
+		parser.parseRows(sink);
+	}
+
+	/**
+	 * Parses the entries in a CSV record file, starting at a given offset.
+	 * Only rows that end with a line break are parsed, since the last row may
+	 * still be in the middle of being written.
+	 * @param path The path to the file.
+	 * @param start The offset of the first row to parse, which must be the
+	 *              end of an earlier parse of the same file, or 0 to parse
+	 *              the whole file, skipping its header row.
+	 * @param sink The sink to pass each entry to.
+	 * @return The offset of the end of the last row that was parsed.
+	 * @throws IOException If the file could not be read.
+	 */
+	static long parse(Path path, long start, EntrySink sink) throws IOException {
+		ByteBuffer buffer;
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		int end = buffer.limit();
+		while (end > start && buffer.get(end - 1) != '\n') end--;
+		if (end <= start) return start;
+		var parser = new CsvEntryParser(path, buffer.limit(end), null);
+		if (start == 0) {
+			int headerEnd = parser.findRowEnd(0);
+			if (headerEnd < 0) return 0;
+			parser.pos = headerEnd;
+		} else {
+			parser.pos = (int) start;
+		}
+		return parser.parseRows(sink);
+	}
+
+	/**
+	 * Parses all rows from the current position.
+	 * @param sink The sink to pass each entry to.
+	 * @return The position of the end of the last complete row.
+	 * @throws IOException If a row could not be parsed.
+	 */
+	private int parseRows(EntrySink sink) throws IOException {
+		while (this.pos < this.limit) {
+			byte b = this.buffer.get(this.pos);
+			if (b == '\n') {
+				this.pos++;
+				continue;
+			}
+			if (b == '\r' && this.pos + 1 < this.limit && this.buffer.get(this.pos + 1) == '\n') {
+				this.pos += 2;
+				continue;
+			}
+			int rowStart = this.pos;
+			if (this.parseRow()) {
+				if (this.index != null) this.index.add(rowStart, this.row.epochMillis());
+				sink.accept(this.row);
+			} else {
+				int rowEnd = this.findRowEnd(rowStart);
+				if (rowEnd < 0) {
+					System.err.println("Ignoring incomplete record at the end of " + this.path);
+					return rowStart;
+				}
+				this.parseFallback(rowStart, rowEnd, sink);
+				this.pos = rowEnd;
+			}
+		}
+		return this.pos;
+	}
+
+	/**
+	 * Tries to parse the row at the current position. If successful, the
+	 * position is moved to the start of the next row.
+	 * @return True if the row was parsed, or false if it doesn't follow the
+	 * expected layout.
+	 */
+	private boolean parseRow() {
+		if (!this.parseTimestamp() || !this.expect(',')) return false;
+		if (!this.skipField() || !this.expect(',')) return false;
+		int responseCode = this.parseInt();
+		if (responseCode < 0 || !this.expect(',')) return false;
+		// Probes that got no response at all have an unknown response time of -1.
+		boolean unknown = this.peek() == '-';
+		if (unknown) this.pos++;
+		int responseTime = this.parseInt();
+		if (responseTime < 0 || (unknown && responseTime != 1) || !this.expect(',')) return false;
+		if (unknown) responseTime = -1;
+		if (!this.skipField()) return false;
+		this.row.setResponseCode(responseCode);
+		this.row.setResponseTime(responseTime);
+		if (this.expectRowEnd()) {
+			// Records written before phase timings were introduced end here.
+			for (int i = 0; i < 5; i++) this.row.setTiming(i, -1);
+			return true;
+		}
+		for (int i = 0; i < 5; i++) {
+			if (!this.expect(',')) return false;
+			long timing = -1;
+			if (this.pos < this.limit && this.buffer.get(this.pos) != ',' && !this.isRowEnd()) {
+				timing = this.parseLong();
+				if (timing < 0) return false;
+			}
+			this.row.setTiming(i, timing);
+		}
+		return this.expectRowEnd();
+	}
+
+	/**
+	 * Parses an ISO-8601 timestamp with an offset, in the form
+	 * yyyy-MM-ddTHH:mm[:ss[.fffffffff]](Z|+HH:MM[:SS]), as written by
+	 * {@link java.time.format.DateTimeFormatter#ISO_OFFSET_DATE_TIME}.
+	 * @return True if the timestamp was parsed into the row.
+	 */
+	private boolean parseTimestamp() {
+		int year = this.parseDigits(4);
+		if (year < 0 || !this.expect('-')) return false;
+		int month = this.parseDigits(2);
+		if (month < 1 || month > 12 || !this.expect('-')) return false;
+		int day = this.parseDigits(2);
+		if (day < 1 || day > lengthOfMonth(year, month) || !this.expect('T')) return false;
+		int hour = this.parseDigits(2);
+		if (hour < 0 || hour > 23 || !this.expect(':')) return false;
+		int minute = this.parseDigits(2);
+		if (minute < 0 || minute > 59) return false;
+		int second = 0;
+		int nano = 0;
+		if (this.peek() == ':') {
+			this.pos++;
+			second = this.parseDigits(2);
+			if (second < 0 || second > 59) return false;
+			if (this.peek() == '.') {
+				this.pos++;
+				int digits = 0;
+				while (this.pos < this.limit && isDigit(this.buffer.get(this.pos))) {
+					if (++digits > 9) return false;
+					nano = nano * 10 + (this.buffer.get(this.pos++) - '0');
+				}
+				if (digits == 0) return false;
+				for (int i = digits; i < 9; i++) nano *= 10;
+			}
+		}
+		int offsetSeconds;
+		byte sign = this.peek();
+		if (sign == 'Z') {
+			this.pos++;
+			offsetSeconds = 0;
+		} else if (sign == '+' || sign == '-') {
+			this.pos++;
+			int offsetHours = this.parseDigits(2);
+			if (offsetHours < 0 || offsetHours > 18 || !this.expect(':')) return false;
+			int offsetMinutes = this.parseDigits(2);
+			if (offsetMinutes < 0 || offsetMinutes > 59) return false;
+			int offsetSecs = 0;
+			if (this.peek() == ':') {
+				this.pos++;
+				offsetSecs = this.parseDigits(2);
+				if (offsetSecs < 0 || offsetSecs > 59) return false;
+			}
+			offsetSeconds = offsetHours * 3600 + offsetMinutes * 60 + offsetSecs;
+			if (offsetSeconds > 18 * 3600) return false;
+			if (sign == '-') offsetSeconds = -offsetSeconds;
+		} else {
+			return false;
+		}
+		long localEpochSecond = toEpochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+		this.row.setTimestamp(localEpochSecond - offsetSeconds, nano, offsetSeconds);
+		return true;
+	}
+
+	/**
+	 * Computes the epoch day of a date, in the same way as
+	 * {@link java.time.LocalDate#toEpochDay()}.
+	 */
+	private static long toEpochDay(int year, int month, int day) {
+		long y = year;
+		long total = 365 * y;
+		total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) total--;
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		return switch (month) {
+			case 2 -> isLeapYear(year) ? 29 : 28;
+			case 4, 6, 9, 11 -> 30;
+			default -> 31;
+		};
+	}
+
+	/**
+	 * Skips over a field, which may be quoted.
+	 * @return True if the field was skipped, or false if a quoted field is not
+	 * followed by a separator or the end of the row.
+	 */
+	private boolean skipField() {
+		if (this.peek() == '"') {
+			this.pos++;
+			while (this.pos < this.limit) {
+				if (this.buffer.get(this.pos++) == '"') {
+					if (this.peek() == '"') {
+						this.pos++;
+					} else {
+						return this.peek() == ',' || this.isRowEnd();
+					}
+				}
+			}
+			return false;
+		}
+		while (this.pos < this.limit) {
+			byte b = this.buffer.get(this.pos);
+			if (b == ',' || b == '\n' || b == '\r') return true;
+			if (b == '"') return false;
+			this.pos++;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a non-negative integer of one to nine digits.
+	 * @return The integer, or -1 if there is none.
+	 */
+	private int parseInt() {
+		int start = this.pos;
+		int value = 0;
+		while (this.pos < this.limit && isDigit(this.buffer.get(this.pos))) {
+			if (this.pos - start == 9) return -1;
+			value = value * 10 + (this.buffer.get(this.pos++) - '0');
+		}
+		return this.pos == start ? -1 : value;
+	}
+
+	/**
+	 * Parses a non-negative long of one to eighteen digits.
+	 * @return The long, or -1 if there is none.
+	 */
+	private long parseLong() {
+		int start = this.pos;
+		long value = 0;
+		while (this.pos < this.limit && isDigit(this.buffer.get(this.pos))) {
+			if (this.pos - start == 18) return -1;
+			value = value * 10 + (this.buffer.get(this.pos++) - '0');
+		}
+		return this.pos == start ? -1 : value;
+	}
+
+	/**
+	 * Parses exactly the given number of digits.
+	 * @return The parsed value, or -1 if there were not enough digits.
+	 */
+	private int parseDigits(int count) {
+		if (this.pos + count > this.limit) return -1;
+		int value = 0;
+		for (int i = 0; i < count; i++) {
+			byte b = this.buffer.get(this.pos + i);
+			if (!isDigit(b)) return -1;
+			value = value * 10 + (b - '0');
+		}
+		this.pos += count;
+		return value;
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private byte peek() {
+		return this.pos < this.limit ? this.buffer.get(this.pos) : 0;
+	}
+
+	private boolean expect(char c) {
+		if (this.peek() != c) return false;
+		this.pos++;
+		return true;
+	}
+
+	private boolean isRowEnd() {
+		byte b = this.peek();
+		return this.pos == this.limit || b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Moves past the line break at the end of a row.
+	 * @return True if the current position was at the end of a row.
+	 */
+	private boolean expectRowEnd() {
+		if (this.pos == this.limit) return true;
+		byte b = this.buffer.get(this.pos);
+		if (b == '\n') {
+			this.pos++;
+			return true;
+		}
+		if (b == '\r') {
+			this.pos++;
+			if (this.peek() == '\n') this.pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the end of the row that starts at the given position, which is
+	 * the first line break that's not inside a quoted value.
+	 * @param start The start of the row.
+	 * @return The position after the row's line break, the end of the file if
+	 * the last row has no line break, or -1 if the row ends inside a quoted
+	 * value.
+	 */
+	private int findRowEnd(int start) {
+		boolean quoted = false;
+		for (int i = start; i < this.limit; i++) {
+			byte b = this.buffer.get(i);
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (b == '\n' && !quoted) {
+				return i + 1;
+			}
+		}
+		return quoted ? -1 : this.limit;
+	}
+
+	/**
+	 * Parses a row with Commons CSV, for rows that don't follow the layout
+	 * that this parser expects.
+	 */
+	private void parseFallback(int start, int end, EntrySink sink) throws IOException {
+		// Only the first entry of the row can be found by reading from the row's start.
+		long offset = start;
+		byte[] bytes = new byte[end - start];
+		this.buffer.get(start, bytes);
+		String line = new String(bytes, StandardCharsets.UTF_8);
+		try (var parser = CSVParser.parse(line, CSVFormat.DEFAULT)) {
+			for (var record : parser) {
+				try {
+					var entry = MonitorEntry.fromCsvRecord(record);
+					if (this.index != null) {
+						this.index.add(offset, entry.timestamp().toInstant().toEpochMilli());
+						offset = -1;
+					}
+					sink.accept(entry);
+				} catch (IOException e) {
+					System.err.println("Skipping corrupted record: " + e.getMessage());
+				}
+			}
+		}
+	}
+}
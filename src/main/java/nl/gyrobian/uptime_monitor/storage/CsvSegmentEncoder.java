@@ -0,0 +1,80 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Encodes entries as rows of a CSV file, with the columns given by
+ * {@link MonitorEntry#CSV_HEADERS}.
+ */
+public class CsvSegmentEncoder implements SegmentEncoder {
+	private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT;
+
+	private final StringBuilder line = new StringBuilder(256);
+
+	@Override
+	public String extension() {
+		return ".csv";
+	}
+
+	@Override
+	public boolean canAppendTo(Path file) throws IOException {
+		try (var reader = Files.newBufferedReader(file)) {
+			return String.join(",", MonitorEntry.CSV_HEADERS).equals(reader.readLine());
+		}
+	}
+
+	/**
+	 * Finds the end of the last complete row. Rows end with a line break that
+	 * is not inside a quoted value, since captured response details may
+	 * contain line breaks themselves.
+	 */
+	@Override
+	public long validLength(Path file) throws IOException {
+		long validLength = 0;
+		long position = 0;
+		boolean quoted = false;
+		byte[] chunk = new byte[64 * 1024];
+		try (var in = Files.newInputStream(file)) {
+			int n;
+			while ((n = in.read(chunk)) > 0) {
+				for (int i = 0; i < n; i++) {
+					byte b = chunk[i];
+					if (b == '"') {
+						quoted = !quoted;
+					} else if (b == '\n' && !quoted) {
+						validLength = position + i + 1;
+					}
+				}
+				position += n;
+			}
+		}
+		return validLength;
+	}
+
+	@Override
+	public int writeHeader(OutputStream out) throws IOException {
+		this.line.setLength(0);
+		CSV_FORMAT.printRecord(this.line, (Object[]) MonitorEntry.CSV_HEADERS);
+		return this.writeLine(out);
+	}
+
+	@Override
+	public int write(MonitorEntry entry, OutputStream out) throws IOException {
+		this.line.setLength(0);
+		CSV_FORMAT.printRecord(this.line, entry.toCsvValues());
+		return this.writeLine(out);
+	}
+
+	private int writeLine(OutputStream out) throws IOException {
+		byte[] bytes = this.line.toString().getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+		return bytes.length;
+	}
+}
@@ -0,0 +1,239 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.DailyRollup;
+import nl.gyrobian.uptime_monitor.data.FocusInterval;
+import nl.gyrobian.uptime_monitor.data.Grouping;
+import nl.gyrobian.uptime_monitor.data.PerformanceAggregate;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Utility methods for reading and writing the daily rollups of a site, which
+ * are stored in the "daily" directory under the site's directory, with one CSV
+ * file per day. Each file has a row for the whole day, a row for each focus
+ * interval that the rollup was built for, and a row for every group of each
+ * grouping that the rollup was built for, like "HOUR_OF_DAY 07:00".
+ */
+public final class DailyRollups {
+	/**
+	 * The headers of the columns in a rollup file.
+	 */
+	public static final String[] CSV_HEADERS = Stream.concat(
+			Stream.of("Scope"),
+			Stream.of(PerformanceAggregate.CSV_HEADERS)
+	).toArray(String[]::new);
+
+	private static final String DAY_SCOPE = "Day";
+
+	/**
+	 * How long after the end of a UTC day entries for it may still be
+	 * written, since probes are recorded once they're complete.
+	 */
+	private static final Duration CLOSE_DELAY = Duration.ofHours(1);
+
+	private DailyRollups() {}
+
+	/**
+	 * @param siteDir The site's directory.
+	 * @return The directory of the site's daily rollups.
+	 */
+	public static Path directory(Path siteDir) {
+		return siteDir.resolve("daily");
+	}
+
+	private static Path file(Path siteDir, LocalDate date) {
+		return directory(siteDir).resolve(date + ".csv");
+	}
+
+	/**
+	 * @param siteDir The site's directory.
+	 * @param date The day.
+	 * @return The size of the day's rollup file, in bytes.
+	 * @throws IOException If the size could not be read.
+	 */
+	public static long size(Path siteDir, LocalDate date) throws IOException {
+		return Files.size(file(siteDir, date));
+	}
+
+	/**
+	 * Gets the last day that is over, after which no more entries will be
+	 * written for it. Entries are written with UTC timestamps.
+	 * @param now The current time.
+	 * @return The last day that is over.
+	 */
+	public static LocalDate lastClosedDay(Instant now) {
+		return now.minus(CLOSE_DELAY).atOffset(ZoneOffset.UTC).toLocalDate().minusDays(1);
+	}
+
+	/**
+	 * Reads the rollup of a day. A corrupted rollup is treated as missing.
+	 * @param siteDir The site's directory.
+	 * @param date The day.
+	 * @return The rollup, or null if there is none.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static DailyRollup read(Path siteDir, LocalDate date) throws IOException {
+		Path path = file(siteDir, date);
+		if (Files.notExists(path)) return null;
+		Map<String, PerformanceAggregate> scopes = new LinkedHashMap<>();
+		try (var reader = Files.newBufferedReader(path)) {
+			boolean isHeader = true;
+			for (var record : CSVFormat.DEFAULT.parse(reader)) {
+				if (isHeader) {
+					isHeader = false;
+					continue;
+				}
+				if (record.size() < CSV_HEADERS.length) {
+					// Rollups written before all of the current columns were introduced are rebuilt.
+					System.err.println("Rebuilding outdated daily rollup " + path);
+					return null;
+				}
+				scopes.put(record.get(0), PerformanceAggregate.fromCsvRecord(record, 1));
+			}
+			return fromScopes(date, scopes);
+		} catch (IOException | DateTimeParseException | IllegalArgumentException | IllegalStateException e) {
+			System.err.println("Ignoring corrupted daily rollup " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Builds a rollup from the aggregates of its scopes, as they're stored in
+	 * a rollup file.
+	 * @param date The day of the rollup.
+	 * @param scopes The aggregate of each scope.
+	 * @return The rollup, or null if there's no aggregate for the whole day.
+	 * @throws IllegalArgumentException If a scope is invalid.
+	 * @throws DateTimeParseException If the time of a focus interval is
+	 * invalid.
+	 */
+	static DailyRollup fromScopes(LocalDate date, Map<String, PerformanceAggregate> scopes) {
+		PerformanceAggregate aggregate = null;
+		Map<FocusInterval, PerformanceAggregate> focusIntervals = new LinkedHashMap<>();
+		Map<Grouping, PerformanceAggregate[]> groups = new EnumMap<>(Grouping.class);
+		for (var entry : scopes.entrySet()) {
+			String scope = entry.getKey();
+			int separator = scope.indexOf(' ');
+			if (scope.equals(DAY_SCOPE)) {
+				aggregate = entry.getValue();
+			} else if (separator > 0) {
+				var grouping = Grouping.valueOf(scope.substring(0, separator));
+				int bucket = grouping.bucketOf(scope.substring(separator + 1));
+				if (bucket < 0) throw new IllegalArgumentException("Invalid scope: " + scope);
+				groups.computeIfAbsent(grouping, g -> new PerformanceAggregate[g.bucketCount()])[bucket] = entry.getValue();
+			} else {
+				focusIntervals.put(parseScope(scope), entry.getValue());
+			}
+		}
+		if (aggregate == null) return null;
+		Map<Grouping, List<PerformanceAggregate>> groupLists = new EnumMap<>(Grouping.class);
+		for (var entry : groups.entrySet()) {
+			List<PerformanceAggregate> list = new ArrayList<>(Arrays.asList(entry.getValue()));
+			list.replaceAll(a -> a == null ? new PerformanceAggregate() : a);
+			groupLists.put(entry.getKey(), list);
+		}
+		return new DailyRollup(date, aggregate, focusIntervals, groupLists);
+	}
+
+	/**
+	 * Writes the rollup of a day, replacing any existing rollup atomically.
+	 * @param siteDir The site's directory.
+	 * @param rollup The rollup to write.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void write(Path siteDir, DailyRollup rollup) throws IOException {
+		Path path = file(siteDir, rollup.date());
+		Files.createDirectories(path.getParent());
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (var writer = Files.newBufferedWriter(tmp)) {
+			var printer = CSVFormat.DEFAULT.print(writer);
+			printer.printRecord((Object[]) CSV_HEADERS);
+			for (var values : toCsvRows(rollup)) {
+				printer.printRecord(values);
+			}
+			printer.flush();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Deletes the rollups of every day that ends before a cutoff.
+	 * @param siteDir The site's directory.
+	 * @param cutoff The cutoff.
+	 * @return The number of rollups that were deleted.
+	 * @throws IOException If a file could not be deleted.
+	 */
+	public static int deleteBefore(Path siteDir, Instant cutoff) throws IOException {
+		Path dir = directory(siteDir);
+		if (Files.notExists(dir)) return 0;
+		int count = 0;
+		try (var s = Files.list(dir)) {
+			for (var path : s.toList()) {
+				String name = path.getFileName().toString();
+				if (!name.endsWith(".csv")) continue;
+				LocalDate date;
+				try {
+					date = LocalDate.parse(name.substring(0, name.length() - 4));
+				} catch (DateTimeParseException e) {
+					continue;
+				}
+				if (!date.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC).isAfter(cutoff)) {
+					Files.deleteIfExists(path);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the rows of a rollup, as they're stored in a rollup file.
+	 * @param rollup The rollup.
+	 * @return The values of each row, in the order of {@link #CSV_HEADERS}.
+	 */
+	static List<Object[]> toCsvRows(DailyRollup rollup) {
+		List<Object[]> rows = new ArrayList<>();
+		rows.add(toCsvValues(DAY_SCOPE, rollup.aggregate()));
+		for (var entry : rollup.focusIntervals().entrySet()) {
+			rows.add(toCsvValues(entry.getKey().from() + "-" + entry.getKey().to(), entry.getValue()));
+		}
+		for (var entry : rollup.groups().entrySet()) {
+			var grouping = entry.getKey();
+			for (int i = 0; i < grouping.bucketCount(); i++) {
+				rows.add(toCsvValues(grouping.name() + " " + grouping.bucketName(i), entry.getValue().get(i)));
+			}
+		}
+		return rows;
+	}
+
+	private static Object[] toCsvValues(String scope, PerformanceAggregate aggregate) {
+		Object[] aggregateValues = aggregate.toCsvValues();
+		Object[] values = new Object[1 + aggregateValues.length];
+		values[0] = scope;
+		System.arraycopy(aggregateValues, 0, values, 1, aggregateValues.length);
+		return values;
+	}
+
+	private static FocusInterval parseScope(String scope) {
+		String[] parts = scope.split("-");
+		if (parts.length != 2) throw new IllegalArgumentException("Invalid scope: " + scope);
+		return new FocusInterval(LocalTime.parse(parts[0]), LocalTime.parse(parts[1]));
+	}
+}
@@ -0,0 +1,34 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.EntryRow;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+
+/**
+ * Receives the entries that a {@link SegmentReader} reads. Unless a sink
+ * needs complete entries, readers pass the fields of each entry in a reused
+ * {@link EntryRow}, which avoids creating any objects per entry.
+ */
+public interface EntrySink {
+	/**
+	 * @return True if the sink needs complete entries, including their URL
+	 * and response details.
+	 */
+	boolean needsEntries();
+
+	/**
+	 * Accepts a complete entry.
+	 * @param entry The entry.
+	 */
+	void accept(MonitorEntry entry);
+
+	/**
+	 * Accepts the fields of an entry. The row is reused for the next entry,
+	 * so it must not be kept. By default, the row is passed on as an entry,
+	 * without its URL and response details, so sinks that don't need complete
+	 * entries should override this to avoid creating an entry for each row.
+	 * @param row The fields of the entry.
+	 */
+	default void accept(EntryRow row) {
+		this.accept(row.toEntry());
+	}
+}
@@ -0,0 +1,161 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.config.RecorderConfig;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import nl.gyrobian.uptime_monitor.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recorder sits between probing and storage. Probes hand their results to
+ * the recorder's queue, and a single writer thread drains the queue in
+ * batches, appending each result to its site's record file. Written data is
+ * flushed and synced to disk periodically, instead of after every result, so
+ * disk latency stays off the probe path and many small writes are grouped
+ * into a few large ones.
+ */
+public class MeasurementRecorder implements Closeable {
+	private final BlockingQueue<PendingEntry> queue;
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final long fsyncIntervalNanos;
+	private final long maxFileSize;
+	private final RecordFormat format;
+	private final List<SiteRecordWriter> writers = new CopyOnWriteArrayList<>();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	/**
+	 * Constructs and starts the recorder.
+	 * @param config The recorder configuration.
+	 * @param maxFileSize The maximum size of a record file, in bytes.
+	 */
+	public MeasurementRecorder(RecorderConfig config, long maxFileSize) {
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+		Metrics.registerQueue(this.queue::size, Math.max(1, config.getQueueCapacity()));
+		this.batchSize = Math.max(1, config.getBatchSize());
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getFlushInterval()));
+		this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFsyncInterval());
+		this.maxFileSize = maxFileSize;
+		this.format = RecordFormat.valueOf(config.getFormat().trim().toUpperCase());
+		this.worker = new Thread(this::run, "measurement-recorder");
+		this.worker.start();
+	}
+
+	/**
+	 * Opens the record writer for a site. This should be done once for each
+	 * site, before any of its results are recorded.
+	 * @param siteName The name of the site.
+	 * @return The writer to pass to {@link #record(SiteRecordWriter, MonitorEntry)}.
+	 * @throws IOException If the site's record file could not be opened.
+	 */
+	public SiteRecordWriter open(String siteName) throws IOException {
+		var writer = new SiteRecordWriter(siteName, this.maxFileSize, this.format);
+		this.writers.add(writer);
+		return writer;
+	}
+
+	/**
+	 * @return The writers of all sites that have been opened.
+	 */
+	public List<SiteRecordWriter> getWriters() {
+		return List.copyOf(this.writers);
+	}
+
+	/**
+	 * Hands a result to the recorder, to be written by the writer thread. This
+	 * never blocks.
+	 * @param writer The writer of the site that the result belongs to.
+	 * @param entry The result.
+	 * @return True if the result was accepted, or false if the queue is full
+	 * or the recorder was closed.
+	 */
+	public boolean record(SiteRecordWriter writer, MonitorEntry entry) {
+		return this.running && this.queue.offer(new PendingEntry(writer, entry));
+	}
+
+	/**
+	 * The main loop of the writer thread.
+	 */
+	private void run() {
+		List<PendingEntry> batch = new ArrayList<>(this.batchSize);
+		long lastFlush = System.nanoTime();
+		long lastSync = lastFlush;
+		while (this.running || !this.queue.isEmpty()) {
+			try {
+				long wait = Math.max(0, this.flushIntervalNanos - (System.nanoTime() - lastFlush));
+				var first = this.queue.poll(wait, TimeUnit.NANOSECONDS);
+				if (first != null) {
+					batch.add(first);
+					this.queue.drainTo(batch, this.batchSize - 1);
+					this.write(batch);
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				// Keep draining until the recorder is closed and the queue is empty.
+			}
+			long now = System.nanoTime();
+			if (now - lastFlush >= this.flushIntervalNanos) {
+				boolean sync = this.fsyncIntervalNanos > 0 && now - lastSync >= this.fsyncIntervalNanos;
+				this.flushAll(sync);
+				lastFlush = now;
+				if (sync) lastSync = now;
+			}
+		}
+		for (var writer : this.writers) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void write(List<PendingEntry> batch) {
+		for (var pending : batch) {
+			try {
+				pending.writer().append(pending.entry());
+			} catch (IOException e) {
+				System.err.println("Could not write record for site " + pending.writer().getSiteName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void flushAll(boolean sync) {
+		for (var writer : this.writers) {
+			try {
+				if (sync) {
+					writer.sync();
+				} else {
+					writer.flush();
+				}
+			} catch (IOException e) {
+				System.err.println("Could not flush records for site " + writer.getSiteName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting results, and waits for the writer thread to write all
+	 * remaining results and close every site's record file.
+	 * @throws IOException If interrupted while waiting.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.running = false;
+		try {
+			this.worker.join();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for the recorder to finish.", e);
+		}
+	}
+
+	private record PendingEntry(SiteRecordWriter writer, MonitorEntry entry) {}
+}
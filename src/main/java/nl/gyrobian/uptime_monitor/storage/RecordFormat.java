@@ -0,0 +1,32 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The formats in which site records can be stored.
+ */
+public enum RecordFormat {
+	/**
+	 * Human-readable CSV files, which include response details.
+	 */
+	CSV,
+	/**
+	 * Fixed-width binary segments, which are much faster to read, but don't
+	 * include response details.
+	 */
+	BINARY;
+
+	/**
+	 * Creates an encoder for this format, for a single site.
+	 * @param dir The site's directory.
+	 * @return The encoder.
+	 * @throws IOException If the encoder could not be initialized.
+	 */
+	public SegmentEncoder createEncoder(Path dir) throws IOException {
+		return switch (this) {
+			case CSV -> new CsvSegmentEncoder();
+			case BINARY -> new BinarySegmentEncoder(dir);
+		};
+	}
+}
@@ -0,0 +1,63 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Encodes entries into the segment files of a single site, in a particular
+ * format.
+ */
+public interface SegmentEncoder {
+	/**
+	 * @return The file extension of segments in this format, like ".csv".
+	 */
+	String extension();
+
+	/**
+	 * Determines if new entries may be appended to an existing segment.
+	 * @param file The existing segment.
+	 * @return True if the segment was written in this exact format.
+	 * @throws IOException If the segment could not be read.
+	 */
+	boolean canAppendTo(Path file) throws IOException;
+
+	/**
+	 * Determines the length of the valid part of an existing segment, which
+	 * excludes any incomplete record that was torn by a crash while writing.
+	 * @param file The existing segment, which this encoder can append to.
+	 * @return The length of the valid part of the segment, in bytes.
+	 * @throws IOException If the segment could not be read.
+	 */
+	long validLength(Path file) throws IOException;
+
+	/**
+	 * Writes the header that a new segment starts with.
+	 * @param out The stream to write to.
+	 * @return The number of bytes that were written.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	int writeHeader(OutputStream out) throws IOException;
+
+	/**
+	 * Writes a single entry. Encoders may hold on to entries until they are
+	 * flushed, to write them together.
+	 * @param entry The entry to write.
+	 * @param out The stream to write to.
+	 * @return The number of bytes that were written to the stream.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	int write(MonitorEntry entry, OutputStream out) throws IOException;
+
+	/**
+	 * Writes any entries that the encoder is holding on to.
+	 * @param out The stream to write to.
+	 * @return The number of bytes that were written to the stream.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	default int flush(OutputStream out) throws IOException {
+		return 0;
+	}
+}
@@ -0,0 +1,175 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sparse index of a segment file that is no longer written to, which is
+ * stored next to it, with the {@value #EXTENSION} extension. The index splits
+ * the segment into chunks of about {@value #CHUNK_SIZE} entries, and holds the
+ * offset of each chunk, along with the earliest and latest timestamp in it.
+ * Reads of a range of time can then skip every chunk that has no entries in
+ * the range, even if entries are slightly out of order.
+ * <p>
+ *     The index file starts with the magic number, the format version, and
+ *     the size of the segment that it was built for, so an index of a segment
+ *     that has changed since is ignored. It's followed by the number of
+ *     chunks, and the offset, earliest and latest timestamp of each chunk.
+ * </p>
+ */
+final class SegmentIndex {
+	static final String EXTENSION = ".idx";
+	static final int CHUNK_SIZE = 1024;
+	private static final int MAGIC = 0x554D4958; // "UMIX"
+	private static final short VERSION = 1;
+
+	private final long segmentSize;
+	private final long[] offsets;
+	private final long[] firstMillis;
+	private final long[] lastMillis;
+
+	private SegmentIndex(long segmentSize, long[] offsets, long[] firstMillis, long[] lastMillis) {
+		this.segmentSize = segmentSize;
+		this.offsets = offsets;
+		this.firstMillis = firstMillis;
+		this.lastMillis = lastMillis;
+	}
+
+	/**
+	 * @param segment The path to a segment file.
+	 * @return The path to the segment's index file.
+	 */
+	static Path file(Path segment) {
+		return segment.resolveSibling(segment.getFileName() + EXTENSION);
+	}
+
+	/**
+	 * Loads the index of a segment. An index that is corrupted, or that was
+	 * built for a different version of the segment, is treated as missing.
+	 * @param segment The path to the segment file.
+	 * @return The index, or null if there is none.
+	 * @throws IOException If the segment's size could not be read.
+	 */
+	static SegmentIndex load(Path segment) throws IOException {
+		Path path = file(segment);
+		if (Files.notExists(path)) return null;
+		long size = Files.size(segment);
+		try (var in = new DataInputStream(Files.newInputStream(path))) {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION || in.readLong() != size) return null;
+			int count = in.readInt();
+			if (count < 0) return null;
+			long[] offsets = new long[count];
+			long[] firstMillis = new long[count];
+			long[] lastMillis = new long[count];
+			for (int i = 0; i < count; i++) {
+				offsets[i] = in.readLong();
+				firstMillis[i] = in.readLong();
+				lastMillis[i] = in.readLong();
+			}
+			return new SegmentIndex(size, offsets, firstMillis, lastMillis);
+		} catch (IOException e) {
+			System.err.println("Ignoring corrupted segment index " + path + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Saves this index next to its segment, replacing any existing index
+	 * atomically.
+	 * @param segment The path to the segment file.
+	 * @throws IOException If the file could not be written.
+	 */
+	void save(Path segment) throws IOException {
+		Path path = file(segment);
+		Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try (var out = new DataOutputStream(Files.newOutputStream(tmp))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(this.segmentSize);
+			out.writeInt(this.offsets.length);
+			for (int i = 0; i < this.offsets.length; i++) {
+				out.writeLong(this.offsets[i]);
+				out.writeLong(this.firstMillis[i]);
+				out.writeLong(this.lastMillis[i]);
+			}
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Finds the part of the segment that holds all entries within a range of
+	 * time, which starts at the first chunk and ends after the last chunk
+	 * with any entries in the range.
+	 * @param startMillis The start of the range, inclusive, in epoch millis,
+	 *                    or null for no start.
+	 * @param endMillis The end of the range, exclusive, in epoch millis, or
+	 *                  null for no end.
+	 * @return The start and end offset of the part, or null if no entries are
+	 * in the range.
+	 */
+	long[] find(Long startMillis, Long endMillis) {
+		int first = -1;
+		int last = -1;
+		for (int i = 0; i < this.offsets.length; i++) {
+			if (startMillis != null && this.lastMillis[i] < startMillis) continue;
+			if (endMillis != null && this.firstMillis[i] >= endMillis) continue;
+			if (first < 0) first = i;
+			last = i;
+		}
+		if (first < 0) return null;
+		long end = last + 1 < this.offsets.length ? this.offsets[last + 1] : this.segmentSize;
+		return new long[]{this.offsets[first], end};
+	}
+
+	/**
+	 * Builds the index of a segment while it's read from start to end.
+	 */
+	static class Builder {
+		private long[] offsets = new long[16];
+		private long[] firstMillis = new long[16];
+		private long[] lastMillis = new long[16];
+		private int count = 0;
+		private int entriesInChunk = 0;
+
+		/**
+		 * Adds the next entry of the segment.
+		 * @param offset The offset from which the segment can be read to get
+		 *               this entry and all entries after it, or -1 if the
+		 *               segment can't be read from this entry, in which case
+		 *               it's added to the current chunk.
+		 * @param millis The entry's timestamp, in epoch millis.
+		 */
+		void add(long offset, long millis) {
+			if (this.count == 0 || (this.entriesInChunk >= CHUNK_SIZE && offset >= 0)) {
+				if (offset < 0) return;
+				if (this.count == this.offsets.length) {
+					this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+					this.firstMillis = Arrays.copyOf(this.firstMillis, this.count * 2);
+					this.lastMillis = Arrays.copyOf(this.lastMillis, this.count * 2);
+				}
+				this.offsets[this.count] = offset;
+				this.firstMillis[this.count] = millis;
+				this.lastMillis[this.count] = millis;
+				this.count++;
+				this.entriesInChunk = 0;
+			}
+			int chunk = this.count - 1;
+			if (millis < this.firstMillis[chunk]) this.firstMillis[chunk] = millis;
+			if (millis > this.lastMillis[chunk]) this.lastMillis[chunk] = millis;
+			this.entriesInChunk++;
+		}
+
+		/**
+		 * @param segmentSize The size of the segment that was read.
+		 * @return The index.
+		 */
+		SegmentIndex build(long segmentSize) {
+			return new SegmentIndex(segmentSize, Arrays.copyOf(this.offsets, this.count), Arrays.copyOf(this.firstMillis, this.count), Arrays.copyOf(this.lastMillis, this.count));
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A small index of the segment files in a site's directory, stored as
+ * "manifest.json". For each segment, it holds the timestamps of the first and
+ * last entries, the number of entries, and the size of the file. The manifest
+ * is only written by the site's {@link SiteRecordWriter}, whenever it rolls
+ * over to a new segment or is closed, so the statistics of the last segment
+ * may lag behind while it is still being written to. Old segments are removed
+ * from the manifest by the {@link Compactor}, which shares the writer's
+ * instance, so all access to the list of segments is synchronized.
+ * <p>
+ *     The manifest also lists the site's summary files, since the compactor
+ *     replaces segments and summary files in a single save of the manifest.
+ *     Readers that take both from the same manifest therefore never count
+ *     compacted data twice, and files that aren't listed are left over from
+ *     an interrupted compaction. Each such save increments the manifest's
+ *     generation, so that readers can tell if data was compacted while they
+ *     were reading it.
+ * </p>
+ * <p>
+ *     Segments that were written before manifests were introduced have
+ *     unknown statistics, which are stored as -1. Manifests of version 1
+ *     don't list summary files.
+ * </p>
+ */
+public class SegmentManifest {
+	public static final String FILE_NAME = "manifest.json";
+	private static final int VERSION = 2;
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final Path dir;
+	private final List<Segment> segments;
+	private long generation;
+	/**
+	 * The names of the summary files of each tier, or null if the manifest
+	 * was written before summary files were listed in it.
+	 */
+	private Map<SummaryTier, List<String>> summaries;
+
+	/**
+	 * Information about a single segment file.
+	 * @param file The name of the segment file, within the site's directory.
+	 * @param firstTimestamp The timestamp of the first entry, in epoch millis,
+	 *                       or -1 if unknown.
+	 * @param lastTimestamp The timestamp of the last entry, in epoch millis, or
+	 *                      -1 if unknown.
+	 * @param recordCount The number of entries, or -1 if unknown.
+	 * @param byteSize The size of the file, in bytes.
+	 */
+	public record Segment(String file, long firstTimestamp, long lastTimestamp, long recordCount, long byteSize) {
+		/**
+		 * @return The time at which the segment was created, according to its
+		 * file name, in epoch millis, or -1 if the file name is not a
+		 * timestamp.
+		 */
+		public long createdAt() {
+			try {
+				return LocalDateTime.parse(file.split("\\.")[0], SiteRecordWriter.FILE_TIMESTAMP_FORMATTER)
+						.toInstant(ZoneOffset.UTC)
+						.toEpochMilli();
+			} catch (DateTimeParseException e) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * The contents of a manifest file.
+	 */
+	private record Contents(int version, long generation, List<Segment> segments, Map<SummaryTier, List<String>> summaries) {}
+
+	private SegmentManifest(Path dir, List<Segment> segments, long generation, Map<SummaryTier, List<String>> summaries) {
+		this.dir = dir;
+		this.segments = segments;
+		this.generation = generation;
+		this.summaries = summaries;
+	}
+
+	/**
+	 * Loads the manifest of a site's directory.
+	 * @param dir The site's directory.
+	 * @return The manifest, or null if the directory has no manifest.
+	 * @throws IOException If the manifest could not be read.
+	 */
+	public static SegmentManifest load(Path dir) throws IOException {
+		Path file = dir.resolve(FILE_NAME);
+		if (Files.notExists(file)) return null;
+		var contents = MAPPER.readValue(file.toFile(), Contents.class);
+		if (contents.version() < 1 || contents.version() > VERSION) throw new IOException("Unsupported manifest version " + contents.version() + " in " + file);
+		Map<SummaryTier, List<String>> summaries = null;
+		if (contents.summaries() != null) {
+			summaries = new EnumMap<>(SummaryTier.class);
+			for (var entry : contents.summaries().entrySet()) {
+				summaries.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+		}
+		return new SegmentManifest(dir, new ArrayList<>(contents.segments()), contents.generation(), summaries);
+	}
+
+	/**
+	 * Builds a manifest for a site's directory by listing the segment files in
+	 * it. The first and last timestamps and record counts of the segments are
+	 * unknown.
+	 * @param dir The site's directory.
+	 * @return The manifest.
+	 * @throws IOException If the directory could not be listed.
+	 */
+	public static SegmentManifest scan(Path dir) throws IOException {
+		try (var s = Files.list(dir)) {
+			var segments = s.filter(Files::isRegularFile)
+					.filter(SegmentManifest::isSegmentFile)
+					.sorted(Comparator.comparing(Path::getFileName))
+					.map(p -> {
+						long size;
+						try {
+							size = Files.size(p);
+						} catch (IOException e) {
+							size = -1;
+						}
+						return new Segment(p.getFileName().toString(), -1, -1, -1, size);
+					})
+					.collect(Collectors.toList());
+			return new SegmentManifest(dir, segments, 0, null);
+		}
+	}
+
+	/**
+	 * Loads the manifest of a site's directory, or builds one by listing the
+	 * directory if there is no manifest yet.
+	 * @param dir The site's directory.
+	 * @return The manifest.
+	 * @throws IOException If the manifest could not be read or built.
+	 */
+	public static SegmentManifest loadOrScan(Path dir) throws IOException {
+		var manifest = load(dir);
+		return manifest != null ? manifest : scan(dir);
+	}
+
+	/**
+	 * Checks if a path is a segment file, in any of the supported formats.
+	 * @param path The path to check.
+	 * @return True if the path is a segment file.
+	 */
+	public static boolean isSegmentFile(Path path) {
+		String name = path.getFileName().toString();
+		return name.endsWith(".csv") || name.endsWith(BinarySegment.EXTENSION);
+	}
+
+	public Path getDir() {
+		return this.dir;
+	}
+
+	/**
+	 * @return A copy of the segments, ordered from oldest to newest.
+	 */
+	public synchronized List<Segment> getSegments() {
+		return List.copyOf(this.segments);
+	}
+
+	/**
+	 * @return The newest segment, or null if there are no segments.
+	 */
+	public synchronized Segment getLast() {
+		return this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+	}
+
+	/**
+	 * Replaces the newest segment.
+	 * @param segment The new information for the newest segment.
+	 */
+	synchronized void setLast(Segment segment) {
+		this.segments.set(this.segments.size() - 1, segment);
+	}
+
+	/**
+	 * Adds a new segment, which becomes the newest one.
+	 * @param segment The segment to add.
+	 */
+	synchronized void add(Segment segment) {
+		this.segments.add(segment);
+	}
+
+	/**
+	 * @return The generation of this manifest, which is incremented whenever
+	 * a step of compaction is committed.
+	 */
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Gets the summary files of a tier. If the manifest doesn't list summary
+	 * files yet, the files in the tier's directory are used, except for any
+	 * that were written by a compaction which was interrupted before it could
+	 * list them.
+	 * @param tier The tier.
+	 * @return The summary files, ordered from oldest to newest.
+	 * @throws IOException If the tier's directory could not be listed.
+	 */
+	public synchronized List<Path> getSummaryFiles(SummaryTier tier) throws IOException {
+		if (this.summaries == null) {
+			return tier.listFiles(this.dir).stream()
+					.filter(p -> SummaryTier.generation(p.getFileName().toString()) == 0)
+					.toList();
+		}
+		Path tierDir = tier.directory(this.dir);
+		return this.summaries.getOrDefault(tier, List.of()).stream()
+				.sorted()
+				.map(tierDir::resolve)
+				.toList();
+	}
+
+	/**
+	 * Commits a step of compaction, by removing the compacted segments and
+	 * replacing summary files, and then saving the manifest. The generation is
+	 * incremented, and readers see either all or none of the step. The newest
+	 * segment is never removed.
+	 * @param segments The file names of the segments that were compacted.
+	 * @param removedSummaries The names of the summary files that were
+	 *                         compacted or replaced, by tier.
+	 * @param addedSummaries The names of the summary files that were written,
+	 *                       by tier.
+	 * @throws IOException If the manifest could not be saved.
+	 */
+	synchronized void commit(Collection<String> segments, Map<SummaryTier, ? extends Collection<String>> removedSummaries, Map<SummaryTier, ? extends Collection<String>> addedSummaries) throws IOException {
+		if (this.summaries == null) {
+			Map<SummaryTier, List<String>> listed = new EnumMap<>(SummaryTier.class);
+			for (var tier : SummaryTier.values()) {
+				listed.put(tier, this.getSummaryFiles(tier).stream().map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+			}
+			this.summaries = listed;
+		}
+		var last = this.getLast();
+		this.segments.removeIf(s -> s != last && segments.contains(s.file()));
+		removedSummaries.forEach((tier, files) -> this.summaries.computeIfAbsent(tier, t -> new ArrayList<>()).removeAll(files));
+		addedSummaries.forEach((tier, files) -> this.summaries.computeIfAbsent(tier, t -> new ArrayList<>()).addAll(files));
+		this.generation++;
+		this.save();
+	}
+
+	/**
+	 * Selects the segments which may contain entries within a time range.
+	 * Segments with known timestamps are skipped if they lie entirely outside
+	 * the range. For segments with unknown timestamps, the creation time of a
+	 * segment is used as its lower bound, and the creation time of the next
+	 * segment as its upper bound. The newest segment is never skipped because
+	 * of its last timestamp, since it may still be growing.
+	 * @param startMillis The start of the range, inclusive, in epoch millis,
+	 *                    or null for no start.
+	 * @param endMillis The end of the range, exclusive, in epoch millis, or
+	 *                  null for no end.
+	 * @return The selected segments, ordered from oldest to newest.
+	 */
+	public synchronized List<Segment> select(Long startMillis, Long endMillis) {
+		List<Segment> selected = new ArrayList<>();
+		for (int i = 0; i < this.segments.size(); i++) {
+			var segment = this.segments.get(i);
+			boolean isLast = i == this.segments.size() - 1;
+			if (!isLast && segment.recordCount() == 0) continue;
+			long lower = segment.firstTimestamp() >= 0 ? segment.firstTimestamp() : segment.createdAt();
+			long upper = this.upperBound(i);
+			if (endMillis != null && lower >= endMillis) continue;
+			if (startMillis != null && upper < startMillis) continue;
+			selected.add(segment);
+		}
+		return selected;
+	}
+
+	/**
+	 * Selects the oldest segments whose entries are all older than a cutoff,
+	 * up to the first segment that may contain a newer entry. The newest
+	 * segment is never selected, since it may still be growing.
+	 * @param cutoffMillis The cutoff, in epoch millis.
+	 * @return The selected segments, ordered from oldest to newest.
+	 */
+	public synchronized List<Segment> selectBefore(long cutoffMillis) {
+		List<Segment> selected = new ArrayList<>();
+		for (int i = 0; i < this.segments.size() - 1; i++) {
+			if (this.upperBound(i) >= cutoffMillis) break;
+			selected.add(this.segments.get(i));
+		}
+		return selected;
+	}
+
+	/**
+	 * Gets an upper bound for the timestamps of the entries in a segment. If
+	 * the segment's last timestamp is unknown, the creation time of the next
+	 * segment is used.
+	 * @param index The index of the segment.
+	 * @return The upper bound, in epoch millis, which is
+	 * {@link Long#MAX_VALUE} for the newest segment or if no bound is known.
+	 */
+	private long upperBound(int index) {
+		if (index == this.segments.size() - 1) return Long.MAX_VALUE;
+		var segment = this.segments.get(index);
+		if (segment.lastTimestamp() >= 0) return segment.lastTimestamp();
+		// Entries are written in order, so a segment can't contain entries from after the next one was created. The file names have a resolution of seconds.
+		long nextCreatedAt = this.segments.get(index + 1).createdAt();
+		return nextCreatedAt >= 0 ? nextCreatedAt + 1000 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Saves the manifest, by writing it to a temporary file which then
+	 * atomically replaces the current manifest file.
+	 * @throws IOException If the manifest could not be saved.
+	 */
+	synchronized void save() throws IOException {
+		Path tmp = this.dir.resolve(FILE_NAME + ".tmp");
+		MAPPER.writeValue(tmp.toFile(), new Contents(VERSION, this.generation, this.segments, this.summaries));
+		Files.move(tmp, this.dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
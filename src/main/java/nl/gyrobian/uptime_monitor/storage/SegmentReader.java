@@ -0,0 +1,275 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.EntryRow;
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import nl.gyrobian.uptime_monitor.data.ProbeTimings;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+/**
+ * Reads the entries from the segment files of a single site, in any of the
+ * supported formats. The site's URL dictionary is only loaded once a binary
+ * segment is read. A reader may be used by multiple threads at once.
+ */
+public class SegmentReader {
+	private final Path dir;
+	private volatile UrlDictionary urls;
+
+	/**
+	 * Constructs a reader for a site.
+	 * @param dir The site's directory.
+	 */
+	public SegmentReader(Path dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Reads all entries from a segment file.
+	 * @param path The path to the file.
+	 * @param consumer The consumer to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	public void read(Path path, Consumer<MonitorEntry> consumer) throws IOException {
+		this.read(path, new EntrySink() {
+			@Override
+			public boolean needsEntries() {
+				return true;
+			}
+
+			@Override
+			public void accept(MonitorEntry entry) {
+				consumer.accept(entry);
+			}
+		});
+	}
+
+	/**
+	 * Reads all entries from a segment file. If the sink doesn't need complete
+	 * entries, they're passed as rows instead, without creating any objects
+	 * per entry.
+	 * @param path The path to the file.
+	 * @param sink The sink to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	public void read(Path path, EntrySink sink) throws IOException {
+		this.read(path, sink, null);
+	}
+
+	/**
+	 * Reads the entries from a segment file that may be within a range of
+	 * time. A sealed segment, which is no longer written to, is only read in
+	 * the part that its {@link SegmentIndex} points to. If it has no index
+	 * yet, it's read completely instead, and its index is built along the way
+	 * for later reads.
+	 * @param path The path to the file.
+	 * @param startMillis The start of the range, inclusive, in epoch millis,
+	 *                    or null for no start.
+	 * @param endMillis The end of the range, exclusive, in epoch millis, or
+	 *                  null for no end.
+	 * @param sealed Whether the segment is sealed.
+	 * @param sink The sink to pass each entry to. Entries outside the range
+	 *             may be passed too.
+	 * @return The number of bytes that were read.
+	 * @throws IOException If the file could not be read.
+	 */
+	public long read(Path path, Long startMillis, Long endMillis, boolean sealed, EntrySink sink) throws IOException {
+		if (!sealed) {
+			this.read(path, sink);
+			return Files.size(path);
+		}
+		boolean binary = path.getFileName().toString().endsWith(BinarySegment.EXTENSION);
+		var index = SegmentIndex.load(path);
+		if (index == null) {
+			long size = Files.size(path);
+			var builder = binary || !sink.needsEntries() ? new SegmentIndex.Builder() : null;
+			this.read(path, sink, builder);
+			if (builder != null) {
+				try {
+					builder.build(size).save(path);
+				} catch (IOException e) {
+					System.err.println("Could not save the index of " + path + ": " + e.getMessage());
+				}
+			}
+			return size;
+		}
+		long[] range = index.find(startMillis, endMillis);
+		if (range == null) return 0;
+		if (binary) {
+			var segment = BinarySegment.open(path, range[0], range[1]);
+			if (sink.needsEntries()) {
+				readBinarySegment(segment, this.getUrls(), sink::accept, null);
+			} else {
+				readBinarySegmentRows(segment, sink, null);
+			}
+		} else if (sink.needsEntries()) {
+			try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				byte[] bytes = Channels.newInputStream(channel.position(range[0])).readNBytes((int) (range[1] - range[0]));
+				readCsvFile(path, new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), range[0] == 0, sink::accept);
+			}
+		} else {
+			CsvEntryParser.parse(path, range[0], range[1], sink);
+		}
+		return range[1] - range[0];
+	}
+
+	/**
+	 * Reads all entries from a segment file, and adds them to an index of the
+	 * file.
+	 * @param path The path to the file.
+	 * @param sink The sink to pass each entry to.
+	 * @param index The builder of the file's index, or null. CSV files can
+	 *              only be indexed while they're read as rows.
+	 * @throws IOException If the file could not be read.
+	 */
+	private void read(Path path, EntrySink sink, SegmentIndex.Builder index) throws IOException {
+		boolean binary = path.getFileName().toString().endsWith(BinarySegment.EXTENSION);
+		if (sink.needsEntries()) {
+			if (binary) {
+				readBinarySegment(BinarySegment.open(path), this.getUrls(), sink::accept, index);
+			} else {
+				try (var reader = Files.newBufferedReader(path)) {
+					readCsvFile(path, reader, true, sink::accept);
+				}
+			}
+		} else if (binary) {
+			readBinarySegmentRows(BinarySegment.open(path), sink, index);
+		} else {
+			CsvEntryParser.parse(path, sink, index);
+		}
+	}
+
+	/**
+	 * Reads the entries from a segment file that were written after an
+	 * earlier read of it, as rows. Entries that may still be in the middle of
+	 * being written are left for the next read.
+	 * @param path The path to the file.
+	 * @param offset The offset that the earlier read returned, or 0 to read
+	 *               the whole file.
+	 * @param sink The sink to pass each entry to, which must not need
+	 *             complete entries.
+	 * @return The offset up to which the file was read.
+	 * @throws IOException If the file could not be read.
+	 */
+	public long read(Path path, long offset, EntrySink sink) throws IOException {
+		if (sink.needsEntries()) throw new IllegalArgumentException("Only rows can be read from an offset.");
+		if (path.getFileName().toString().endsWith(BinarySegment.EXTENSION)) {
+			var segment = BinarySegment.open(path, offset);
+			readBinarySegmentRows(segment, sink, null);
+			return segment.end();
+		}
+		return CsvEntryParser.parse(path, offset, sink);
+	}
+
+	/**
+	 * @return The site's URL dictionary, which is loaded on first use.
+	 * @throws IOException If the dictionary could not be loaded.
+	 */
+	private UrlDictionary getUrls() throws IOException {
+		var urls = this.urls;
+		if (urls == null) {
+			synchronized (this) {
+				urls = this.urls;
+				if (urls == null) {
+					urls = UrlDictionary.load(this.dir);
+					this.urls = urls;
+				}
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Reads all entries from a CSV record file. Corrupted records are skipped,
+	 * and an incomplete record at the end of the file, which may be left
+	 * behind by a crash, is ignored.
+	 * @param path The path to the file.
+	 * @param reader The reader of the file's contents.
+	 * @param hasHeader Whether the contents start with the file's header row.
+	 * @param consumer The consumer to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	private void readCsvFile(Path path, Reader reader, boolean hasHeader, Consumer<MonitorEntry> consumer) throws IOException {
+		var records = CSVFormat.DEFAULT.parse(reader).iterator();
+		boolean isHeader = hasHeader;
+		while (true) {
+			CSVRecord record;
+			try {
+				if (!records.hasNext()) break;
+				record = records.next();
+			} catch (IllegalStateException e) {
+				// The parser reports an unterminated quoted value at the end of the file this way.
+				System.err.println("Ignoring incomplete record at the end of " + path);
+				break;
+			}
+			if (isHeader) {
+				isHeader = false;
+				continue;
+			}
+			MonitorEntry entry;
+			try {
+				entry = MonitorEntry.fromCsvRecord(record);
+			} catch (IOException e) {
+				System.err.println("Skipping corrupted record: " + e.getMessage());
+				continue;
+			}
+			consumer.accept(entry);
+		}
+	}
+
+	/**
+	 * Reads all entries from a binary segment, and adds them to an index of
+	 * the segment.
+	 * @param segment The segment.
+	 * @param urls The site's URL dictionary.
+	 * @param consumer The consumer to pass each entry to.
+	 * @param index The builder of the segment's index, or null.
+	 */
+	private void readBinarySegment(BinarySegment segment, UrlDictionary urls, Consumer<MonitorEntry> consumer, SegmentIndex.Builder index) {
+		while (segment.next()) {
+			long micros = segment.timestampMicros();
+			if (index != null) index.add(segment.recordOffset(), Math.floorDiv(micros, 1_000L));
+			consumer.accept(new MonitorEntry(
+					Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L).atOffset(ZoneOffset.UTC),
+					urls.get(segment.urlId()),
+					segment.responseCode(),
+					segment.responseTime(),
+					null,
+					new ProbeTimings(segment.timing(0), segment.timing(1), segment.timing(2), segment.timing(3), segment.timing(4))
+			));
+		}
+	}
+
+	/**
+	 * Reads the fields of all entries from a binary segment, reusing a single
+	 * row for every entry, and adds them to an index of the segment.
+	 * @param segment The segment.
+	 * @param sink The sink to pass each entry to.
+	 * @param index The builder of the segment's index, or null.
+	 */
+	private void readBinarySegmentRows(BinarySegment segment, EntrySink sink, SegmentIndex.Builder index) {
+		var row = new EntryRow();
+		while (segment.next()) {
+			long micros = segment.timestampMicros();
+			if (index != null) index.add(segment.recordOffset(), Math.floorDiv(micros, 1_000L));
+			row.setTimestamp(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, 0);
+			row.setResponseCode(segment.responseCode());
+			row.setResponseTime(segment.responseTime());
+			for (int i = 0; i < 5; i++) row.setTiming(i, segment.timing(i));
+			sink.accept(row);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.MonitorEntry;
+import nl.gyrobian.uptime_monitor.metrics.Metrics;
+import nl.gyrobian.uptime_monitor.metrics.SiteMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes the record files for a single site, under sites/{site.name}. The size
+ * of the current file is tracked in memory, and once it exceeds the maximum
+ * file size, a new file is started. The format of the files is determined by
+ * the writer's {@link SegmentEncoder}. The site's {@link SegmentManifest} is
+ * kept up-to-date with the statistics of each file whenever the writer rolls
+ * over to a new file, or is closed.
+ * <p>
+ *     A writer is only ever used by the {@link MeasurementRecorder}'s writer
+ *     thread, so it is not thread-safe.
+ * </p>
+ */
+public class SiteRecordWriter implements Closeable {
+	public static final DateTimeFormatter FILE_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String siteName;
+	private final Path dir;
+	private final long maxFileSize;
+	private final SegmentEncoder encoder;
+	private final SegmentManifest manifest;
+	private final SiteMetrics metrics;
+
+	private Path recordFile;
+	private FileChannel channel;
+	private OutputStream out;
+	private long size;
+	private boolean dirty = false;
+
+	private long firstTimestamp = -1;
+	private long lastTimestamp = -1;
+	private long recordCount = 0;
+
+	/**
+	 * Opens the writer for a site. This will look in the manifest under
+	 * sites/{site.name} for the most recent file, and it will append to it, if
+	 * its size has not yet exceeded the maximum file size and it was written
+	 * with the encoder's exact format. Otherwise, a new file is created. If
+	 * the site has no manifest yet, one is built from the files that are in
+	 * the directory.
+	 * @param siteName The name of the site.
+	 * @param maxFileSize The maximum size of a record file, in bytes.
+	 * @param format The format to write records in.
+	 * @throws IOException If the record file could not be opened.
+	 */
+	public SiteRecordWriter(String siteName, long maxFileSize, RecordFormat format) throws IOException {
+		this.siteName = siteName;
+		this.maxFileSize = maxFileSize;
+		this.metrics = Metrics.site(siteName);
+		this.dir = Path.of("sites", siteName);
+		if (Files.notExists(dir)) Files.createDirectories(dir);
+		this.encoder = format.createEncoder(dir);
+		var existingManifest = SegmentManifest.load(this.dir);
+		if (existingManifest == null) {
+			System.out.println("Building segment manifest for site " + this.siteName + ".");
+			existingManifest = SegmentManifest.scan(this.dir);
+			existingManifest.save();
+		}
+		this.manifest = existingManifest;
+		var last = this.manifest.getLast();
+		Path lastFile = last == null ? null : this.dir.resolve(last.file());
+		if (lastFile == null || !last.file().endsWith(this.encoder.extension()) || Files.notExists(lastFile) || Files.size(lastFile) > this.maxFileSize) {
+			this.openNewFile();
+		} else if (!this.encoder.canAppendTo(lastFile)) {
+			System.out.println("Most recent file for site " + this.siteName + " uses an older format.");
+			this.openNewFile();
+		} else {
+			this.recordFile = lastFile;
+			this.firstTimestamp = last.firstTimestamp();
+			this.lastTimestamp = last.lastTimestamp();
+			this.recordCount = last.recordCount();
+			System.out.println("Appending site monitoring data for " + this.siteName + " to " + this.recordFile);
+			this.openFile();
+			this.recover();
+		}
+	}
+
+	public String getSiteName() {
+		return this.siteName;
+	}
+
+	public Path getDir() {
+		return this.dir;
+	}
+
+	public SegmentManifest getManifest() {
+		return this.manifest;
+	}
+
+	/**
+	 * Opens the current record file for appending.
+	 * @throws IOException If the file could not be opened.
+	 */
+	private void openFile() throws IOException {
+		this.channel = FileChannel.open(this.recordFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		this.size = this.channel.size();
+		this.out = new BufferedOutputStream(Channels.newOutputStream(this.channel), BUFFER_SIZE);
+	}
+
+	/**
+	 * Truncates anything after the last complete entry in the current record
+	 * file, which is left behind if the program crashed while writing, so
+	 * that new entries are not appended to a torn one.
+	 * @throws IOException If the file could not be checked or truncated.
+	 */
+	private void recover() throws IOException {
+		long validLength = this.encoder.validLength(this.recordFile);
+		if (validLength < this.size) {
+			System.out.println("Truncating " + (this.size - validLength) + " bytes of incomplete data at the end of " + this.recordFile);
+			this.channel.truncate(validLength);
+			this.channel.force(false);
+			this.size = validLength;
+			// The entry count is no longer exact, since it's unknown how many entries were lost.
+			this.recordCount = -1;
+		}
+	}
+
+	/**
+	 * Creates a new record file, named after the current time, and writes the
+	 * header to it.
+	 * @throws IOException If the file could not be created.
+	 */
+	private void openNewFile() throws IOException {
+		String timestamp = ZonedDateTime.now(ZoneOffset.UTC).format(FILE_TIMESTAMP_FORMATTER);
+		this.recordFile = this.dir.resolve(timestamp + this.encoder.extension());
+		System.out.println("Creating new file to record monitoring data for site " + this.siteName + " at " + this.recordFile);
+		this.openFile();
+		this.addWritten(this.encoder.writeHeader(this.out));
+		this.dirty = true;
+		this.firstTimestamp = -1;
+		this.lastTimestamp = -1;
+		this.recordCount = 0;
+		// The new file is added to the manifest right away, so that it is never missed by readers.
+		this.manifest.add(new SegmentManifest.Segment(this.recordFile.getFileName().toString(), -1, -1, 0, this.size));
+		this.manifest.save();
+	}
+
+	/**
+	 * Updates the manifest's entry for the current record file with the
+	 * file's latest statistics.
+	 * @throws IOException If the manifest could not be saved.
+	 */
+	private void updateManifest() throws IOException {
+		this.manifest.setLast(new SegmentManifest.Segment(
+				this.recordFile.getFileName().toString(),
+				this.firstTimestamp,
+				this.lastTimestamp,
+				this.recordCount,
+				this.size
+		));
+		this.manifest.save();
+	}
+
+	/**
+	 * Appends an entry to the current record file, and rolls over to a new
+	 * file if the maximum file size has been exceeded. The entry is buffered,
+	 * and only written to the file once the writer is flushed or its buffer
+	 * is full.
+	 * @param entry The entry to append.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	void append(MonitorEntry entry) throws IOException {
+		this.addWritten(this.encoder.write(entry, this.out));
+		this.metrics.recordWritten();
+		this.dirty = true;
+		long timestamp = entry.timestamp().toInstant().toEpochMilli();
+		// Probes may complete out of order, so track the minimum rather than the first written timestamp.
+		// Files that were written before the manifest existed have no known first timestamp or count.
+		if (this.recordCount == 0) {
+			this.firstTimestamp = timestamp;
+		} else if (this.firstTimestamp >= 0) {
+			this.firstTimestamp = Math.min(this.firstTimestamp, timestamp);
+		}
+		if (this.recordCount >= 0) this.recordCount++;
+		this.lastTimestamp = Math.max(this.lastTimestamp, timestamp);
+		if (this.size > this.maxFileSize) {
+			this.sync();
+			this.out.close();
+			this.updateManifest();
+			this.openNewFile();
+			this.metrics.rollover();
+		}
+	}
+
+	/**
+	 * Writes any buffered entries to the record file.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	void flush() throws IOException {
+		this.addWritten(this.encoder.flush(this.out));
+		this.out.flush();
+	}
+
+	/**
+	 * Adds bytes that were written to the current record file to its size.
+	 * @param bytes The number of bytes.
+	 */
+	private void addWritten(long bytes) {
+		this.size += bytes;
+		this.metrics.bytesWritten(bytes);
+	}
+
+	/**
+	 * Writes any buffered entries to the record file, and forces all written
+	 * data to the storage device, if anything was written since the last sync.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	void sync() throws IOException {
+		this.flush();
+		if (this.dirty) {
+			this.channel.force(false);
+			this.metrics.sync();
+			this.dirty = false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.sync();
+		this.out.close();
+		this.updateManifest();
+	}
+}
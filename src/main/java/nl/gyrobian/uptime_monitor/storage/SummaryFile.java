@@ -0,0 +1,76 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import nl.gyrobian.uptime_monitor.data.SummaryEntry;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Utility methods for reading and writing the CSV files of a summary tier.
+ */
+public final class SummaryFile {
+	private SummaryFile() {}
+
+	/**
+	 * Reads all entries from a summary file. Corrupted records are skipped.
+	 * @param path The path to the file.
+	 * @param consumer The consumer to pass each entry to.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static void read(Path path, Consumer<SummaryEntry> consumer) throws IOException {
+		try (var reader = Files.newBufferedReader(path)) {
+			boolean isHeader = true;
+			for (var record : CSVFormat.DEFAULT.parse(reader)) {
+				if (isHeader) {
+					isHeader = false;
+					continue;
+				}
+				try {
+					consumer.accept(SummaryEntry.fromCsvRecord(record));
+				} catch (IOException e) {
+					System.err.println("Skipping corrupted summary record: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges entries with those of an existing summary file, into a new file.
+	 * Entries for a bucket that is already in the existing file are merged with
+	 * the existing entry. The new file is written atomically, so it either
+	 * has all of its contents or doesn't exist.
+	 * @param source The path to the existing file, or null if there is none.
+	 * @param path The path to the new file.
+	 * @param entries The entries to merge with the existing file.
+	 * @throws IOException If a file could not be read or written.
+	 */
+	public static void merge(Path source, Path path, Collection<SummaryEntry> entries) throws IOException {
+		Map<Instant, SummaryEntry> buckets = new TreeMap<>();
+		if (source != null) {
+			read(source, e -> buckets.put(e.bucketStart().toInstant(), e));
+		}
+		for (var entry : entries) {
+			var existing = buckets.putIfAbsent(entry.bucketStart().toInstant(), entry);
+			if (existing != null) existing.aggregate().merge(entry.aggregate());
+		}
+		Files.createDirectories(path.getParent());
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (var writer = Files.newBufferedWriter(tmp)) {
+			var printer = CSVFormat.DEFAULT.print(writer);
+			printer.printRecord((Object[]) SummaryEntry.CSV_HEADERS);
+			for (var entry : buckets.values()) {
+				printer.printRecord(entry.toCsvValues());
+			}
+			printer.flush();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,147 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The tiers of summarized data that old entries are compacted into. Each tier
+ * is stored in its own directory under a site's directory, with one CSV
+ * summary file per UTC day for minute summaries, and one per UTC month for
+ * hour summaries. Summary files are never changed once written, so when a
+ * compaction adds buckets to a day or month, it writes a new file with the
+ * generation of the compaction in its name, like "2021-08-05.3.csv".
+ */
+public enum SummaryTier {
+	MINUTE("minute", ChronoUnit.MINUTES),
+	HOUR("hour", ChronoUnit.HOURS);
+
+	private final String directoryName;
+	private final ChronoUnit unit;
+
+	SummaryTier(String directoryName, ChronoUnit unit) {
+		this.directoryName = directoryName;
+		this.unit = unit;
+	}
+
+	/**
+	 * @param siteDir The site's directory.
+	 * @return The directory of this tier, for the site.
+	 */
+	public Path directory(Path siteDir) {
+		return siteDir.resolve(this.directoryName);
+	}
+
+	/**
+	 * Gets the start of the bucket that a timestamp belongs to.
+	 * @param timestamp The timestamp.
+	 * @return The start of the bucket.
+	 */
+	public OffsetDateTime truncate(OffsetDateTime timestamp) {
+		return timestamp.truncatedTo(this.unit);
+	}
+
+	/**
+	 * Gets the name of the summary file that a bucket is stored in.
+	 * @param bucketStart The start of the bucket.
+	 * @return The name of the file.
+	 */
+	public String fileName(OffsetDateTime bucketStart) {
+		var utc = bucketStart.atZoneSameInstant(ZoneOffset.UTC);
+		return switch (this) {
+			case MINUTE -> utc.toLocalDate() + ".csv";
+			case HOUR -> YearMonth.from(utc) + ".csv";
+		};
+	}
+
+	/**
+	 * Gets the name of a summary file that a bucket is stored in, when it's
+	 * written by a compaction.
+	 * @param bucketStart The start of the bucket.
+	 * @param generation The generation of the manifest that the compaction
+	 *                   commits.
+	 * @return The name of the file.
+	 */
+	public String fileName(OffsetDateTime bucketStart, long generation) {
+		String name = this.fileName(bucketStart);
+		return name.substring(0, name.length() - 4) + "." + generation + ".csv";
+	}
+
+	/**
+	 * Gets the generation in which a summary file was written.
+	 * @param fileName The name of the file.
+	 * @return The generation, or 0 if the file was written before summary
+	 * files had generations.
+	 */
+	public static long generation(String fileName) {
+		String[] parts = fileName.split("\\.");
+		if (parts.length != 3) return 0;
+		try {
+			return Long.parseLong(parts[1]);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the instant at which the buckets in a summary file start.
+	 * @param fileName The name of the file.
+	 * @return The start of the file, or null if the name is not valid.
+	 */
+	public Instant fileStart(String fileName) {
+		String name = fileName.split("\\.")[0];
+		try {
+			return switch (this) {
+				case MINUTE -> LocalDate.parse(name).atStartOfDay().toInstant(ZoneOffset.UTC);
+				case HOUR -> YearMonth.parse(name).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+			};
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the instant before which all buckets in a summary file start.
+	 * @param fileName The name of the file.
+	 * @return The end of the file, or null if the name is not valid.
+	 */
+	public Instant fileEnd(String fileName) {
+		String name = fileName.split("\\.")[0];
+		try {
+			return switch (this) {
+				case MINUTE -> LocalDate.parse(name).plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+				case HOUR -> YearMonth.parse(name).plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+			};
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Lists the summary files of this tier for a site.
+	 * @param siteDir The site's directory.
+	 * @return The summary files, ordered from oldest to newest.
+	 * @throws IOException If the tier's directory could not be listed.
+	 */
+	public List<Path> listFiles(Path siteDir) throws IOException {
+		Path dir = this.directory(siteDir);
+		if (Files.notExists(dir)) return List.of();
+		try (var s = Files.list(dir)) {
+			return s.filter(Files::isRegularFile)
+					.filter(p -> p.getFileName().toString().endsWith(".csv"))
+					.filter(p -> this.fileStart(p.getFileName().toString()) != null)
+					.sorted(Comparator.comparing(Path::getFileName))
+					.collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package nl.gyrobian.uptime_monitor.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary of the URLs that appear in a site's binary segments, so that
+ * each record only has to store a small id instead of the full URL. The
+ * dictionary is stored in a "urls.dict" file in the site's directory, with one
+ * URL per line, where the id of a URL is its line number, starting at 0.
+ */
+public class UrlDictionary {
+	public static final String FILE_NAME = "urls.dict";
+
+	private final Path file;
+	private final List<String> urls;
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	private UrlDictionary(Path file, List<String> urls) {
+		this.file = file;
+		this.urls = urls;
+		for (int i = 0; i < urls.size(); i++) {
+			this.ids.put(urls.get(i), i);
+		}
+	}
+
+	/**
+	 * Loads the dictionary from a site's directory.
+	 * @param dir The site's directory.
+	 * @return The dictionary, which is empty if no dictionary file exists.
+	 * @throws IOException If the dictionary file could not be read.
+	 */
+	public static UrlDictionary load(Path dir) throws IOException {
+		Path file = dir.resolve(FILE_NAME);
+		List<String> urls = Files.exists(file) ? new ArrayList<>(Files.readAllLines(file, StandardCharsets.UTF_8)) : new ArrayList<>();
+		return new UrlDictionary(file, urls);
+	}
+
+	/**
+	 * Gets the id of a URL, adding it to the dictionary file if it's new.
+	 * @param url The URL.
+	 * @return The URL's id.
+	 * @throws IOException If the URL could not be added to the dictionary file.
+	 */
+	public int idOf(String url) throws IOException {
+		Integer id = this.ids.get(url);
+		if (id != null) return id;
+		if (url.indexOf('\n') >= 0 || url.indexOf('\r') >= 0) throw new IOException("URL cannot contain line breaks: " + url);
+		Files.writeString(this.file, url + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		this.urls.add(url);
+		this.ids.put(url, this.urls.size() - 1);
+		return this.urls.size() - 1;
+	}
+
+	/**
+	 * Gets the URL with the given id.
+	 * @param id The URL's id.
+	 * @return The URL, or null if there is no URL with the given id.
+	 */
+	public String get(int id) {
+		return id >= 0 && id < this.urls.size() ? this.urls.get(id) : null;
+	}
+}
@@ -0,0 +1,244 @@
+package nl.gyrobian.uptime_monitor.data;
+
+import nl.gyrobian.uptime_monitor.storage.RecordFormat;
+import nl.gyrobian.uptime_monitor.storage.SegmentReader;
+import nl.gyrobian.uptime_monitor.storage.SummaryFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that scanning a site's files in parallel gives exactly the same result
+ * as a single sequential pass over the same data, when the status of the site
+ * changes across the boundaries between files.
+ */
+class SegmentScanTaskTest {
+	private static final OffsetDateTime SUMMARY_START = OffsetDateTime.of(2026, 9, 28, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final OffsetDateTime SEGMENT_START = OffsetDateTime.of(2026, 10, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final List<FocusInterval> FOCUS_INTERVALS = List.of(
+			new FocusInterval(LocalTime.of(8, 0), LocalTime.of(18, 0)),
+			new FocusInterval(LocalTime.of(22, 0), LocalTime.of(23, 59))
+	);
+	private static final List<Grouping> GROUPINGS = List.of(Grouping.HOUR_OF_DAY, Grouping.WEEKDAY, Grouping.STATUS_CLASS);
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void startPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void stopPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	void parallelScanMatchesSequentialPass(@TempDir Path siteDir) throws IOException {
+		var random = new Random(42);
+		var summaries = writeSummaries(siteDir, generateEntries(SUMMARY_START, 6000, random));
+		var entries = generateEntries(SEGMENT_START, 20000, random);
+		var sources = writeSegments(siteDir, entries, random);
+		var template = new SiteAggregator(null, null, FOCUS_INTERVALS, GROUPINGS, false);
+
+		var expected = template.newPartial();
+		summaries.forEach(expected::accept);
+		entries.forEach(expected::accept);
+		var sequential = scanSequentially(siteDir, sources, template);
+		var parallel = pool.invoke(new SegmentScanTask<>(sources, template, new SegmentReader(siteDir), new AtomicLong(), new AtomicInteger(), null, null));
+
+		var data = expected.getPerformanceData();
+		assertEquals(entries.size() + summaries.stream().mapToLong(s -> s.aggregate().getCount()).sum(), data.entryCount());
+		assertTrue(data.totalUptime().toMillis() > 0 && data.totalDowntime().toMillis() > 0, "The data should have both uptime and downtime.");
+		assertSameResult(expected, sequential);
+		assertSameResult(expected, parallel);
+	}
+
+	@Test
+	void parallelRangeScanMatchesSequentialPass(@TempDir Path siteDir) throws IOException {
+		var random = new Random(7);
+		var entries = generateEntries(SEGMENT_START, 20000, random);
+		var sources = writeSegments(siteDir, entries, random).stream()
+				.map(s -> new SegmentScanTask.Source(s.path(), false, 0, true))
+				.toList();
+		LocalDate startDate = LocalDate.of(2026, 10, 3);
+		LocalDate endDate = LocalDate.of(2026, 10, 5);
+		long startMillis = startDate.atStartOfDay().toInstant(ZoneOffset.MAX).toEpochMilli();
+		long endMillis = endDate.plusDays(1).atStartOfDay().toInstant(ZoneOffset.MIN).toEpochMilli();
+		var template = new SiteAggregator(startDate, endDate, FOCUS_INTERVALS, GROUPINGS, false);
+
+		var expected = template.newPartial();
+		entries.forEach(expected::accept);
+		// The first scan builds the index of each segment, and the second one uses it.
+		for (int i = 0; i < 2; i++) {
+			var parallel = pool.invoke(new SegmentScanTask<>(sources, template, new SegmentReader(siteDir), new AtomicLong(), new AtomicInteger(), startMillis, endMillis));
+			assertSameResult(expected, parallel);
+		}
+	}
+
+	@Test
+	void entriesWithoutResponseAreLeftOutOfResponseTimes() {
+		var aggregate = new PerformanceAggregate();
+		aggregate.add(new MonitorEntry(SEGMENT_START, "https://example.com", 200, 100, "", ProbeTimings.UNKNOWN));
+		aggregate.add(new MonitorEntry(SEGMENT_START.plusMinutes(1), "https://example.com", MonitorEntry.NO_RESPONSE, -1, "Request timed out", ProbeTimings.UNKNOWN));
+		aggregate.add(new MonitorEntry(SEGMENT_START.plusMinutes(2), "https://example.com", MonitorEntry.NO_RESPONSE, -1, "Request timed out", ProbeTimings.UNKNOWN));
+		aggregate.add(new MonitorEntry(SEGMENT_START.plusMinutes(3), "https://example.com", 200, 300, "", ProbeTimings.UNKNOWN));
+		var data = aggregate.toPerformanceData();
+		assertEquals(4, data.entryCount());
+		assertEquals(50, data.successPercent(), 0.001);
+		assertEquals(60_000, data.totalDowntime().toMillis());
+		assertEquals(200, data.averageResponseTime(), 0.001);
+		assertTrue(data.responseTimePercentiles().p99() <= 300, "Entries without a response should not count towards percentiles.");
+	}
+
+	@Test
+	void mergedPartialAggregatesMatchSingleAggregate() {
+		var entries = generateEntries(SEGMENT_START, 2000, new Random(3));
+		var expected = new PerformanceAggregate();
+		entries.forEach(expected::add);
+		for (int split = 0; split <= entries.size(); split += 97) {
+			var first = new PerformanceAggregate();
+			var second = new PerformanceAggregate();
+			entries.subList(0, split).forEach(first::add);
+			entries.subList(split, entries.size()).forEach(second::add);
+			first.merge(second);
+			assertEquals(expected.toPerformanceData(), first.toPerformanceData(), "Split at " + split);
+		}
+	}
+
+	private static void assertSameResult(SiteAggregator expected, SiteAggregator actual) {
+		assertEquals(expected.getPerformanceData(), actual.getPerformanceData());
+		assertEquals(expected.getFocusIntervalPerformanceData(), actual.getFocusIntervalPerformanceData());
+		assertEquals(expected.getGroupedPerformanceData(), actual.getGroupedPerformanceData());
+		assertEquals(expected.getFirstTimestamp(), actual.getFirstTimestamp());
+		assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp());
+	}
+
+	/**
+	 * Reads all sources one after another into a single aggregator.
+	 */
+	private static SiteAggregator scanSequentially(Path siteDir, List<SegmentScanTask.Source> sources, SiteAggregator template) throws IOException {
+		var aggregator = template.newPartial();
+		var reader = new SegmentReader(siteDir);
+		for (var source : sources) {
+			if (source.summary()) {
+				SummaryFile.read(source.path(), aggregator::accept);
+			} else {
+				reader.read(source.path(), aggregator);
+			}
+		}
+		return aggregator;
+	}
+
+	/**
+	 * Generates entries in runs of successes and failures, a few seconds to
+	 * a minute apart. Failures without a response have no response time.
+	 */
+	private static List<MonitorEntry> generateEntries(OffsetDateTime start, int count, Random random) {
+		List<MonitorEntry> entries = new ArrayList<>(count);
+		long millis = start.toInstant().toEpochMilli();
+		boolean ok = true;
+		int runLeft = 0;
+		for (int i = 0; i < count; i++) {
+			if (runLeft == 0) {
+				ok = !ok;
+				runLeft = 1 + random.nextInt(ok ? 40 : 8);
+			}
+			runLeft--;
+			millis += 1000 + random.nextInt(59_000);
+			int responseCode = ok ? (random.nextInt(10) == 0 ? 301 : 200) : switch (random.nextInt(3)) {
+				case 0 -> 404;
+				case 1 -> 503;
+				default -> MonitorEntry.NO_RESPONSE;
+			};
+			var timings = random.nextInt(4) == 0 ? ProbeTimings.UNKNOWN : new ProbeTimings(-1, -1, -1, random.nextInt(500_000), random.nextInt(50_000));
+			entries.add(new MonitorEntry(
+					OffsetDateTime.ofInstant(java.time.Instant.ofEpochMilli(millis), ZoneOffset.UTC),
+					"https://example.com",
+					responseCode,
+					responseCode == MonitorEntry.NO_RESPONSE ? -1 : 1 + random.nextInt(2000),
+					"",
+					timings
+			));
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes entries as minute summaries, into one summary file per day.
+	 * @return The summaries, in order.
+	 */
+	private static List<SummaryEntry> writeSummaries(Path siteDir, List<MonitorEntry> entries) throws IOException {
+		Map<OffsetDateTime, SummaryEntry> buckets = new TreeMap<>();
+		for (var entry : entries) {
+			var bucketStart = entry.timestamp().withSecond(0).withNano(0);
+			buckets.computeIfAbsent(bucketStart, b -> new SummaryEntry(b, new PerformanceAggregate())).aggregate().add(entry);
+		}
+		Map<LocalDate, List<SummaryEntry>> byDay = new TreeMap<>();
+		for (var summary : buckets.values()) {
+			byDay.computeIfAbsent(summary.bucketStart().toLocalDate(), d -> new ArrayList<>()).add(summary);
+		}
+		for (var day : byDay.entrySet()) {
+			SummaryFile.merge(null, siteDir.resolve("minute").resolve(day.getKey() + ".csv"), day.getValue());
+		}
+		return new ArrayList<>(buckets.values());
+	}
+
+	/**
+	 * Writes entries into segments of varying sizes, alternating between the
+	 * CSV and binary formats. Most segments end right where the status of
+	 * the site changes, and the others in the middle of a run.
+	 * @return The sources of the summary files in the site's directory,
+	 * followed by those of the segments.
+	 */
+	private static List<SegmentScanTask.Source> writeSegments(Path siteDir, List<MonitorEntry> entries, Random random) throws IOException {
+		List<SegmentScanTask.Source> sources = new ArrayList<>();
+		if (Files.exists(siteDir.resolve("minute"))) {
+			try (var files = Files.list(siteDir.resolve("minute"))) {
+				files.sorted().forEach(path -> sources.add(new SegmentScanTask.Source(path, true)));
+			}
+		}
+		int start = 0;
+		int segment = 0;
+		while (start < entries.size()) {
+			int end = Math.min(entries.size(), start + 500 + random.nextInt(2500));
+			if (random.nextInt(4) != 0) {
+				while (end < entries.size() && entries.get(end).isOk() == entries.get(end - 1).isOk()) end++;
+			}
+			var format = segment % 2 == 0 ? RecordFormat.CSV : RecordFormat.BINARY;
+			var encoder = format.createEncoder(siteDir);
+			Path path = siteDir.resolve(String.format("segment-%02d%s", segment, encoder.extension()));
+			try (OutputStream out = Files.newOutputStream(path)) {
+				encoder.writeHeader(out);
+				for (var entry : entries.subList(start, end)) {
+					encoder.write(entry, out);
+				}
+				encoder.flush(out);
+			}
+			sources.add(new SegmentScanTask.Source(path, false));
+			start = end;
+			segment++;
+		}
+		return sources;
+	}
+}